@@ -12,6 +12,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * Persists catalog metadata (table schemas) to a flat file.
  * Format per table:
  *   TABLE tableName
+ *   PAGE_SIZE bytes        (omitted for the default page size)
+ *   COMPRESSION LZ4        (omitted for uncompressed tables)
+ *   BLOOM_FILTER col ...   (omitted for tables without Bloom filters)
  *   COLUMN name type maxLength
  *   ...
  *   END
@@ -31,6 +34,18 @@ public class CatalogPersistence {
                 TableSchema schema = entry.getValue();
                 writer.write("TABLE " + schema.getTableName());
                 writer.newLine();
+                if (schema.getPageSize() != TableSchema.DEFAULT_PAGE_SIZE) {
+                    writer.write("PAGE_SIZE " + schema.getPageSize());
+                    writer.newLine();
+                }
+                if (schema.isCompressed()) {
+                    writer.write("COMPRESSION LZ4");
+                    writer.newLine();
+                }
+                if (!schema.getBloomFilterColumns().isEmpty()) {
+                    writer.write("BLOOM_FILTER " + String.join(" ", schema.getBloomFilterColumns()));
+                    writer.newLine();
+                }
                 for (ColumnDefinition col : schema.getColumns()) {
                     writer.write("COLUMN " + col.name() + " " + col.type().name() + " " + col.maxLength());
                     writer.newLine();
@@ -54,10 +69,22 @@ public class CatalogPersistence {
                 if (line.startsWith("TABLE ")) {
                     String tableName = line.substring(6).trim();
                     List<ColumnDefinition> columns = new ArrayList<>();
+                    int pageSize = TableSchema.DEFAULT_PAGE_SIZE;
+                    boolean compressed = false;
+                    List<String> bloomFilterColumns = List.of();
                     String colLine;
                     while ((colLine = reader.readLine()) != null) {
                         colLine = colLine.trim();
                         if (colLine.equals("END")) break;
+                        if (colLine.startsWith("PAGE_SIZE ")) {
+                            pageSize = Integer.parseInt(colLine.substring(10).trim());
+                        }
+                        if (colLine.equals("COMPRESSION LZ4")) {
+                            compressed = true;
+                        }
+                        if (colLine.startsWith("BLOOM_FILTER ")) {
+                            bloomFilterColumns = List.of(colLine.substring(13).trim().split(" "));
+                        }
                         if (colLine.startsWith("COLUMN ")) {
                             String[] parts = colLine.substring(7).split(" ");
                             String colName = parts[0];
@@ -66,7 +93,7 @@ public class CatalogPersistence {
                             columns.add(new ColumnDefinition(colName, colType, maxLength));
                         }
                     }
-                    TableSchema schema = new TableSchema(tableName, columns);
+                    TableSchema schema = new TableSchema(tableName, columns, pageSize, compressed, bloomFilterColumns);
                     tables.put(tableName.toUpperCase(), schema);
                 }
             }
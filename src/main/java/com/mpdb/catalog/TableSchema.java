@@ -5,12 +5,47 @@ import java.util.List;
 
 public class TableSchema {
 
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int MAX_PAGE_SIZE = 65536;
+
     private final String tableName;
     private final List<ColumnDefinition> columns;
+    private final int pageSize;
+    private final boolean compressed;
+    private final List<String> bloomFilterColumns;
 
     public TableSchema(String tableName, List<ColumnDefinition> columns) {
+        this(tableName, columns, DEFAULT_PAGE_SIZE);
+    }
+
+    public TableSchema(String tableName, List<ColumnDefinition> columns, int pageSize) {
+        this(tableName, columns, pageSize, false);
+    }
+
+    public TableSchema(String tableName, List<ColumnDefinition> columns, int pageSize, boolean compressed) {
+        this(tableName, columns, pageSize, compressed, List.of());
+    }
+
+    public TableSchema(String tableName, List<ColumnDefinition> columns, int pageSize, boolean compressed,
+                       List<String> bloomFilterColumns) {
+        if (!isValidPageSize(pageSize)) {
+            throw new IllegalArgumentException("Page size must be a power of two from "
+                    + DEFAULT_PAGE_SIZE + " to " + MAX_PAGE_SIZE + ", got " + pageSize);
+        }
         this.tableName = tableName;
         this.columns = List.copyOf(columns);
+        this.pageSize = pageSize;
+        this.compressed = compressed;
+        this.bloomFilterColumns = List.copyOf(bloomFilterColumns);
+        for (String column : this.bloomFilterColumns) {
+            if (getColumnIndex(column) < 0) {
+                throw new IllegalArgumentException("Unknown column for Bloom filter: " + column);
+            }
+        }
+    }
+
+    public static boolean isValidPageSize(int pageSize) {
+        return pageSize >= DEFAULT_PAGE_SIZE && pageSize <= MAX_PAGE_SIZE && Integer.bitCount(pageSize) == 1;
     }
 
     public String getTableName() {
@@ -21,6 +56,30 @@ public class TableSchema {
         return columns;
     }
 
+    /** Size in bytes of the pages the table is stored in. */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /** Whether the table's pages are stored compressed on disk. */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /** Columns whose values each page summarises in a Bloom filter, for equality lookups. */
+    public List<String> getBloomFilterColumns() {
+        return bloomFilterColumns;
+    }
+
+    public boolean hasBloomFilter(int columnIndex) {
+        for (String column : bloomFilterColumns) {
+            if (getColumnIndex(column) == columnIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public int getColumnCount() {
         return columns.size();
     }
@@ -70,7 +70,10 @@ public class CreateTableHandler implements StatementHandler {
             }
         }
 
-        TableSchema schema = new TableSchema(tableName, columns);
+        TableSchema schema = node instanceof SqlCreateTableWithOptions options
+                ? new TableSchema(tableName, columns, options.pageSize, options.compressed,
+                        options.bloomFilterColumns)
+                : new TableSchema(tableName, columns);
         catalog.createTable(schema);
         storageEngine.createHeapFile(schema);
 
@@ -46,19 +46,22 @@ public class DeleteHandler implements StatementHandler {
         HeapFile heapFile = storageEngine.getHeapFile(tableName);
         SqlNode condition = delete.getCondition();
 
-        List<Map.Entry<TupleId, Tuple>> candidates;
-        if (condition != null) {
-            Predicate<Tuple> predicate = predicateBuilder.build(condition, schema);
-            candidates = heapFile.scanWithFilterAndIds(predicate);
-        } else {
-            candidates = heapFile.scanAllWithIds();
-        }
+        Predicate<Tuple> predicate = condition != null ? predicateBuilder.build(condition, schema) : null;
 
         int deletedCount = 0;
-        for (Map.Entry<TupleId, Tuple> entry : candidates) {
-            if (heapFile.deleteTuple(entry.getKey())) {
-                deletedCount++;
+        // The statement starts before the scan, so that no vacuum moves a candidate before it is deleted
+        storageEngine.beginStatement();
+        try {
+            List<Map.Entry<TupleId, Tuple>> candidates = predicate != null
+                    ? heapFile.scanWithFilterAndIds(predicate)
+                    : heapFile.scanAllWithIds();
+            for (Map.Entry<TupleId, Tuple> entry : candidates) {
+                if (heapFile.deleteTuple(entry.getKey())) {
+                    deletedCount++;
+                }
             }
+        } finally {
+            storageEngine.commit();
         }
 
         return "Deleted " + deletedCount + (deletedCount == 1 ? " row." : " rows.");
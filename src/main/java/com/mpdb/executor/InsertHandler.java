@@ -36,21 +36,26 @@ public class InsertHandler implements StatementHandler {
 
         int rowCount = 0;
 
-        if (source instanceof SqlBasicCall valuesCall && valuesCall.getOperator() == SqlStdOperatorTable.VALUES) {
-            for (SqlNode rowNode : valuesCall.getOperandList()) {
-                SqlBasicCall row = (SqlBasicCall) rowNode;
-                Object[] values = new Object[schema.getColumnCount()];
+        storageEngine.beginStatement();
+        try {
+            if (source instanceof SqlBasicCall valuesCall && valuesCall.getOperator() == SqlStdOperatorTable.VALUES) {
+                for (SqlNode rowNode : valuesCall.getOperandList()) {
+                    SqlBasicCall row = (SqlBasicCall) rowNode;
+                    Object[] values = new Object[schema.getColumnCount()];
 
-                for (int i = 0; i < row.operandCount(); i++) {
-                    ColumnDefinition colDef = schema.getColumn(i);
-                    values[i] = extractValue(row.operand(i), colDef);
-                }
+                    for (int i = 0; i < row.operandCount(); i++) {
+                        ColumnDefinition colDef = schema.getColumn(i);
+                        values[i] = extractValue(row.operand(i), colDef);
+                    }
 
-                heapFile.insertTuple(new Tuple(schema, values));
-                rowCount++;
+                    heapFile.insertTuple(new Tuple(schema, values));
+                    rowCount++;
+                }
+            } else {
+                throw new UnsupportedOperationException("Only INSERT INTO ... VALUES is supported");
             }
-        } else {
-            throw new UnsupportedOperationException("Only INSERT INTO ... VALUES is supported");
+        } finally {
+            storageEngine.commit();
         }
 
         return "Inserted " + rowCount + (rowCount == 1 ? " row." : " rows.");
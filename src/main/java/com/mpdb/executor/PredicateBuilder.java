@@ -3,6 +3,7 @@ package com.mpdb.executor;
 import com.mpdb.catalog.ColumnDefinition;
 import com.mpdb.catalog.TableSchema;
 import com.mpdb.storage.Tuple;
+import com.mpdb.storage.ZonePredicate;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.springframework.stereotype.Component;
@@ -32,26 +33,26 @@ public class PredicateBuilder {
             if (op == SqlStdOperatorTable.AND) {
                 Predicate<Tuple> left = build(call.operand(0), schema, subqueryExecutor);
                 Predicate<Tuple> right = build(call.operand(1), schema, subqueryExecutor);
-                return left.and(right);
+                return ZonePredicate.and(left, right);
             }
 
             // OR
             if (op == SqlStdOperatorTable.OR) {
                 Predicate<Tuple> left = build(call.operand(0), schema, subqueryExecutor);
                 Predicate<Tuple> right = build(call.operand(1), schema, subqueryExecutor);
-                return left.or(right);
+                return ZonePredicate.or(left, right);
             }
 
             // IS NULL (postfix, 1 operand)
             if (op == SqlStdOperatorTable.IS_NULL) {
                 int colIndex = resolveColumnIndex(call.operand(0), schema);
-                return tuple -> tuple.getValue(colIndex) == null;
+                return ZonePredicate.isNull(tuple -> tuple.getValue(colIndex) == null, colIndex);
             }
 
             // IS NOT NULL (postfix, 1 operand)
             if (op == SqlStdOperatorTable.IS_NOT_NULL) {
                 int colIndex = resolveColumnIndex(call.operand(0), schema);
-                return tuple -> tuple.getValue(colIndex) != null;
+                return ZonePredicate.isNotNull(tuple -> tuple.getValue(colIndex) != null, colIndex);
             }
 
             // IN operator
@@ -101,15 +102,29 @@ public class PredicateBuilder {
             for (Tuple t : subResults) {
                 values.add(t.getValue(0));
             }
-            return tuple -> {
-                Object val = tuple.getValue(colIndex);
-                return val != null && values.contains(val);
-            };
+            return inValues(colIndex, values);
+        }
+
+        if (rightNode instanceof SqlNodeList list) {
+            ColumnDefinition colDef = schema.getColumn(colIndex);
+            Set<Object> values = new java.util.HashSet<>();
+            for (SqlNode item : list) {
+                values.add(extractLiteral(item, colDef));
+            }
+            return inValues(colIndex, values);
         }
 
         throw new UnsupportedOperationException("Unsupported IN clause: " + rightNode);
     }
 
+    private Predicate<Tuple> inValues(int colIndex, Set<Object> values) {
+        Predicate<Tuple> rows = tuple -> {
+            Object val = tuple.getValue(colIndex);
+            return val != null && values.contains(val);
+        };
+        return ZonePredicate.in(rows, colIndex, values);
+    }
+
     @SuppressWarnings("unchecked")
     private Predicate<Tuple> buildComparison(SqlBasicCall call, TableSchema schema) {
         SqlNode leftNode = call.operand(0);
@@ -147,7 +162,7 @@ public class PredicateBuilder {
         ColumnDefinition colDef = schema.getColumn(colIndex);
         Object literal = extractLiteral(rightNode, colDef);
 
-        return tuple -> {
+        Predicate<Tuple> rows = tuple -> {
             Object value = tuple.getValue(colIndex);
             if (value == null || literal == null) {
                 return false;
@@ -155,6 +170,9 @@ public class PredicateBuilder {
             int cmp = compareValues(value, literal);
             return evalOp(op, cmp);
         };
+        // Let heap file scans skip pages whose zone map rules out the literal
+        ZonePredicate.Comparison comparison = toComparison(op);
+        return comparison != null ? ZonePredicate.compare(rows, colIndex, comparison, literal) : rows;
     }
 
     private int compareValues(Object a, Object b) {
@@ -180,6 +198,16 @@ public class PredicateBuilder {
         throw new UnsupportedOperationException("Unsupported operator: " + op);
     }
 
+    private ZonePredicate.Comparison toComparison(SqlOperator op) {
+        if (op == SqlStdOperatorTable.EQUALS) return ZonePredicate.Comparison.EQUALS;
+        if (op == SqlStdOperatorTable.NOT_EQUALS) return ZonePredicate.Comparison.NOT_EQUALS;
+        if (op == SqlStdOperatorTable.LESS_THAN) return ZonePredicate.Comparison.LESS_THAN;
+        if (op == SqlStdOperatorTable.LESS_THAN_OR_EQUAL) return ZonePredicate.Comparison.LESS_THAN_OR_EQUAL;
+        if (op == SqlStdOperatorTable.GREATER_THAN) return ZonePredicate.Comparison.GREATER_THAN;
+        if (op == SqlStdOperatorTable.GREATER_THAN_OR_EQUAL) return ZonePredicate.Comparison.GREATER_THAN_OR_EQUAL;
+        return null; // rows.test reports it
+    }
+
     private Object extractLiteral(SqlNode node, ColumnDefinition colDef) {
         if (node instanceof SqlLiteral lit
                 && lit.getTypeName() == org.apache.calcite.sql.type.SqlTypeName.NULL) {
@@ -29,17 +29,10 @@ public class SelectHandler implements StatementHandler {
     @Override
     public String handle(SqlNode node) {
         SqlSelect select = (SqlSelect) node;
-        ResolvedRelation relation = resolveFrom(select.getFrom());
+        ResolvedRelation relation = resolveFiltered(select.getFrom(), select.getWhere());
         List<Tuple> results = relation.tuples;
         TableSchema schema = relation.schema;
 
-        // Apply WHERE filter
-        SqlNode where = select.getWhere();
-        if (where != null) {
-            Predicate<Tuple> predicate = predicateBuilder.build(where, schema, this::executeSubSelect);
-            results = results.stream().filter(predicate).toList();
-        }
-
         // Apply column projection
         SqlNodeList selectList = select.getSelectList();
         if (selectList != null && !isSelectStar(selectList)) {
@@ -52,16 +45,10 @@ public class SelectHandler implements StatementHandler {
     }
 
     private List<Tuple> executeSubSelect(SqlSelect subSelect) {
-        ResolvedRelation rel = resolveFrom(subSelect.getFrom());
+        ResolvedRelation rel = resolveFiltered(subSelect.getFrom(), subSelect.getWhere());
         List<Tuple> results = rel.tuples;
         TableSchema schema = rel.schema;
 
-        SqlNode where = subSelect.getWhere();
-        if (where != null) {
-            Predicate<Tuple> predicate = predicateBuilder.build(where, schema, this::executeSubSelect);
-            results = results.stream().filter(predicate).toList();
-        }
-
         SqlNodeList selectList = subSelect.getSelectList();
         if (selectList != null && !isSelectStar(selectList)) {
             ProjectionResult projection = applyProjection(selectList, results, schema);
@@ -72,6 +59,50 @@ public class SelectHandler implements StatementHandler {
         return results;
     }
 
+    /**
+     * Resolves FROM and applies WHERE. On a single table, aliased or not, the filter runs inside the
+     * heap file scan, which skips the pages its zone map rules out.
+     */
+    private ResolvedRelation resolveFiltered(SqlNode from, SqlNode where) {
+        SqlIdentifier tableId = null;
+        String aliasName = null;
+        if (from instanceof SqlIdentifier id) {
+            tableId = id;
+        } else if (from instanceof SqlBasicCall call && call.getOperator().getKind() == SqlKind.AS
+                && call.operand(0) instanceof SqlIdentifier id) {
+            tableId = id;
+            aliasName = ((SqlIdentifier) call.operand(1)).getSimple();
+        }
+
+        if (where != null && tableId != null) {
+            String tableName = tableId.getSimple();
+            TableSchema schema = catalog.getTable(tableName);
+            if (schema == null) {
+                throw new IllegalStateException("Table does not exist: " + tableName);
+            }
+            if (aliasName != null) {
+                schema = new TableSchema(aliasName, schema.getColumns());
+            }
+            Predicate<Tuple> predicate = predicateBuilder.build(where, schema, this::executeSubSelect);
+            List<Tuple> tuples = storageEngine.getHeapFile(tableName).scanWithFilter(predicate);
+            if (aliasName != null) {
+                List<Tuple> aliasedTuples = new ArrayList<>();
+                for (Tuple t : tuples) {
+                    aliasedTuples.add(t.withSchema(schema));
+                }
+                tuples = aliasedTuples;
+            }
+            return new ResolvedRelation(tuples, schema);
+        }
+
+        ResolvedRelation relation = resolveFrom(from);
+        if (where == null) {
+            return relation;
+        }
+        Predicate<Tuple> predicate = predicateBuilder.build(where, relation.schema, this::executeSubSelect);
+        return new ResolvedRelation(relation.tuples.stream().filter(predicate).toList(), relation.schema);
+    }
+
     private ResolvedRelation resolveFrom(SqlNode from) {
         // Simple table reference
         if (from instanceof SqlIdentifier tableId) {
@@ -109,7 +140,7 @@ public class SelectHandler implements StatementHandler {
                 TableSchema aliasedSchema = new TableSchema(aliasName, subSchema.getColumns());
                 List<Tuple> aliasedTuples = new ArrayList<>();
                 for (Tuple t : subResults) {
-                    aliasedTuples.add(new Tuple(aliasedSchema, t.getValues()));
+                    aliasedTuples.add(t.withSchema(aliasedSchema));
                 }
                 return new ResolvedRelation(aliasedTuples, aliasedSchema);
             }
@@ -126,7 +157,7 @@ public class SelectHandler implements StatementHandler {
                 List<Tuple> tuples = heapFile.scanAll();
                 List<Tuple> aliasedTuples = new ArrayList<>();
                 for (Tuple t : tuples) {
-                    aliasedTuples.add(new Tuple(aliasedSchema, t.getValues()));
+                    aliasedTuples.add(t.withSchema(aliasedSchema));
                 }
                 return new ResolvedRelation(aliasedTuples, aliasedSchema);
             }
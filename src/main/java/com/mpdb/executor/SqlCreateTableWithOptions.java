@@ -0,0 +1,35 @@
+package com.mpdb.executor;
+
+import org.apache.calcite.sql.SqlWriter;
+import org.apache.calcite.sql.ddl.SqlCreateTable;
+
+import java.util.List;
+
+/**
+ * {@code CREATE TABLE ... WITH (page_size = n, compression = lz4, bloom_filter = 'col, ...')}. Calcite's grammar has no table
+ * options, so the clause is cut off before parsing and the parsed statement is rewrapped with it.
+ */
+public class SqlCreateTableWithOptions extends SqlCreateTable {
+
+    public final int pageSize;
+    public final boolean compressed;
+    public final List<String> bloomFilterColumns;
+
+    public SqlCreateTableWithOptions(SqlCreateTable createTable, int pageSize, boolean compressed,
+                                     List<String> bloomFilterColumns) {
+        super(createTable.getParserPosition(), createTable.getReplace(), createTable.ifNotExists,
+                createTable.name, createTable.columnList, createTable.query);
+        this.pageSize = pageSize;
+        this.compressed = compressed;
+        this.bloomFilterColumns = List.copyOf(bloomFilterColumns);
+    }
+
+    @Override
+    public void unparse(SqlWriter writer, int leftPrec, int rightPrec) {
+        super.unparse(writer, leftPrec, rightPrec);
+        writer.keyword("WITH");
+        writer.print("(PAGE_SIZE = " + pageSize + ", COMPRESSION = " + (compressed ? "LZ4" : "NONE")
+                + (bloomFilterColumns.isEmpty() ? "" : ", BLOOM_FILTER = '" + String.join(", ", bloomFilterColumns) + "'")
+                + ")");
+    }
+}
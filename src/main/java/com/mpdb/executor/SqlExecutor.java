@@ -13,19 +13,22 @@ public class SqlExecutor {
     private final DeleteHandler deleteHandler;
     private final UpdateHandler updateHandler;
     private final DropTableHandler dropTableHandler;
+    private final VacuumHandler vacuumHandler;
 
     public SqlExecutor(CreateTableHandler createTableHandler,
                        InsertHandler insertHandler,
                        SelectHandler selectHandler,
                        DeleteHandler deleteHandler,
                        UpdateHandler updateHandler,
-                       DropTableHandler dropTableHandler) {
+                       DropTableHandler dropTableHandler,
+                       VacuumHandler vacuumHandler) {
         this.createTableHandler = createTableHandler;
         this.insertHandler = insertHandler;
         this.selectHandler = selectHandler;
         this.deleteHandler = deleteHandler;
         this.updateHandler = updateHandler;
         this.dropTableHandler = dropTableHandler;
+        this.vacuumHandler = vacuumHandler;
     }
 
     public String execute(SqlNode node) {
@@ -38,6 +41,12 @@ public class SqlExecutor {
             case DELETE -> deleteHandler.handle(node);
             case UPDATE -> updateHandler.handle(node);
             case DROP_TABLE -> dropTableHandler.handle(node);
+            case OTHER_DDL -> {
+                if (!(node instanceof SqlVacuum)) {
+                    throw new UnsupportedOperationException("Unsupported SQL statement: " + kind);
+                }
+                yield vacuumHandler.handle(node);
+            }
             default -> throw new UnsupportedOperationException("Unsupported SQL statement: " + kind);
         };
     }
@@ -0,0 +1,47 @@
+package com.mpdb.executor;
+
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.SqlSpecialOperator;
+import org.apache.calcite.sql.SqlWriter;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.util.ImmutableNullableList;
+
+import java.util.List;
+
+/**
+ * Parse tree for {@code VACUUM [table]}, which Calcite's grammar does not know.
+ * A missing table name means every table.
+ */
+public class SqlVacuum extends SqlCall {
+
+    private static final SqlOperator OPERATOR = new SqlSpecialOperator("VACUUM", SqlKind.OTHER_DDL);
+
+    public final SqlIdentifier name; // null for all tables
+
+    public SqlVacuum(SqlParserPos pos, SqlIdentifier name) {
+        super(pos);
+        this.name = name;
+    }
+
+    @Override
+    public SqlOperator getOperator() {
+        return OPERATOR;
+    }
+
+    @Override
+    public List<SqlNode> getOperandList() {
+        return ImmutableNullableList.of(name);
+    }
+
+    @Override
+    public void unparse(SqlWriter writer, int leftPrec, int rightPrec) {
+        writer.keyword("VACUUM");
+        if (name != null) {
+            name.unparse(writer, leftPrec, rightPrec);
+        }
+    }
+}
@@ -46,13 +46,7 @@ public class UpdateHandler implements StatementHandler {
         HeapFile heapFile = storageEngine.getHeapFile(tableName);
         SqlNode condition = update.getCondition();
 
-        List<Map.Entry<TupleId, Tuple>> candidates;
-        if (condition != null) {
-            Predicate<Tuple> predicate = predicateBuilder.build(condition, schema);
-            candidates = heapFile.scanWithFilterAndIds(predicate);
-        } else {
-            candidates = heapFile.scanAllWithIds();
-        }
+        Predicate<Tuple> predicate = condition != null ? predicateBuilder.build(condition, schema) : null;
 
         // Build SET assignments: column index -> new value
         SqlNodeList targetColumns = update.getTargetColumnList();
@@ -74,20 +68,29 @@ public class UpdateHandler implements StatementHandler {
         }
 
         int updatedCount = 0;
-        for (Map.Entry<TupleId, Tuple> entry : candidates) {
-            Tuple oldTuple = entry.getValue();
-            Object[] newValues = new Object[schema.getColumnCount()];
-            for (int c = 0; c < schema.getColumnCount(); c++) {
-                newValues[c] = oldTuple.getValue(c);
-            }
-            for (int i = 0; i < updateColIndices.length; i++) {
-                newValues[updateColIndices[i]] = updateValues[i];
+        // The statement starts before the scan, so that no vacuum moves a candidate before it is replaced
+        storageEngine.beginStatement();
+        try {
+            List<Map.Entry<TupleId, Tuple>> candidates = predicate != null
+                    ? heapFile.scanWithFilterAndIds(predicate)
+                    : heapFile.scanAllWithIds();
+            for (Map.Entry<TupleId, Tuple> entry : candidates) {
+                Tuple oldTuple = entry.getValue();
+                Object[] newValues = new Object[schema.getColumnCount()];
+                for (int c = 0; c < schema.getColumnCount(); c++) {
+                    newValues[c] = oldTuple.getValue(c);
+                }
+                for (int i = 0; i < updateColIndices.length; i++) {
+                    newValues[updateColIndices[i]] = updateValues[i];
+                }
+
+                // Delete old, insert new (handles variable-length size changes)
+                heapFile.deleteTuple(entry.getKey());
+                heapFile.insertTuple(new Tuple(schema, newValues));
+                updatedCount++;
             }
-
-            // Delete old, insert new (handles variable-length size changes)
-            heapFile.deleteTuple(entry.getKey());
-            heapFile.insertTuple(new Tuple(schema, newValues));
-            updatedCount++;
+        } finally {
+            storageEngine.commit();
         }
 
         return "Updated " + updatedCount + (updatedCount == 1 ? " row." : " rows.");
@@ -0,0 +1,49 @@
+package com.mpdb.executor;
+
+import com.mpdb.catalog.Catalog;
+import com.mpdb.storage.HeapFile;
+import com.mpdb.storage.StorageEngine;
+import org.apache.calcite.sql.SqlNode;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class VacuumHandler implements StatementHandler {
+
+    private final Catalog catalog;
+    private final StorageEngine storageEngine;
+
+    public VacuumHandler(Catalog catalog, StorageEngine storageEngine) {
+        this.catalog = catalog;
+        this.storageEngine = storageEngine;
+    }
+
+    @Override
+    public String handle(SqlNode node) {
+        SqlVacuum vacuum = (SqlVacuum) node;
+        if (vacuum.name == null) {
+            return describe(storageEngine.vacuumAll());
+        }
+        String tableName = vacuum.name.getSimple();
+        if (!catalog.tableExists(tableName)) {
+            throw new IllegalStateException("Table does not exist: " + tableName);
+        }
+        return describe(List.of(storageEngine.vacuum(tableName)));
+    }
+
+    /** One line per vacuumed table, e.g. {@code Vacuumed 'USERS': 120 -> 40 pages, 327680 bytes reclaimed.} */
+    public static String describe(List<HeapFile.VacuumResult> results) {
+        if (results.isEmpty()) {
+            return "No tables to vacuum.";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (HeapFile.VacuumResult result : results) {
+            if (!sb.isEmpty()) sb.append('\n');
+            sb.append("Vacuumed '").append(result.tableName()).append("': ")
+              .append(result.pagesBefore()).append(" -> ").append(result.pagesAfter()).append(" pages, ")
+              .append(result.bytesReclaimed()).append(" bytes reclaimed.");
+        }
+        return sb.toString();
+    }
+}
@@ -1,11 +1,22 @@
 package com.mpdb.repl;
 
+import com.mpdb.catalog.TableSchema;
+import com.mpdb.executor.SqlCreateTableWithOptions;
+import com.mpdb.executor.SqlVacuum;
+import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.ddl.SqlCreateTable;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.parser.ddl.SqlDdlParserImpl;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * SQL query parser using Apache Calcite.
  * Provides SQL parsing, AST generation, and basic validation.
@@ -14,6 +25,14 @@ import org.springframework.stereotype.Component;
 @Component
 public class CalciteQueryParser {
 
+    // Not part of Calcite's grammar, so recognised before the input reaches the parser
+    private static final Pattern VACUUM = Pattern.compile("(?i)\\s*VACUUM(?:\\s+([A-Za-z_][A-Za-z0-9_]*))?\\s*");
+    private static final String TABLE_OPTION = "(PAGE_SIZE)\\s*=\\s*(\\d{1,9})|(COMPRESSION)\\s*=\\s*'?(LZ4|NONE)'?"
+            + "|(BLOOM_FILTER)\\s*=\\s*'\\s*([A-Za-z_][A-Za-z0-9_]*(?:\\s*,\\s*[A-Za-z_][A-Za-z0-9_]*)*)\\s*'";
+    private static final Pattern CREATE_TABLE_WITH = Pattern.compile("(?is)(\\s*CREATE\\s+TABLE\\b.*?)\\s+WITH\\s*\\(\\s*("
+            + "(?:" + TABLE_OPTION + ")(?:\\s*,\\s*(?:" + TABLE_OPTION + "))*)\\s*\\)\\s*");
+    private static final Pattern TABLE_OPTIONS = Pattern.compile("(?i)" + TABLE_OPTION);
+
     private final SqlParser.Config parserConfig;
 
     public CalciteQueryParser() {
@@ -35,6 +54,33 @@ public class CalciteQueryParser {
         if (trimmed.endsWith(";")) {
             trimmed = trimmed.substring(0, trimmed.length() - 1);
         }
+        Matcher vacuum = VACUUM.matcher(trimmed);
+        if (vacuum.matches()) {
+            SqlIdentifier name = vacuum.group(1) == null ? null
+                    : new SqlIdentifier(vacuum.group(1).toUpperCase(Locale.ROOT), SqlParserPos.ZERO);
+            return new SqlVacuum(SqlParserPos.ZERO, name);
+        }
+        Matcher createWith = CREATE_TABLE_WITH.matcher(trimmed);
+        if (createWith.matches()) {
+            SqlNode node = SqlParser.create(createWith.group(1), parserConfig).parseStmt();
+            if (!(node instanceof SqlCreateTable createTable)) {
+                return node;
+            }
+            int pageSize = TableSchema.DEFAULT_PAGE_SIZE;
+            boolean compressed = false;
+            List<String> bloomFilterColumns = List.of();
+            Matcher option = TABLE_OPTIONS.matcher(createWith.group(2));
+            while (option.find()) {
+                if (option.group(1) != null) {
+                    pageSize = Integer.parseInt(option.group(2));
+                } else if (option.group(3) != null) {
+                    compressed = option.group(4).equalsIgnoreCase("LZ4");
+                } else {
+                    bloomFilterColumns = List.of(option.group(6).toUpperCase(Locale.ROOT).split("\\s*,\\s*"));
+                }
+            }
+            return new SqlCreateTableWithOptions(createTable, pageSize, compressed, bloomFilterColumns);
+        }
         SqlParser parser = SqlParser.create(trimmed, parserConfig);
         return parser.parseStmt();
     }
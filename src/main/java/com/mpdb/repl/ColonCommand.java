@@ -15,6 +15,8 @@ public enum ColonCommand {
     H("h"),
     QUESTION("?"),
     STATUS("status"),
+    DURABILITY("durability"),
+    VACUUM("vacuum"),
     WRONG("wrong-command");
 
     private static final Map<String, ColonCommand> BY_NAME = new HashMap<>();
@@ -32,6 +34,8 @@ public enum ColonCommand {
         alias("?", QUESTION);
         alias("debug-ast", DEBUG_AST);
         alias("status", STATUS);
+        alias("durability", DURABILITY);
+        alias("vacuum", VACUUM);
     }
 
     private final String primaryName;
@@ -1,7 +1,12 @@
 package com.mpdb.repl;
 
+import com.mpdb.executor.VacuumHandler;
+import com.mpdb.storage.DurabilityMode;
+import com.mpdb.storage.StorageEngine;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * Processor for handling colon-prefixed commands (meta commands).
  */
@@ -9,9 +14,11 @@ import org.springframework.stereotype.Component;
 public class ColonCommandProcessor implements Processor {
 
     private final DbState dbState;
+    private final StorageEngine storageEngine;
 
-    public ColonCommandProcessor(DbState dbState) {
+    public ColonCommandProcessor(DbState dbState, StorageEngine storageEngine) {
         this.dbState = dbState;
+        this.storageEngine = storageEngine;
     }
 
     @Override
@@ -32,6 +39,8 @@ public class ColonCommandProcessor implements Processor {
             case QUIT, EXIT, Q -> handleQuit();
             case HELP, H, QUESTION -> getHelp();
             case STATUS -> handleStatus();
+            case DURABILITY -> handleDurability(arg);
+            case VACUUM -> handleVacuum(arg);
             case WRONG -> "Unknown command: :" + commandToken + "\nType ':help' or 'help' for available commands.";
         };
     }
@@ -53,13 +62,41 @@ public class ColonCommandProcessor implements Processor {
         }
     }
 
+    private String handleDurability(String arg) {
+        if (arg == null) {
+            return "Durability mode is currently: " + storageEngine.getDurabilityMode() +
+                   "\nUsage: :durability [strict|group|os]";
+        }
+
+        DurabilityMode mode;
+        try {
+            mode = DurabilityMode.valueOf(arg.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return "Invalid argument. Usage: :durability [strict|group|os]";
+        }
+        storageEngine.setDurabilityMode(mode);
+        return "✅ Durability mode set to " + mode + ".";
+    }
+
+    private String handleVacuum(String arg) {
+        try {
+            if (arg == null) {
+                return VacuumHandler.describe(storageEngine.vacuumAll());
+            }
+            return VacuumHandler.describe(List.of(storageEngine.vacuum(arg)));
+        } catch (RuntimeException e) {
+            return "Vacuum failed: " + e.getMessage();
+        }
+    }
+
     private String handleQuit() {
         return "EXIT";
     }
 
     private String handleStatus() {
         return "=== System Status ===\n" +
-               "Debug AST mode: " + (dbState.isDebugAstMode() ? "ON" : "OFF") + "\n";
+               "Debug AST mode: " + (dbState.isDebugAstMode() ? "ON" : "OFF") + "\n" +
+               "Durability mode: " + storageEngine.getDurabilityMode() + "\n";
     }
 
     private String getHelp() {
@@ -69,6 +106,8 @@ public class ColonCommandProcessor implements Processor {
                   :help, :h, :?        - Show this help message
                   :status              - Show system status (debug modes)
                   :debug-ast [on|off]  - Enable/disable AST debug output
+                  :durability [mode]   - Show/set durability: strict, group or os
+                  :vacuum [table]      - Pack and truncate one table, or all tables
 
                 SQL Statements:
                   CREATE TABLE t (col TYPE, ...)  - Create a new table
@@ -77,6 +116,7 @@ public class ColonCommandProcessor implements Processor {
                   SELECT * FROM t [WHERE ...]     - Query rows
                   UPDATE t SET col=val [WHERE ..] - Update rows
                   DELETE FROM t [WHERE ...]       - Delete rows
+                  VACUUM [t]                      - Reclaim space left by deleted rows
 
                 Supported types: INT, FLOAT, VARCHAR(n), TEXT, BOOLEAN
                 """;
@@ -0,0 +1,126 @@
+package com.mpdb.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Background thread that vacuums tables once enough of their tuples have been deleted, so that
+ * files of tables that shrank are packed and truncated without anyone running {@code VACUUM}.
+ *
+ * <p>Every interval it looks at the tables opened so far and vacuums those with at least
+ * {@link #MIN_DEAD_TUPLES} dead tuples making up at least the configured share of all their tuples.
+ * Deletes that later inserts have filled back up do not count, so steady churn never triggers it.
+ */
+public class AutoVacuum implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AutoVacuum.class);
+
+    static final int MIN_DEAD_TUPLES = 50;
+
+    private final Supplier<Collection<HeapFile>> heapFiles;
+    private final Predicate<String> tableExists;
+    private final Function<String, HeapFile.VacuumResult> vacuum;
+    private final long intervalMillis;
+    private final double deadRatio;
+
+    private final Object lock = new Object();
+    private volatile boolean closed;
+    private Thread thread;
+    private long vacuums;
+
+    /**
+     * @param tableExists    whether the named table still exists, to tell a drop from a failed vacuum
+     * @param vacuum         vacuums the named table, taking whatever locks that requires
+     * @param intervalMillis wait between checks; 0 disables automatic vacuuming
+     * @param deadRatio      share of dead tuples at which a table is vacuumed
+     */
+    public AutoVacuum(Supplier<Collection<HeapFile>> heapFiles, Predicate<String> tableExists,
+                      Function<String, HeapFile.VacuumResult> vacuum, long intervalMillis, double deadRatio) {
+        this.heapFiles = heapFiles;
+        this.tableExists = tableExists;
+        this.vacuum = vacuum;
+        this.intervalMillis = intervalMillis;
+        this.deadRatio = deadRatio;
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (thread == null && !closed && intervalMillis > 0) {
+                thread = new Thread(this::run, "mpdb-autovacuum");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /** Vacuums every table that needs it, on the calling thread. */
+    public void vacuumDeadTables() {
+        for (HeapFile heapFile : heapFiles.get()) {
+            if (closed) return;
+            if (heapFile.getDeadTupleCount() < MIN_DEAD_TUPLES || heapFile.getDeadTupleRatio() < deadRatio) {
+                continue;
+            }
+            String table = heapFile.getSchema().getTableName();
+            try {
+                HeapFile.VacuumResult result = vacuum.apply(table);
+                synchronized (lock) {
+                    vacuums++;
+                }
+                log.info("Vacuumed table '{}': {} -> {} pages, {} bytes reclaimed",
+                        table, result.pagesBefore(), result.pagesAfter(), result.bytesReclaimed());
+            } catch (RuntimeException e) {
+                if (!tableExists.test(table)) {
+                    log.debug("Skipped vacuuming '{}': table was dropped", table);
+                } else {
+                    log.warn("Failed to vacuum table '{}'", table, e);
+                }
+            }
+        }
+    }
+
+    public long getVacuumCount() {
+        synchronized (lock) {
+            return vacuums;
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread running;
+        synchronized (lock) {
+            closed = true;
+            running = thread;
+            lock.notifyAll();
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (lock) {
+                long deadline = System.currentTimeMillis() + intervalMillis;
+                long remaining;
+                while (!closed && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+            }
+            vacuumDeadTables();
+        }
+    }
+}
@@ -0,0 +1,683 @@
+package com.mpdb.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shared, bounded cache of pages for all disk-backed heap files.
+ *
+ * <p>Callers pin a page with {@link #fetchPage} or {@link #newPage}, use it, and release it with
+ * {@link #unpinPage}, flagging it dirty if they modified it. Pinned pages are never evicted. When
+ * the memory budget is exhausted, an unpinned page is chosen with the CLOCK (second-chance) policy
+ * and written back first if it is dirty. The budget is counted in bytes, so pages of tables with a
+ * larger page size take a correspondingly larger share of it.
+ *
+ * <p>When a {@link WriteAheadLog} is configured, modified pages stay in memory until {@link #commit()}
+ * logs their after-images; only then may they be written back (no-steal), and only after the log is
+ * durable up to their image (write-ahead rule). Changes made outside {@link #beginStatement()} are
+ * committed as soon as the page is unpinned. A statement that changes more pages than the pool holds
+ * has its unpinned changed pages logged in a commit of their own whenever the pool runs out of
+ * evictable pages, so it commits in batches instead of growing the pool past its budget.
+ *
+ * <p>With off-heap pages, pages read with standard I/O and new pages live in direct buffers of a
+ * {@link PageArena}, which are recycled when their page leaves the pool. Pages of memory-mapped files
+ * are views of the mapping, off the heap already, until they are first modified.
+ */
+public class BufferPool {
+
+    private static final Logger log = LoggerFactory.getLogger(BufferPool.class);
+
+    private final long capacityBytes;
+    private final DurabilityManager durability;
+    private final WriteAheadLog wal;
+    private final PageArena arena; // null: pages live on the Java heap
+    private final Map<PageKey, Frame> frames = new HashMap<>();
+    private final List<Frame> clock = new ArrayList<>(); // null where a frame was removed
+    private final Deque<Integer> freeClockSlots = new ArrayDeque<>();
+    private final List<Frame> unloggedFrames = new ArrayList<>();
+    private int clockHand;
+    private long usedBytes;
+    private boolean inStatement;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long prefetched;
+    private long pageWrites; // bumped on every write-back, lets prefetch detect stale reads
+    private ExecutorService prefetchExecutor;
+
+    public BufferPool(long capacityBytes) {
+        this(capacityBytes, new DurabilityManager(DurabilityMode.STRICT, 0, null));
+    }
+
+    public BufferPool(long capacityBytes, DurabilityManager durability) {
+        this(capacityBytes, durability, false);
+    }
+
+    public BufferPool(long capacityBytes, DurabilityManager durability, boolean offHeap) {
+        if (capacityBytes < SlottedPage.PAGE_SIZE) {
+            throw new IllegalArgumentException("Buffer pool must hold at least one page");
+        }
+        this.capacityBytes = capacityBytes;
+        this.durability = durability;
+        this.wal = durability.getWal();
+        this.arena = offHeap ? new PageArena() : null;
+    }
+
+    /** Pins the page, reading it from disk if it is not resident. */
+    public synchronized SlottedPage fetchPage(DiskPageManager file, int pageIndex) {
+        PageKey key = new PageKey(file, pageIndex);
+        Frame frame = frames.get(key);
+        if (frame != null) {
+            hits++;
+        } else {
+            misses++;
+            makeRoom(file.getPageSize());
+            try {
+                frame = addFrame(key, readPage(file, pageIndex));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read page " + pageIndex, e);
+            }
+        }
+        frame.pinCount++;
+        frame.referenced = true;
+        return frame.page;
+    }
+
+    /**
+     * Loads the pages in {@code [firstPage, firstPage + count)} that are not resident yet, reading
+     * each run of missing pages with a single {@link DiskPageManager#readPages} call. The pages are
+     * left unpinned. Disk reads happen outside the pool lock, so other threads keep using the pool
+     * meanwhile. Prefetching never takes more than a quarter of the pool and stops rather than
+     * overshoot the budget.
+     *
+     * @return the number of pages loaded
+     */
+    public int prefetch(DiskPageManager file, int firstPage, int count) {
+        List<int[]> runs = new ArrayList<>();
+        long writesBefore;
+        synchronized (this) {
+            count = (int) Math.min(count, capacityBytes / file.getPageSize() / 4);
+            int runStart = -1;
+            for (int i = firstPage; i <= firstPage + count; i++) {
+                boolean missing = i < firstPage + count && !frames.containsKey(new PageKey(file, i));
+                if (missing && runStart < 0) {
+                    runStart = i;
+                } else if (!missing && runStart >= 0) {
+                    runs.add(new int[]{runStart, i - runStart});
+                    runStart = -1;
+                }
+            }
+            writesBefore = pageWrites;
+        }
+        int loaded = 0;
+        for (int[] run : runs) {
+            ByteBuffer[] buffers;
+            try {
+                buffers = file.readPages(run[0], run[1]);
+            } catch (IOException e) {
+                log.debug("Prefetch of {} page(s) from {} failed: {}", run[1], file.getFileName(), e.getMessage());
+                break;
+            }
+            int n = install(file, run[0], buffers, writesBefore);
+            loaded += n;
+            if (n < run[1]) break;
+        }
+        return loaded;
+    }
+
+    /** Runs {@link #prefetch} on the pool's background I/O thread. */
+    public CompletableFuture<Integer> prefetchAsync(DiskPageManager file, int firstPage, int count) {
+        return CompletableFuture.supplyAsync(() -> prefetch(file, firstPage, count), ioExecutor());
+    }
+
+    /** Stops the background I/O thread. */
+    public void close() {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = prefetchExecutor;
+            prefetchExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Pins a freshly initialised page that does not exist on disk yet. The page starts dirty. */
+    public synchronized SlottedPage newPage(DiskPageManager file, int pageIndex) {
+        PageKey key = new PageKey(file, pageIndex);
+        if (frames.containsKey(key)) {
+            throw new IllegalStateException("Page " + pageIndex + " is already resident");
+        }
+        makeRoom(file.getPageSize());
+        Frame frame = addFrame(key, arena != null
+                ? new SlottedPage(pageIndex, arena.allocate(file.getPageSize()))
+                : new SlottedPage(pageIndex, file.getPageSize()));
+        frame.pinCount++;
+        frame.referenced = true;
+        frame.dirty = true;
+        return frame.page;
+    }
+
+    public void unpinPage(DiskPageManager file, int pageIndex, boolean dirty) {
+        boolean autoCommit;
+        synchronized (this) {
+            Frame frame = frames.get(new PageKey(file, pageIndex));
+            if (frame == null || frame.pinCount == 0) {
+                throw new IllegalStateException("Page " + pageIndex + " is not pinned");
+            }
+            frame.pinCount--;
+            if (dirty) {
+                frame.dirty = true;
+                if (wal != null && !frame.unlogged) {
+                    frame.unlogged = true;
+                    unloggedFrames.add(frame);
+                }
+            }
+            autoCommit = dirty && !inStatement;
+        }
+        if (autoCommit) {
+            commit();
+        }
+    }
+
+    /** Starts a statement: page changes are held back until {@link #commit()}. */
+    public synchronized void beginStatement() {
+        inStatement = true;
+    }
+
+    /**
+     * Ends the current statement: appends the after-image of every page changed since the last commit
+     * to the write-ahead log, followed by a COMMIT record, and makes it durable per the durability mode.
+     */
+    public void commit() {
+        awaitCommit(logCommit());
+    }
+
+    /**
+     * First half of {@link #commit()}: ends the current statement and appends its page images and
+     * COMMIT record to the write-ahead log, without waiting for them to become durable. Returns the
+     * end of the commit for {@link #awaitCommit}, or -1 if the statement changed no page.
+     */
+    public long logCommit() {
+        synchronized (this) {
+            inStatement = false;
+            if (unloggedFrames.isEmpty()) return -1;
+            long commitLsn = logFrames(unloggedFrames);
+            unloggedFrames.clear();
+            return commitLsn;
+        }
+    }
+
+    /** Appends the images of {@code batch} and a COMMIT record to the log, and marks the frames logged. */
+    private long logFrames(List<Frame> batch) {
+        List<WriteAheadLog.PageImage> images = new ArrayList<>(batch.size());
+        for (Frame frame : batch) {
+            images.add(new WriteAheadLog.PageImage(
+                    frame.key.file().getFileName(), frame.key.pageIndex(), frame.page.getBuffer()));
+        }
+        long commitLsn;
+        try {
+            commitLsn = wal.appendCommit(images);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append commit to the write-ahead log", e);
+        }
+        for (Frame frame : batch) {
+            frame.unlogged = false;
+            frame.pageLsn = commitLsn;
+        }
+        return commitLsn;
+    }
+
+    /**
+     * Second half of {@link #commit()}: makes a commit returned by {@link #logCommit()} durable per
+     * the durability mode. In GROUP mode this blocks until the shared fsync has completed.
+     */
+    public void awaitCommit(long commitLsn) {
+        if (commitLsn >= 0) {
+            durability.commit(commitLsn);
+        }
+    }
+
+    /** A page of a table file. */
+    public record PageRef(DiskPageManager file, int pageIndex) {
+    }
+
+    /**
+     * The starting point of a fuzzy checkpoint: once every page in {@code pages} has been written and
+     * the files synced, the log before {@code redoLsn} is no longer needed.
+     */
+    public record CheckpointPlan(long redoLsn, List<PageRef> pages) {
+    }
+
+    /**
+     * Captures the current end of the log together with every committed dirty page, sorted by file
+     * and page index. Commits append to the log under the pool lock, so the two are consistent.
+     */
+    public synchronized CheckpointPlan planCheckpoint() {
+        if (wal == null) {
+            throw new IllegalStateException("Checkpoints require a write-ahead log");
+        }
+        List<PageRef> pages = new ArrayList<>();
+        for (Frame frame : frames.values()) {
+            if (frame.dirty) {
+                pages.add(new PageRef(frame.key.file(), frame.key.pageIndex()));
+            }
+        }
+        pages.sort(Comparator.comparing((PageRef ref) -> ref.file().getFileName()).thenComparingInt(PageRef::pageIndex));
+        try {
+            return new CheckpointPlan(wal.getEndLsn(), pages);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read write-ahead log position", e);
+        }
+    }
+
+    /**
+     * Writes the dirty pages among {@code count} consecutive pages of {@code file}, coalescing adjacent
+     * ones into single writes. Pages that are pinned or hold uncommitted changes cannot be written
+     * consistently right now and are added to {@code busy}; pages that are no longer resident or dirty
+     * were written back by eviction and are skipped.
+     *
+     * @return the number of bytes written
+     */
+    public synchronized long writeRun(DiskPageManager file, int firstPage, int count, List<PageRef> busy) {
+        List<Frame> run = new ArrayList<>(count);
+        long written = 0;
+        for (int i = 0; i <= count; i++) {
+            Frame frame = i < count ? frames.get(new PageKey(file, firstPage + i)) : null;
+            if (frame != null && frame.dirty && (frame.pinCount > 0 || frame.unlogged)) {
+                busy.add(new PageRef(file, firstPage + i));
+                frame = null;
+            }
+            if (frame != null && frame.dirty) {
+                run.add(frame);
+            } else if (!run.isEmpty()) {
+                written += writeFrames(run);
+                run.clear();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Writes back every committed dirty page, syncs the table files and discards the write-ahead log.
+     * Must be called between statements.
+     */
+    public synchronized void checkpoint() {
+        if (wal == null) return;
+        if (!unloggedFrames.isEmpty()) {
+            throw new IllegalStateException("Cannot checkpoint while a statement has uncommitted changes");
+        }
+        for (Frame frame : frames.values()) {
+            writeBack(frame);
+        }
+        try {
+            durability.syncDataFiles();
+            wal.reset();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Checkpoint failed", e);
+        }
+    }
+
+    /** Writes the page back to disk if it is resident and dirty. */
+    public synchronized void flushPage(DiskPageManager file, int pageIndex) {
+        Frame frame = frames.get(new PageKey(file, pageIndex));
+        if (frame != null) {
+            writeBack(frame);
+        }
+    }
+
+    /** Writes back every committed dirty page belonging to the given file. */
+    public synchronized void flushAll(DiskPageManager file) {
+        for (Frame frame : frames.values()) {
+            if (frame.key.file() == file) {
+                writeBack(frame);
+            }
+        }
+    }
+
+    /** Removes every page of the given file from the pool without writing it back. */
+    public synchronized void discardAll(DiskPageManager file) {
+        for (int slot = 0; slot < clock.size(); slot++) {
+            Frame frame = clock.get(slot);
+            if (frame != null && frame.key.file() == file) {
+                removeFrame(slot);
+                unloggedFrames.remove(frame);
+            }
+        }
+    }
+
+    /**
+     * Drops the pages of {@code file} from {@code pageCount} on and truncates the file to that length.
+     * The dropped pages must be unpinned and their latest changes committed, so that recovery replays
+     * them as they are now rather than from an older image.
+     */
+    public synchronized void truncate(DiskPageManager file, int pageCount) {
+        for (int slot = 0; slot < clock.size(); slot++) {
+            Frame frame = clock.get(slot);
+            if (frame == null || frame.key.file() != file || frame.key.pageIndex() < pageCount) continue;
+            if (frame.pinCount > 0 || frame.unlogged) {
+                throw new IllegalStateException("Cannot truncate page " + frame.key.pageIndex() + " while it is in use");
+            }
+            removeFrame(slot);
+        }
+        pageWrites++; // reads already in flight may cover the dropped pages
+        try {
+            file.truncate(pageCount);
+            durability.pageWritten(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to truncate " + file.getFileName(), e);
+        }
+    }
+
+    public synchronized boolean isResident(DiskPageManager file, int pageIndex) {
+        return frames.containsKey(new PageKey(file, pageIndex));
+    }
+
+    /** Whether pages are kept in off-heap memory. */
+    public boolean isOffHeap() {
+        return arena != null;
+    }
+
+    /** Off-heap memory taken for pages so far; 0 for a pool keeping pages on the heap. */
+    public long getOffHeapBytes() {
+        return arena != null ? arena.getAllocatedBytes() : 0;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public synchronized int getResidentPageCount() {
+        return frames.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getPrefetched() {
+        return prefetched;
+    }
+
+    /**
+     * Adds pages read by {@link #prefetch} that are still missing. If any page was written to disk
+     * since the read started, the bytes may be stale and the whole batch is dropped.
+     */
+    private synchronized int install(DiskPageManager file, int firstPage, ByteBuffer[] buffers, long writesBefore) {
+        if (pageWrites != writesBefore) {
+            return 0;
+        }
+        for (int i = 0; i < buffers.length; i++) {
+            PageKey key = new PageKey(file, firstPage + i);
+            if (frames.containsKey(key)) continue;
+            if (!tryMakeRoom(file.getPageSize())) {
+                return i;
+            }
+            ByteBuffer data = ownBuffer(buffers[i], file.getPageSize());
+            try {
+                Frame frame = addFrame(key, loadPage(file, firstPage + i, data));
+                frame.referenced = true; // survive one sweep so the scan finds it
+            } catch (IOException e) {
+                releaseBuffer(data);
+                return i; // left for fetchPage to report
+            }
+            prefetched++;
+        }
+        return buffers.length;
+    }
+
+    /**
+     * The buffer a prefetched page keeps while resident. A heap page read as a slice of a larger
+     * multi-page read is copied out, so that it does not keep the whole read reachable while the
+     * budget counts only one page; heap pages go to the arena when pages are kept off the heap.
+     */
+    private ByteBuffer ownBuffer(ByteBuffer data, int pageSize) {
+        if (arena != null && !data.isDirect()) {
+            return arena.copyOf(data, pageSize);
+        }
+        if (data.hasArray() && data.array().length != pageSize) {
+            int from = data.arrayOffset() + data.position();
+            return ByteBuffer.wrap(Arrays.copyOfRange(data.array(), from, from + pageSize));
+        }
+        return data;
+    }
+
+    private synchronized ExecutorService ioExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "mpdb-read-ahead");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetchExecutor;
+    }
+
+    /** Reads a page from disk, into an arena buffer unless the file is memory-mapped. */
+    private SlottedPage readPage(DiskPageManager file, int pageIndex) throws IOException {
+        if (arena == null || file.getIoMode() == IoMode.MMAP) {
+            return loadPage(file, pageIndex, file.readPageBuffer(pageIndex));
+        }
+        ByteBuffer buffer = arena.allocate(file.getPageSize());
+        try {
+            file.readPage(pageIndex, buffer);
+            return loadPage(file, pageIndex, buffer);
+        } catch (IOException | RuntimeException e) {
+            arena.release(buffer);
+            throw e;
+        }
+    }
+
+    private static SlottedPage loadPage(DiskPageManager file, int pageIndex, ByteBuffer data) throws IOException {
+        SlottedPage page = new SlottedPage(data);
+        if (!page.verifyChecksum()) {
+            if (!page.hasCurrentFormat()) {
+                throw new IOException("Unsupported page format on page " + pageIndex + " of " + file.getFileName()
+                        + ": the page has no format marker, and tables of the original format are upgraded"
+                        + " when they are opened, so the file is damaged");
+            }
+            throw new IOException("Checksum mismatch on page " + pageIndex + " of " + file.getFileName());
+        }
+        if (page.isUnformatted()) {
+            // Hole left by an out-of-order write-back; a read-only view of a mapping cannot be formatted in place
+            page = data.isReadOnly()
+                    ? new SlottedPage(pageIndex, file.getPageSize())
+                    : new SlottedPage(pageIndex, data);
+        }
+        return page;
+    }
+
+    /** Gives the memory of a frame leaving the pool back to the budget and, for off-heap pages, the arena. */
+    private void release(Frame frame) {
+        usedBytes -= frame.page.getPageSize();
+        if (arena != null) {
+            arena.release(frame.page.detach());
+        }
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        if (arena != null) {
+            arena.release(buffer);
+        }
+    }
+
+    /** Frees {@code needed} bytes of budget by evicting, without ever going over budget. */
+    private boolean tryMakeRoom(int needed) {
+        while (usedBytes + needed > capacityBytes) {
+            int victim = findVictim();
+            if (victim < 0) {
+                return false;
+            }
+            evict(victim);
+        }
+        return true;
+    }
+
+    private Frame addFrame(PageKey key, SlottedPage page) {
+        Frame frame = new Frame(key, page);
+        frames.put(key, frame);
+        Integer slot = freeClockSlots.poll();
+        if (slot != null) {
+            clock.set(slot, frame);
+        } else {
+            clock.add(frame);
+        }
+        usedBytes += page.getPageSize();
+        return frame;
+    }
+
+    /** Takes the frame in {@code slot} of the clock out of the pool, leaving the slot for the next frame added. */
+    private Frame removeFrame(int slot) {
+        Frame frame = clock.set(slot, null);
+        freeClockSlots.push(slot);
+        frames.remove(frame.key);
+        release(frame);
+        return frame;
+    }
+
+    private void makeRoom(int needed) {
+        while (usedBytes + needed > capacityBytes) {
+            int victim = findVictim();
+            if (victim < 0) {
+                if (!logUnpinnedChanges()) {
+                    throw new IllegalStateException("Buffer pool exhausted: all " + frames.size() + " pages are pinned");
+                }
+                continue; // the pages just logged can be evicted now
+            }
+            evict(victim);
+        }
+    }
+
+    /**
+     * Commits the changes of the running statement to unpinned pages early, so that those pages can
+     * be evicted: uncommitted pages cannot be written out, and a statement changing more pages than
+     * the pool holds would otherwise have to keep them all. Pinned pages may be in the middle of a
+     * change and stay unlogged until the statement commits.
+     *
+     * @return whether any page was logged
+     */
+    private boolean logUnpinnedChanges() {
+        List<Frame> batch = new ArrayList<>();
+        for (Frame frame : unloggedFrames) {
+            if (frame.pinCount == 0) {
+                batch.add(frame);
+            }
+        }
+        if (batch.isEmpty()) {
+            return false;
+        }
+        logFrames(batch);
+        unloggedFrames.removeIf(frame -> !frame.unlogged);
+        log.debug("Buffer pool full: committed {} page(s) of the running statement early", batch.size());
+        return true;
+    }
+
+    /**
+     * Sweeps the clock hand over the frames, clearing reference bits, until it finds an unpinned,
+     * committed frame that has not been referenced since the last sweep. Returns -1 if there is none.
+     */
+    private int findVictim() {
+        // Two full turns are enough: the first clears every reference bit
+        for (int scanned = 0; scanned < 2 * clock.size(); scanned++) {
+            if (clockHand >= clock.size()) {
+                clockHand = 0;
+            }
+            Frame frame = clock.get(clockHand);
+            if (frame != null && frame.pinCount == 0 && !frame.unlogged) {
+                if (!frame.referenced) {
+                    return clockHand;
+                }
+                frame.referenced = false;
+            }
+            clockHand++;
+        }
+        return -1;
+    }
+
+    private void evict(int index) {
+        writeBack(clock.get(index));
+        Frame victim = removeFrame(index);
+        evictions++;
+        log.trace("Evicted page {}", victim.key.pageIndex());
+    }
+
+    private void writeBack(Frame frame) {
+        if (!frame.dirty || frame.unlogged) return; // uncommitted changes never reach the table file
+        try {
+            durability.beforePageWrite(frame.pageLsn);
+            frame.page.updateChecksum();
+            pageWrites++;
+            frame.key.file().writePage(frame.key.pageIndex(), frame.page.getBuffer());
+            durability.pageWritten(frame.key.file());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write page " + frame.key.pageIndex(), e);
+        }
+        frame.dirty = false;
+    }
+
+    /** Writes frames of consecutive pages of one file with a single call. */
+    private long writeFrames(List<Frame> run) {
+        Frame first = run.get(0);
+        ByteBuffer[] pages = new ByteBuffer[run.size()];
+        long maxLsn = 0;
+        for (int i = 0; i < run.size(); i++) {
+            run.get(i).page.updateChecksum();
+            pages[i] = run.get(i).page.getBuffer();
+            maxLsn = Math.max(maxLsn, run.get(i).pageLsn);
+        }
+        try {
+            durability.beforePageWrite(maxLsn);
+            pageWrites++;
+            first.key.file().writePages(first.key.pageIndex(), pages);
+            durability.pageWritten(first.key.file());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write pages from " + first.key.pageIndex(), e);
+        }
+        for (Frame frame : run) {
+            frame.dirty = false;
+        }
+        return (long) run.size() * first.key.file().getPageSize();
+    }
+
+    private record PageKey(DiskPageManager file, int pageIndex) {
+    }
+
+    private static final class Frame {
+        private final PageKey key;
+        private final SlottedPage page;
+        private int pinCount;
+        private boolean dirty;
+        private boolean unlogged;   // changed since the last commit; not yet in the log
+        private long pageLsn;       // end of the commit that logged the latest image
+        private boolean referenced;
+
+        private Frame(PageKey key, SlottedPage page) {
+            this.key = key;
+            this.page = page;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.mpdb.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Background thread that takes fuzzy checkpoints: committed dirty pages are written back to the table
+ * files while statements keep running, then a CHECKPOINT record is logged and the log before it is
+ * dropped. Page writes therefore happen off the query path, and recovery only has to replay what was
+ * logged since the last checkpoint began.
+ *
+ * <p>Dirty pages are written in file and page order, with up to {@link #MAX_RUN_PAGES} adjacent pages
+ * coalesced into one write. Writes are paced to the configured rate so that checkpoints do not starve
+ * foreground I/O. A checkpoint runs every interval, or earlier when {@link #requestCheckpoint()} is
+ * called because the log has grown too large.
+ */
+public class Checkpointer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(Checkpointer.class);
+
+    static final int MAX_RUN_PAGES = 32;
+    private static final long BUSY_RETRY_MILLIS = 5;
+
+    private final BufferPool bufferPool;
+    private final DurabilityManager durability;
+    private final WriteAheadLog wal;
+    private final long intervalMillis;
+    private final long maxBytesPerSecond;
+
+    private final Object lock = new Object();
+    private final Object runLock = new Object();
+    private boolean requested;
+    private volatile boolean closed;
+    private Thread thread;
+    private long checkpoints;
+    private long lastCheckpointEnd = -1; // guarded by runLock
+
+    /**
+     * @param intervalMillis    time between periodic checkpoints; 0 runs them only on request
+     * @param maxBytesPerSecond page write budget; 0 for unlimited
+     */
+    public Checkpointer(BufferPool bufferPool, DurabilityManager durability, long intervalMillis, long maxBytesPerSecond) {
+        this.bufferPool = bufferPool;
+        this.durability = durability;
+        this.wal = durability.getWal();
+        this.intervalMillis = intervalMillis;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    /** Starts the background thread if it is not running yet. */
+    public void start() {
+        synchronized (lock) {
+            if (thread == null && !closed) {
+                thread = new Thread(this::run, "mpdb-checkpointer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /** Asks the background thread to checkpoint as soon as possible, without waiting for it. */
+    public void requestCheckpoint() {
+        start();
+        synchronized (lock) {
+            requested = true;
+            lock.notifyAll();
+        }
+    }
+
+    public long getCheckpointCount() {
+        synchronized (lock) {
+            return checkpoints;
+        }
+    }
+
+    /**
+     * Takes a checkpoint on the calling thread.
+     *
+     * @return false if it was abandoned because the checkpointer was closed
+     */
+    public boolean checkpoint() {
+        synchronized (runLock) {
+            BufferPool.CheckpointPlan plan = bufferPool.planCheckpoint();
+            try {
+                if (plan.pages().isEmpty() && (wal.getSize() == 0 || plan.redoLsn() == lastCheckpointEnd)) {
+                    return true; // nothing logged since the last checkpoint
+                }
+                if (!writePages(plan.pages())) {
+                    return false;
+                }
+                durability.syncDataFiles();
+                lastCheckpointEnd = wal.appendCheckpoint(plan.redoLsn());
+                wal.sync();
+                wal.truncateBefore(plan.redoLsn());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Checkpoint failed", e);
+            }
+            synchronized (lock) {
+                checkpoints++;
+            }
+            log.debug("Checkpoint wrote {} page(s); redo now starts at LSN {}", plan.pages().size(), plan.redoLsn());
+            return true;
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread running;
+        synchronized (lock) {
+            closed = true;
+            running = thread;
+            lock.notifyAll();
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Writes the planned pages run by run, retrying pages that are in use until they can be written. */
+    private boolean writePages(List<BufferPool.PageRef> pending) {
+        while (!pending.isEmpty()) {
+            List<BufferPool.PageRef> busy = new ArrayList<>();
+            int start = 0;
+            while (start < pending.size()) {
+                if (closed) return false;
+                BufferPool.PageRef first = pending.get(start);
+                int end = start + 1;
+                while (end < pending.size() && end - start < MAX_RUN_PAGES
+                        && pending.get(end).file() == first.file()
+                        && pending.get(end).pageIndex() == first.pageIndex() + (end - start)) {
+                    end++;
+                }
+                long written = bufferPool.writeRun(first.file(), first.pageIndex(), end - start, busy);
+                throttle(written);
+                start = end;
+            }
+            if (!busy.isEmpty()) {
+                // A statement is still changing these pages; its commit will not take long
+                pause(BUSY_RETRY_MILLIS);
+            }
+            pending = busy;
+        }
+        return true;
+    }
+
+    private void throttle(long bytesWritten) {
+        if (maxBytesPerSecond <= 0 || bytesWritten == 0) return;
+        pause(bytesWritten * 1000 / maxBytesPerSecond);
+    }
+
+    private void pause(long millis) {
+        if (millis <= 0) return;
+        synchronized (lock) {
+            if (closed) return;
+            try {
+                lock.wait(millis); // woken early by close()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (lock) {
+                long deadline = intervalMillis > 0 ? System.currentTimeMillis() + intervalMillis : Long.MAX_VALUE;
+                while (!requested && !closed) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) break;
+                    try {
+                        lock.wait(intervalMillis > 0 ? remaining : 0);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+                requested = false;
+            }
+            try {
+                checkpoint();
+            } catch (RuntimeException e) {
+                log.error("Background checkpoint failed: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.mpdb.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Table file whose pages are stored compressed with {@link Lz4Codec}, for tables created with
+ * {@code compression = lz4}. Callers see the same fixed-size pages as with a plain file.
+ *
+ * <p>The file is a sequence of extents, each a multiple of {@link #SECTOR_SIZE} bytes and starting
+ * with a header: page index ({@code -1} for a free extent), extent size, stored length and a sequence
+ * number. A page is rewritten in place while it fits its extent; otherwise it moves to a free extent
+ * or the end of the file, and its old extent is freed only once the new copy is written. Free
+ * neighbours are merged and free space at the end of the file is cut off. A page that does not
+ * compress is stored as is.
+ *
+ * <p>The page map (page index to extent) is kept in memory, so pages stay randomly addressable. It is
+ * saved next to the file ({@code .map}) when the file is closed and read back, then deleted, when it
+ * is reopened. After a crash it is rebuilt by walking the extent headers; of two copies of a page the
+ * one with the higher sequence number wins.
+ *
+ * <p>Pages are decompressed on every read and the {@link BufferPool} caches the result. Only standard
+ * I/O is supported, since compressed pages do not line up with a memory mapping, and all access to
+ * the file is serialised.
+ */
+public class CompressedDiskPageManager extends DiskPageManager {
+
+    static final int SECTOR_SIZE = 512;
+    // 4B page index + 4B extent size + 4B stored length + 8B sequence
+    private static final int HEADER_SIZE = 20;
+    private static final int FREE = -1;
+    private static final int MAP_MAGIC = 0x4D504D31; // "MPM1"
+
+    private final Path mapPath;
+    private final List<Extent> extents = new ArrayList<>();       // per page; null if never written
+    private final TreeMap<Long, Integer> freeExtents = new TreeMap<>(); // offset -> size
+    private int pageCount;
+    private long fileEnd;
+    private long nextSequence = 1;
+
+    private record Extent(long offset, int size) {
+    }
+
+    public CompressedDiskPageManager(Path filePath, int pageSize) throws IOException {
+        super(filePath, IoMode.STANDARD, pageSize);
+        this.mapPath = filePath.resolveSibling(filePath.getFileName() + ".map");
+        if (!loadMap()) {
+            rebuildMap();
+        }
+    }
+
+    @Override
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    /** Bytes the file takes on disk, for comparison with {@code getPageCount() * getPageSize()}. */
+    public synchronized long getFileSize() {
+        return fileEnd;
+    }
+
+    @Override
+    public synchronized byte[] readPage(int pageIndex) throws IOException {
+        if (pageIndex < 0 || pageIndex >= pageCount) {
+            throw new EOFException("Page " + pageIndex + " is beyond the end of " + getFileName());
+        }
+        byte[] page = new byte[getPageSize()];
+        Extent extent = extents.get(pageIndex);
+        if (extent != null) { // else never written: reads as zeros, like a hole in a plain file
+            byte[] record = new byte[extent.size()];
+            readFully(ByteBuffer.wrap(record), extent.offset());
+            decode(record, 0, pageIndex, page);
+        }
+        return page;
+    }
+
+    @Override
+    public void readPage(int pageIndex, ByteBuffer dst) throws IOException {
+        dst.put(0, readPage(pageIndex));
+    }
+
+    /**
+     * Reads up to {@code count} consecutive pages. Pages whose extents follow each other in the file,
+     * as those written in order do, are fetched with a single read.
+     */
+    @Override
+    public synchronized ByteBuffer[] readPages(int firstPage, int count) throws IOException {
+        int available = Math.min(count, pageCount - firstPage);
+        if (available <= 0) {
+            return new ByteBuffer[0];
+        }
+        ByteBuffer[] pages = new ByteBuffer[available];
+        int i = 0;
+        while (i < available) {
+            Extent first = extents.get(firstPage + i);
+            if (first == null) {
+                pages[i++] = ByteBuffer.wrap(new byte[getPageSize()]);
+                continue;
+            }
+            int end = i + 1;
+            long runEnd = first.offset() + first.size();
+            while (end < available && extents.get(firstPage + end) != null
+                    && extents.get(firstPage + end).offset() == runEnd) {
+                runEnd += extents.get(firstPage + end).size();
+                end++;
+            }
+            byte[] run = new byte[(int) (runEnd - first.offset())];
+            readFully(ByteBuffer.wrap(run), first.offset());
+            int at = 0;
+            for (int j = i; j < end; j++) {
+                byte[] page = new byte[getPageSize()];
+                decode(run, at, firstPage + j, page);
+                at += extents.get(firstPage + j).size();
+                pages[j] = ByteBuffer.wrap(page);
+            }
+            i = end;
+        }
+        return pages;
+    }
+
+    @Override
+    public synchronized void writePage(int pageIndex, ByteBuffer data) throws IOException {
+        int pageSize = getPageSize();
+        byte[] raw = new byte[pageSize];
+        data.get(data.position(), raw);
+        byte[] payload = new byte[Lz4Codec.maxCompressedLength(pageSize)];
+        int length = Lz4Codec.compress(raw, pageSize, payload);
+        if (length >= pageSize) {
+            payload = raw;
+            length = pageSize;
+        }
+        int needed = HEADER_SIZE + length;
+        int extentSize = roundUp(needed);
+        while (extents.size() <= pageIndex) {
+            extents.add(null);
+        }
+        Extent current = extents.get(pageIndex);
+        Extent target;
+        if (current == null || current.size() < needed) {
+            target = allocate(extentSize);
+        } else if (current.size() > extentSize) {
+            // The page shrank: keep the front of its extent and free the rest. The free header lies in
+            // the old payload, so until the new header is written the old extent still spans it.
+            target = new Extent(current.offset(), extentSize);
+            free(current.offset() + extentSize, current.size() - extentSize);
+            current = null;
+        } else {
+            target = current;
+            current = null;
+        }
+
+        // A new extent at the end of the file is written in full, so the file always ends on an extent
+        int writeLength = target.offset() + target.size() > channel().size() ? target.size() : needed;
+        ByteBuffer record = ByteBuffer.allocate(writeLength);
+        record.putInt(pageIndex).putInt(target.size()).putInt(length).putLong(nextSequence++);
+        record.put(payload, 0, length).clear();
+        writeFully(record, target.offset());
+        extents.set(pageIndex, target);
+        if (current != null) {
+            free(current.offset(), current.size()); // only now that the page is safe in its new place
+        }
+        pageCount = Math.max(pageCount, pageIndex + 1);
+        markUnsynced();
+    }
+
+    @Override
+    public synchronized void writePages(int firstPage, ByteBuffer[] pages) throws IOException {
+        for (int i = 0; i < pages.length; i++) {
+            writePage(firstPage + i, pages[i]);
+        }
+    }
+
+    /** Frees the extents of the pages from {@code pageCount} on; the file shrinks if they were at its end. */
+    @Override
+    public synchronized void truncate(int newPageCount) throws IOException {
+        for (int p = extents.size() - 1; p >= newPageCount; p--) {
+            Extent extent = extents.remove(p);
+            if (extent != null) {
+                free(extent.offset(), extent.size());
+            }
+        }
+        pageCount = Math.min(pageCount, newPageCount);
+        markUnsynced();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        ByteBuffer map = ByteBuffer.allocate(28 + 12 * extents.size() + 12 * freeExtents.size());
+        map.putInt(MAP_MAGIC).putLong(fileEnd).putLong(nextSequence);
+        map.putInt(extents.size()).putInt(freeExtents.size());
+        for (Extent extent : extents) {
+            map.putLong(extent != null ? extent.offset() : -1).putInt(extent != null ? extent.size() : 0);
+        }
+        for (Map.Entry<Long, Integer> free : freeExtents.entrySet()) {
+            map.putLong(free.getKey()).putInt(free.getValue());
+        }
+        super.close(); // syncs, so the saved map never describes writes that are not on disk
+        Path tmp = mapPath.resolveSibling(mapPath.getFileName() + ".tmp");
+        Files.write(tmp, map.array());
+        Files.move(tmp, mapPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void delete() throws IOException {
+        super.delete();
+        Files.deleteIfExists(mapPath);
+    }
+
+    /** Restores the map saved at the last clean close, if there is one for the file as it is now. */
+    private boolean loadMap() throws IOException {
+        if (!Files.exists(mapPath)) {
+            return false;
+        }
+        ByteBuffer map = ByteBuffer.wrap(Files.readAllBytes(mapPath));
+        Files.delete(mapPath); // rewritten on close; a crash before then must not leave a stale map
+        long length = channel().size();
+        if (map.remaining() < 28 || map.getInt() != MAP_MAGIC || map.getLong() != length) {
+            return false;
+        }
+        long sequence = map.getLong();
+        int pages = map.getInt();
+        int free = map.getInt();
+        if (pages < 0 || free < 0 || map.remaining() != 12L * pages + 12L * free) {
+            return false;
+        }
+        for (int p = 0; p < pages; p++) {
+            long offset = map.getLong();
+            int size = map.getInt();
+            extents.add(offset >= 0 ? new Extent(offset, size) : null);
+        }
+        for (int i = 0; i < free; i++) {
+            freeExtents.put(map.getLong(), map.getInt());
+        }
+        nextSequence = sequence;
+        pageCount = pages;
+        fileEnd = length;
+        return true;
+    }
+
+    /**
+     * Walks the extent headers from the start of the file. An invalid header can only be a write at
+     * the end of the file that did not complete before a crash; the file is cut off there, and
+     * recovery rewrites any page that was lost with it.
+     */
+    private void rebuildMap() throws IOException {
+        long length = channel().size();
+        List<Long> sequences = new ArrayList<>();
+        List<Extent> stale = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long offset = 0;
+        while (offset + HEADER_SIZE <= length) {
+            readFully(header.clear(), offset);
+            header.flip();
+            int page = header.getInt();
+            int size = header.getInt();
+            int stored = header.getInt();
+            long sequence = header.getLong();
+            if (size < SECTOR_SIZE || size % SECTOR_SIZE != 0 || offset + size > length
+                    || page < FREE || stored < 0 || stored > size - HEADER_SIZE) {
+                break;
+            }
+            if (page == FREE) {
+                freeExtents.put(offset, size);
+            } else {
+                while (extents.size() <= page) {
+                    extents.add(null);
+                    sequences.add(0L);
+                }
+                Extent extent = new Extent(offset, size);
+                if (extents.get(page) == null || sequence > sequences.get(page)) {
+                    if (extents.get(page) != null) {
+                        stale.add(extents.get(page));
+                    }
+                    extents.set(page, extent);
+                    sequences.set(page, sequence);
+                } else {
+                    stale.add(extent);
+                }
+                nextSequence = Math.max(nextSequence, sequence + 1);
+            }
+            offset += size;
+        }
+        if (offset < length) {
+            channel().truncate(offset);
+            markUnsynced();
+        }
+        fileEnd = offset;
+        pageCount = extents.size();
+        for (Extent extent : stale) {
+            free(extent.offset(), extent.size()); // so that the old copy cannot win a later rebuild
+        }
+    }
+
+    /** Takes the first free extent that is large enough, splitting it, or else grows the file. */
+    private Extent allocate(int size) throws IOException {
+        for (Map.Entry<Long, Integer> free : freeExtents.entrySet()) {
+            if (free.getValue() >= size) {
+                long offset = free.getKey();
+                int freeSize = free.getValue();
+                freeExtents.remove(offset);
+                if (freeSize > size) {
+                    // Written first: until the caller writes the new extent, the old header spans this one
+                    writeHeader(offset + size, FREE, freeSize - size);
+                    freeExtents.put(offset + size, freeSize - size);
+                }
+                return new Extent(offset, size);
+            }
+        }
+        Extent extent = new Extent(fileEnd, size);
+        fileEnd += size;
+        return extent;
+    }
+
+    /** Marks an extent free, merging it with free neighbours or cutting it off the end of the file. */
+    private void free(long offset, int size) throws IOException {
+        Integer after = freeExtents.remove(offset + size);
+        if (after != null) {
+            size += after;
+        }
+        Map.Entry<Long, Integer> before = freeExtents.lowerEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            freeExtents.remove(before.getKey());
+            offset = before.getKey();
+            size += before.getValue();
+        }
+        if (offset + size == fileEnd) {
+            channel().truncate(offset);
+            fileEnd = offset;
+        } else {
+            writeHeader(offset, FREE, size);
+            freeExtents.put(offset, size);
+        }
+        markUnsynced();
+    }
+
+    private void writeHeader(long offset, int page, int size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(page).putInt(size).putInt(0).putLong(0).flip();
+        writeFully(header, offset);
+    }
+
+    private void decode(byte[] record, int at, int pageIndex, byte[] page) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(record, at, HEADER_SIZE);
+        int storedPage = header.getInt();
+        int size = header.getInt();
+        int length = header.getInt();
+        if (storedPage != pageIndex || length < 0 || length > size - HEADER_SIZE || at + size > record.length) {
+            throw new IOException("Extent of page " + pageIndex + " of " + getFileName() + " is corrupt");
+        }
+        if (length == page.length) {
+            System.arraycopy(record, at + HEADER_SIZE, page, 0, length);
+            return;
+        }
+        try {
+            Lz4Codec.decompress(record, at + HEADER_SIZE, length, page);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Failed to decompress page " + pageIndex + " of " + getFileName(), e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel().read(buffer, offset);
+            if (n < 0) {
+                throw new EOFException("Extent at " + offset + " is beyond the end of " + getFileName());
+            }
+            offset += n;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            offset += channel().write(buffer, offset);
+        }
+    }
+
+    private static int roundUp(int bytes) {
+        return (bytes + SECTOR_SIZE - 1) / SECTOR_SIZE * SECTOR_SIZE;
+    }
+}
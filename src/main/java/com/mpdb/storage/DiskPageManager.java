@@ -1,56 +1,329 @@
 package com.mpdb.storage;
 
+import com.mpdb.catalog.TableSchema;
+
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Manages reading and writing fixed-size pages to a file on disk.
- * File layout: consecutive 4096-byte pages, no header.
+ * File layout: consecutive pages of the table's page size ({@link SlottedPage#PAGE_SIZE} by default),
+ * no header.
+ *
+ * <p>Writes are not forced to disk; {@link #sync()} does that and {@link DurabilityManager} decides when.
+ *
+ * <p>In {@link IoMode#MMAP} mode the file is mapped in {@link #MAP_CHUNK_SIZE} regions. Reads return
+ * read-only views of the mapping without copying, writes go straight into the mapping and the written
+ * range of each region is flushed with {@link MappedByteBuffer#force(int, int)} on sync. A region is
+ * remapped when the file grows past it.
  */
 public class DiskPageManager implements AutoCloseable {
 
+    static final int MAP_CHUNK_SIZE = 16 * 1024 * 1024;
+
     private final RandomAccessFile file;
+    private final FileChannel channel;
     private final Path filePath;
+    private final IoMode ioMode;
+    private final int pageSize;
+    private final List<MappedByteBuffer> mappings = new ArrayList<>(); // MMAP mode only, one per chunk
+    private final List<int[]> dirtyRanges = new ArrayList<>();          // per chunk: {from, to} or null
+    private boolean unsynced;
 
     public DiskPageManager(Path filePath) throws IOException {
+        this(filePath, IoMode.STANDARD);
+    }
+
+    public DiskPageManager(Path filePath, IoMode ioMode) throws IOException {
+        this(filePath, ioMode, SlottedPage.PAGE_SIZE);
+    }
+
+    /** Opens the file of a table, compressed or not as the table was created. */
+    public static DiskPageManager forTable(Path filePath, IoMode ioMode, TableSchema schema) throws IOException {
+        if (schema.isCompressed()) {
+            return new CompressedDiskPageManager(filePath, schema.getPageSize());
+        }
+        return new DiskPageManager(filePath, ioMode, schema.getPageSize());
+    }
+
+    public DiskPageManager(Path filePath, IoMode ioMode, int pageSize) throws IOException {
+        if (!TableSchema.isValidPageSize(pageSize)) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
         Files.createDirectories(filePath.getParent());
         this.filePath = filePath;
+        this.ioMode = ioMode;
+        this.pageSize = pageSize;
         this.file = new RandomAccessFile(filePath.toFile(), "rw");
+        this.channel = file.getChannel();
+    }
+
+    public String getFileName() {
+        return filePath.getFileName().toString();
     }
 
-    public int getPageCount() throws IOException {
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    public IoMode getIoMode() {
+        return ioMode;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public synchronized int getPageCount() throws IOException {
         long length = file.length();
-        return (int) (length / SlottedPage.PAGE_SIZE);
+        return (int) (length / pageSize);
     }
 
+    /**
+     * Reads one page. In standard mode this is a positional read that does not touch any shared
+     * file position, so concurrent readers do not serialise on the file.
+     */
     public byte[] readPage(int pageIndex) throws IOException {
-        byte[] data = new byte[SlottedPage.PAGE_SIZE];
-        long offset = (long) pageIndex * SlottedPage.PAGE_SIZE;
-        file.seek(offset);
-        file.readFully(data);
+        byte[] data = new byte[pageSize];
+        if (ioMode == IoMode.MMAP) {
+            synchronized (this) {
+                mappedPage(pageIndex).get(0, data);
+            }
+            return data;
+        }
+        readFully(ByteBuffer.wrap(data), pageIndex);
         return data;
     }
 
+    /**
+     * Reads one page into the first page-size bytes of {@code dst}, such as an off-heap buffer of the
+     * buffer pool. In standard mode the bytes go straight from the file into {@code dst}.
+     */
+    public void readPage(int pageIndex, ByteBuffer dst) throws IOException {
+        if (ioMode == IoMode.MMAP) {
+            synchronized (this) {
+                dst.put(0, mappedPage(pageIndex), 0, pageSize);
+            }
+            return;
+        }
+        readFully(dst.duplicate().clear().limit(pageSize), pageIndex);
+    }
+
+    /**
+     * Returns the contents of a page as a buffer. In MMAP mode this is a read-only view of the
+     * mapping, so no bytes are copied; {@link SlottedPage} takes a private copy on first write.
+     */
+    public ByteBuffer readPageBuffer(int pageIndex) throws IOException {
+        if (ioMode == IoMode.MMAP) {
+            synchronized (this) {
+                return mappedPage(pageIndex).asReadOnlyBuffer();
+            }
+        }
+        return ByteBuffer.wrap(readPage(pageIndex));
+    }
+
+    /**
+     * Reads up to {@code count} consecutive pages starting at {@code firstPage}, stopping at the end
+     * of the file. In standard mode the whole range is fetched with a single positional read and
+     * returned as page-sized slices of one buffer; in MMAP mode the pages are views of the mapping.
+     */
+    public ByteBuffer[] readPages(int firstPage, int count) throws IOException {
+        int available = (int) Math.min(count, channel.size() / pageSize - firstPage);
+        if (available <= 0) {
+            return new ByteBuffer[0];
+        }
+        ByteBuffer[] pages = new ByteBuffer[available];
+        if (ioMode == IoMode.MMAP) {
+            synchronized (this) {
+                for (int i = 0; i < available; i++) {
+                    pages[i] = mappedPage(firstPage + i).asReadOnlyBuffer();
+                }
+            }
+            return pages;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(available * pageSize);
+        readFully(buffer, firstPage);
+        for (int i = 0; i < available; i++) {
+            pages[i] = buffer.slice(i * pageSize, pageSize);
+        }
+        return pages;
+    }
+
+    private void readFully(ByteBuffer buffer, int firstPage) throws IOException {
+        long offset = (long) firstPage * pageSize;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, offset);
+            if (n < 0) {
+                throw new EOFException("Page " + firstPage + " is beyond the end of " + filePath.getFileName());
+            }
+            offset += n;
+        }
+    }
+
     public void writePage(int pageIndex, byte[] data) throws IOException {
-        long offset = (long) pageIndex * SlottedPage.PAGE_SIZE;
-        file.seek(offset);
-        file.write(data, 0, SlottedPage.PAGE_SIZE);
-        file.getFD().sync();
+        writePage(pageIndex, ByteBuffer.wrap(data, 0, pageSize));
+    }
+
+    public synchronized void writePage(int pageIndex, ByteBuffer data) throws IOException {
+        long offset = (long) pageIndex * pageSize;
+        if (ioMode == IoMode.MMAP && offset + pageSize <= file.length()) {
+            MappedByteBuffer chunk = mappingFor(offset);
+            int position = (int) (offset % MAP_CHUNK_SIZE);
+            chunk.put(position, data, data.position(), pageSize);
+            markDirty((int) (offset / MAP_CHUNK_SIZE), position, position + pageSize);
+            return;
+        }
+        // Standard I/O, or a page past the end of the file that the mapping cannot cover yet
+        ByteBuffer src = data.duplicate();
+        src.limit(src.position() + pageSize);
+        while (src.hasRemaining()) {
+            offset += channel.write(src, offset);
+        }
+        unsynced = true;
+    }
+
+    /**
+     * Writes consecutive pages starting at {@code firstPage}. In standard mode they go out as one
+     * gathering write, so a run of adjacent dirty pages costs a single system call.
+     */
+    public synchronized void writePages(int firstPage, ByteBuffer[] pages) throws IOException {
+        long offset = (long) firstPage * pageSize;
+        long length = (long) pages.length * pageSize;
+        if (ioMode == IoMode.MMAP && offset + length <= file.length()) {
+            for (int i = 0; i < pages.length; i++) {
+                writePage(firstPage + i, pages[i]);
+            }
+            return;
+        }
+        ByteBuffer[] srcs = new ByteBuffer[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            srcs[i] = pages[i].duplicate();
+            srcs[i].limit(srcs[i].position() + pageSize);
+        }
+        channel.position(offset);
+        while (length > 0) {
+            length -= channel.write(srcs);
+        }
+        unsynced = true;
+    }
+
+    /** Forces all writes made since the last sync to stable storage. */
+    public synchronized void sync() throws IOException {
+        if (!channel.isOpen()) return; // closed or dropped since it was written
+        for (int i = 0; i < dirtyRanges.size(); i++) {
+            int[] range = dirtyRanges.get(i);
+            if (range != null) {
+                mappings.get(i).force(range[0], range[1] - range[0]);
+                dirtyRanges.set(i, null);
+            }
+        }
+        if (unsynced) {
+            file.getFD().sync();
+            unsynced = false;
+        }
     }
 
-    public void sync() throws IOException {
-        file.getFD().sync();
+    /**
+     * Cuts the file down to its first {@code pageCount} pages. Mappings that reach past the new end
+     * are flushed and dropped; they are remapped on next use.
+     */
+    public synchronized void truncate(int pageCount) throws IOException {
+        long length = (long) pageCount * pageSize;
+        if (length >= file.length()) return;
+        int firstChunk = (int) (length / MAP_CHUNK_SIZE);
+        for (int i = firstChunk; i < dirtyRanges.size(); i++) {
+            int[] range = dirtyRanges.get(i);
+            if (range != null) {
+                mappings.get(i).force(range[0], range[1] - range[0]);
+            }
+        }
+        while (mappings.size() > firstChunk) {
+            mappings.remove(mappings.size() - 1);
+        }
+        while (dirtyRanges.size() > firstChunk) {
+            dirtyRanges.remove(dirtyRanges.size() - 1);
+        }
+        channel.truncate(length);
+        unsynced = true;
     }
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        sync();
+        mappings.clear();
+        dirtyRanges.clear();
         file.close();
     }
 
-    public void delete() throws IOException {
+    public synchronized void delete() throws IOException {
+        mappings.clear();
+        dirtyRanges.clear();
         file.close();
         Files.deleteIfExists(filePath);
     }
+
+    /** The underlying channel, for subclasses that lay out pages differently. */
+    FileChannel channel() {
+        return channel;
+    }
+
+    /** Notes a write made directly through {@link #channel()}, so that the next sync forces it. */
+    synchronized void markUnsynced() {
+        unsynced = true;
+    }
+
+    private void markDirty(int chunkIndex, int from, int to) {
+        while (dirtyRanges.size() <= chunkIndex) {
+            dirtyRanges.add(null);
+        }
+        int[] range = dirtyRanges.get(chunkIndex);
+        if (range == null) {
+            dirtyRanges.set(chunkIndex, new int[]{from, to});
+        } else {
+            range[0] = Math.min(range[0], from);
+            range[1] = Math.max(range[1], to);
+        }
+    }
+
+    private ByteBuffer mappedPage(int pageIndex) throws IOException {
+        long offset = (long) pageIndex * pageSize;
+        if (offset + pageSize > file.length()) {
+            throw new EOFException("Page " + pageIndex + " is beyond the end of " + filePath.getFileName());
+        }
+        return mappingFor(offset).slice((int) (offset % MAP_CHUNK_SIZE), pageSize);
+    }
+
+    /**
+     * Returns the mapping of the chunk containing {@code offset}, (re)mapping it if it does not
+     * yet cover the page at that offset because the file has grown since it was mapped.
+     */
+    private MappedByteBuffer mappingFor(long offset) throws IOException {
+        int chunkIndex = (int) (offset / MAP_CHUNK_SIZE);
+        while (mappings.size() <= chunkIndex) {
+            mappings.add(null);
+        }
+        MappedByteBuffer mapping = mappings.get(chunkIndex);
+        int position = (int) (offset % MAP_CHUNK_SIZE);
+        if (mapping == null || mapping.capacity() < position + pageSize) {
+            if (mapping != null && chunkIndex < dirtyRanges.size() && dirtyRanges.get(chunkIndex) != null) {
+                // Flush through the old mapping before replacing it
+                int[] range = dirtyRanges.get(chunkIndex);
+                mapping.force(range[0], range[1] - range[0]);
+                dirtyRanges.set(chunkIndex, null);
+            }
+            long chunkStart = (long) chunkIndex * MAP_CHUNK_SIZE;
+            long size = Math.min(MAP_CHUNK_SIZE, file.length() - chunkStart);
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart, size);
+            mappings.set(chunkIndex, mapping);
+        }
+        return mapping;
+    }
 }
@@ -0,0 +1,195 @@
+package com.mpdb.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the {@link WriteAheadLog} is forced to disk, according to the current {@link DurabilityMode},
+ * and enforces the write-ahead rule for data pages: a page is only written to its table file once the log
+ * is durable up to the page's last logged image. Table files themselves are synced only at checkpoints.
+ *
+ * <p>In {@link DurabilityMode#GROUP} mode a background thread performs the fsyncs: a committing
+ * statement registers itself and waits, the thread sleeps for the group-commit window so that other
+ * commits can join, then forces the log once and releases all waiters.
+ */
+public class DurabilityManager implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DurabilityManager.class);
+
+    private final WriteAheadLog wal; // null when pages are not logged (e.g. standalone buffer pools)
+    private final Set<DiskPageManager> unsyncedFiles = ConcurrentHashMap.newKeySet();
+    private final long groupWindowMillis;
+    private volatile DurabilityMode mode;
+
+    private final Object groupLock = new Object();
+    private long requestedRound;
+    private long completedRound;
+    private IOException groupFailure;
+    private Thread groupThread;
+    private boolean closed;
+
+    public DurabilityManager(DurabilityMode mode, long groupWindowMillis, WriteAheadLog wal) {
+        this.mode = mode;
+        this.groupWindowMillis = groupWindowMillis;
+        this.wal = wal;
+    }
+
+    public WriteAheadLog getWal() {
+        return wal;
+    }
+
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    /** Switches mode, first forcing anything a weaker mode may have left unsynced. */
+    public void setMode(DurabilityMode mode) {
+        syncLog();
+        this.mode = mode;
+    }
+
+    /** Called before a dirty page whose last image was logged at {@code pageLsn} is written to disk. */
+    public void beforePageWrite(long pageLsn) throws IOException {
+        if (wal != null) {
+            wal.syncTo(pageLsn);
+        }
+    }
+
+    /** Called after a page has been written to {@code file}; the file is synced at the next checkpoint. */
+    public void pageWritten(DiskPageManager file) {
+        unsyncedFiles.add(file);
+    }
+
+    /**
+     * Makes a commit whose records end at {@code commitLsn} durable as required by the current mode.
+     * In GROUP mode this blocks until the shared fsync has completed.
+     */
+    public void commit(long commitLsn) {
+        if (wal == null) return;
+        switch (mode) {
+            case STRICT -> {
+                try {
+                    wal.syncTo(commitLsn);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to sync write-ahead log", e);
+                }
+            }
+            case GROUP -> awaitGroupCommit();
+            case OS -> {
+                // Left to the operating system
+            }
+        }
+    }
+
+    /** Forces every table file written since the last call. */
+    public void syncDataFiles() throws IOException {
+        Iterator<DiskPageManager> it = unsyncedFiles.iterator();
+        while (it.hasNext()) {
+            DiskPageManager file = it.next();
+            it.remove();
+            file.sync();
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (groupLock) {
+            closed = true;
+            thread = groupThread;
+            groupLock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void syncLog() {
+        if (wal == null) return;
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync write-ahead log", e);
+        }
+    }
+
+    private void awaitGroupCommit() {
+        synchronized (groupLock) {
+            if (closed) {
+                syncLog();
+                return;
+            }
+            ensureGroupThread();
+            long round = ++requestedRound;
+            groupLock.notifyAll();
+            while (completedRound < round) {
+                try {
+                    groupLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for group commit", e);
+                }
+            }
+            if (groupFailure != null) {
+                throw new UncheckedIOException("Group commit failed", groupFailure);
+            }
+        }
+    }
+
+    private void ensureGroupThread() {
+        if (groupThread == null) {
+            groupThread = new Thread(this::runGroupCommits, "mpdb-group-commit");
+            groupThread.setDaemon(true);
+            groupThread.start();
+        }
+    }
+
+    private void runGroupCommits() {
+        while (true) {
+            synchronized (groupLock) {
+                while (requestedRound == completedRound && !closed) {
+                    try {
+                        groupLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (requestedRound == completedRound) {
+                    return; // closed with nobody waiting
+                }
+            }
+            try {
+                Thread.sleep(groupWindowMillis); // let concurrent commits join this round
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long round;
+            synchronized (groupLock) {
+                round = requestedRound;
+            }
+            IOException failure = null;
+            try {
+                wal.sync();
+            } catch (IOException e) {
+                log.error("Group commit fsync failed: {}", e.getMessage());
+                failure = e;
+            }
+            synchronized (groupLock) {
+                groupFailure = failure;
+                completedRound = round;
+                groupLock.notifyAll();
+            }
+        }
+    }
+}
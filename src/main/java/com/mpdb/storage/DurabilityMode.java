@@ -0,0 +1,13 @@
+package com.mpdb.storage;
+
+/**
+ * When committed changes are forced to stable storage, i.e. when the write-ahead log is fsynced.
+ */
+public enum DurabilityMode {
+    /** Every commit fsyncs the log before the statement returns. */
+    STRICT,
+    /** The log is forced at commit; commits arriving within the group-commit window share one fsync. */
+    GROUP,
+    /** The log is never forced while running; the operating system decides when it reaches the disk. */
+    OS
+}
@@ -1,50 +1,159 @@
 package com.mpdb.storage;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 
 /**
  * Tracks free space per page to avoid O(n) scans on insert.
- * Each entry stores the free bytes available in the corresponding page.
+ * Each entry stores the free bytes available in the corresponding page, or {@link #UNKNOWN}
+ * for a page of a lazily opened file that has not been looked at yet.
+ *
+ * <p>The entries are the leaves of a max segment tree kept in a flat array, so finding the first
+ * page with enough room and updating a page are both O(log n).
+ *
+ * <p>A heap file saves its map to a {@code .fsm} file when it is closed and reads it back when it is
+ * opened, so that a restart does not have to visit every page to learn where there is room. The file
+ * is deleted once read: after a crash there is none, and free space is learned from the pages again.
  */
 public class FreeSpaceMap {
 
-    private final List<Integer> freeBytes = new ArrayList<>();
+    public static final int UNKNOWN = -1;
+
+    private static final int FILE_MAGIC = 0x4D465331; // "MFS1"
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] tree = newTree(INITIAL_CAPACITY); // tree[1] is the root, leaves start at capacity
+    private int capacity = INITIAL_CAPACITY;
+    private int size;
 
     public void addPage(int pageIndex, int freeSpace) {
-        while (freeBytes.size() <= pageIndex) {
-            freeBytes.add(0);
+        ensureCapacity(pageIndex + 1);
+        for (int i = size; i < pageIndex; i++) {
+            set(i, 0);
         }
-        freeBytes.set(pageIndex, freeSpace);
+        size = Math.max(size, pageIndex + 1);
+        set(pageIndex, freeSpace);
+    }
+
+    /** Registers {@code count} more pages whose free space has not been read yet. */
+    public void addUnknownPages(int count) {
+        ensureCapacity(size + count);
+        size += count; // leaves past the end already hold UNKNOWN
+    }
+
+    public boolean isKnown(int pageIndex) {
+        return pageIndex >= 0 && pageIndex < size && tree[capacity + pageIndex] != UNKNOWN;
     }
 
     public void updatePage(int pageIndex, int freeSpace) {
-        if (pageIndex < freeBytes.size()) {
-            freeBytes.set(pageIndex, freeSpace);
+        if (pageIndex >= 0 && pageIndex < size) {
+            set(pageIndex, freeSpace);
         }
     }
 
     /**
-     * Returns the index of the first page with at least {@code needed} bytes free,
+     * Returns the index of the first page known to have at least {@code needed} bytes free,
      * or -1 if no page has enough space.
      */
     public int findPageWithSpace(int needed) {
-        for (int i = 0; i < freeBytes.size(); i++) {
-            if (freeBytes.get(i) >= needed) {
-                return i;
-            }
+        if (tree[1] < needed) {
+            return -1;
         }
-        return -1;
+        int node = 1;
+        while (node < capacity) {
+            node = tree[2 * node] >= needed ? 2 * node : 2 * node + 1;
+        }
+        return node - capacity;
+    }
+
+    /** Forgets every page from {@code pageCount} on. */
+    public void truncate(int pageCount) {
+        for (int i = pageCount; i < size; i++) {
+            set(i, UNKNOWN);
+        }
+        size = Math.min(size, pageCount);
     }
 
     public int getPageCount() {
-        return freeBytes.size();
+        return size;
     }
 
     public int getFreeSpace(int pageIndex) {
-        if (pageIndex < 0 || pageIndex >= freeBytes.size()) {
+        if (pageIndex < 0 || pageIndex >= size) {
             return 0;
         }
-        return freeBytes.get(pageIndex);
+        return Math.max(0, tree[capacity + pageIndex]);
+    }
+
+    /** Writes the map to {@code file}, replacing it atomically. */
+    public void save(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 * size);
+        buf.putInt(FILE_MAGIC).putInt(size);
+        for (int i = 0; i < size; i++) {
+            buf.putInt(tree[capacity + i]);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, buf.array());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the contents with the map saved in {@code file} and deletes the file. A missing file,
+     * or one saved for a different number of pages, leaves all {@code pageCount} pages unknown.
+     *
+     * @return true if the saved map was used
+     */
+    public boolean load(Path file, int pageCount) throws IOException {
+        truncate(0);
+        addUnknownPages(pageCount);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        Files.delete(file); // rewritten on close; a crash before then must not leave stale hints
+        if (buf.remaining() < 8 || buf.getInt() != FILE_MAGIC || buf.getInt() != pageCount
+                || buf.remaining() != 4 * pageCount) {
+            return false;
+        }
+        for (int i = 0; i < pageCount; i++) {
+            tree[capacity + i] = buf.getInt();
+        }
+        for (int node = capacity - 1; node >= 1; node--) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+        return true;
+    }
+
+    private void set(int pageIndex, int freeSpace) {
+        int node = capacity + pageIndex;
+        tree[node] = freeSpace;
+        for (node /= 2; node >= 1; node /= 2) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    private void ensureCapacity(int pages) {
+        if (pages <= capacity) return;
+        int newCapacity = capacity;
+        while (newCapacity < pages) {
+            newCapacity *= 2;
+        }
+        int[] grown = newTree(newCapacity);
+        System.arraycopy(tree, capacity, grown, newCapacity, capacity);
+        for (int node = newCapacity - 1; node >= 1; node--) {
+            grown[node] = Math.max(grown[2 * node], grown[2 * node + 1]);
+        }
+        tree = grown;
+        capacity = newCapacity;
+    }
+
+    private static int[] newTree(int capacity) {
+        int[] tree = new int[2 * capacity];
+        Arrays.fill(tree, UNKNOWN);
+        return tree;
     }
 }
@@ -6,201 +6,742 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
 
+/**
+ * Unordered collection of tuples stored in {@link SlottedPage}s.
+ * Disk-backed heap files access their pages through the shared {@link BufferPool};
+ * in-memory heap files keep their pages in a plain list.
+ *
+ * <p>VARCHAR and TEXT values of rows larger than a quarter of a page are moved, largest first,
+ * to a separate overflow heap file ({@code .ovf}) as chains of records, leaving a pointer in the row.
+ * Rows stay small, so pages stay dense and a value can be of any size; the overflow records are only
+ * read when a query asks for the value.
+ *
+ * <p>A {@link ZoneMap} summarises the values on each page, so scans with a {@link ZonePredicate}
+ * skip the pages that cannot hold a matching row.
+ *
+ * <p>Each public operation is atomic with respect to the others, so a scan never observes a
+ * {@link #vacuum()} halfway through moving tuples.
+ */
 public class HeapFile {
 
     private static final Logger log = LoggerFactory.getLogger(HeapFile.class);
 
-    private final List<SlottedPage> pages = new ArrayList<>();
+    private static final int CHAIN_LINK_SIZE = 8; // page and slot of the next record, or -1
+
+    private final List<SlottedPage> memoryPages = new ArrayList<>(); // in-memory only
     private final FreeSpaceMap freeSpaceMap = new FreeSpaceMap();
+    private final ZoneMap zoneMap; // null for an overflow file, whose records are chunks of values, not rows
     private final TableSchema schema;
     private final TupleSerializer serializer = new TupleSerializer();
     private final DiskPageManager diskManager; // null for in-memory only
+    private final BufferPool bufferPool;       // null for in-memory only
+    private final int pageSize;
+    private final int maxInlineTuple; // rows larger than this store their largest strings out of line
+    private HeapFile overflow; // opened once the table has a value stored out of line
+    private int pageCount;
+    private volatile long liveTuples = -1; // -1 until a full pass has counted them
+    private volatile long deadTuples;      // deleted since the last vacuum, net of later inserts
 
     public HeapFile(TableSchema schema) {
-        this.schema = schema;
-        this.diskManager = null;
+        this(schema, null, null, true);
+    }
+
+    public HeapFile(TableSchema schema, DiskPageManager diskManager, BufferPool bufferPool) {
+        this(schema, diskManager, bufferPool, true);
     }
 
-    public HeapFile(TableSchema schema, DiskPageManager diskManager) {
+    /**
+     * @param rows false for the overflow file of a table, which holds chain records rather than rows
+     *             and so keeps no zone map
+     */
+    private HeapFile(TableSchema schema, DiskPageManager diskManager, BufferPool bufferPool, boolean rows) {
+        if (diskManager != null && diskManager.getPageSize() != schema.getPageSize()) {
+            throw new IllegalArgumentException("Table " + schema.getTableName() + " has " + schema.getPageSize()
+                    + "-byte pages but its file was opened with " + diskManager.getPageSize() + "-byte pages");
+        }
         this.schema = schema;
+        this.zoneMap = rows ? new ZoneMap(schema) : null;
         this.diskManager = diskManager;
+        this.bufferPool = bufferPool;
+        this.pageSize = schema.getPageSize();
+        this.maxInlineTuple = pageSize / 4;
         loadFromDisk();
+        if (rows && diskManager != null && Files.exists(siblingPath(".ovf"))) {
+            overflowFile();
+        }
     }
 
+    /**
+     * Opens the file without reading any page: only the page count is taken from the file size.
+     * The free-space and zone maps saved at the last clean close are restored; otherwise free space
+     * of existing pages is learned as inserts, deletes and scans touch them, and their zones as scans
+     * read them.
+     */
     private void loadFromDisk() {
         if (diskManager == null) return;
         try {
-            int pageCount = diskManager.getPageCount();
-            for (int i = 0; i < pageCount; i++) {
-                byte[] rawData = diskManager.readPage(i);
-                SlottedPage page = new SlottedPage(rawData);
-                pages.add(page);
-                freeSpaceMap.addPage(i, page.getFreeSpace());
+            pageCount = diskManager.getPageCount();
+            if (freeSpaceMap.load(siblingPath(".fsm"), pageCount)) {
+                log.debug("Restored free-space map of table '{}' ({} pages)", schema.getTableName(), pageCount);
             }
-            if (pageCount > 0) {
-                log.debug("Loaded {} page(s) for table '{}'", pageCount, schema.getTableName());
+            if (zoneMap != null && zoneMap.load(siblingPath(".zmap"), pageCount)) {
+                log.debug("Restored zone map of table '{}' ({} pages)", schema.getTableName(), pageCount);
             }
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to load heap file for table: " + schema.getTableName(), e);
+            throw new UncheckedIOException("Failed to open heap file for table: " + schema.getTableName(), e);
+        }
+    }
+
+    /**
+     * Reads every page once, filling in the free-space map and warming the buffer pool with as
+     * many pages as it holds. Pages are loaded in batches with {@link BufferPool#prefetch}, which
+     * reads outside the pool lock, so that tables preloaded on several threads are read in parallel.
+     */
+    public synchronized void preload() {
+        long live = 0;
+        int batch = bufferPool != null
+                ? (int) Math.max(1, Math.min(ReadAhead.MAX_WINDOW, bufferPool.getCapacityBytes() / pageSize / 4))
+                : 0;
+        int prefetchedUpTo = 0;
+        for (int p = 0; p < pageCount; p++) {
+            if (bufferPool != null && p >= prefetchedUpTo) {
+                int count = Math.min(batch, pageCount - p);
+                bufferPool.prefetch(diskManager, p, count);
+                prefetchedUpTo = p + count;
+            }
+            SlottedPage page = pinPage(p);
+            try {
+                freeSpaceMap.updatePage(p, page.getFreeSpace());
+                live += page.getActiveSlotCount();
+            } finally {
+                unpinPage(p, false);
+            }
         }
+        liveTuples = live;
     }
 
-    public TupleId insertTuple(Tuple tuple) {
-        byte[] data = serializer.serialize(tuple);
-        int needed = data.length + SlottedPage.SLOT_SIZE;
+    /** Stores the tuple, serializing it straight into the space reserved for it on a page. */
+    public synchronized TupleId insertTuple(Tuple tuple) {
+        int size = serializer.serializedSize(tuple);
+        Tuple stored = tuple;
+        if (size > maxInlineTuple) {
+            stored = storeLargeValuesOutOfLine(tuple, size);
+            size = serializer.serializedSize(stored);
+        }
+        Tuple row = stored;
+        int pagesBefore = pageCount;
+        TupleId id;
+        try {
+            id = insertRecord(size, (buf, offset) -> serializer.serialize(row, buf, offset));
+        } catch (RuntimeException e) {
+            freeOverflowChains(stored); // no row points to them
+            throw e;
+        }
+        if (id.pageIndex() >= pagesBefore) {
+            zoneMap.resetPage(id.pageIndex()); // a new page: its summary starts with this row
+        }
+        zoneMap.include(id.pageIndex(), stored);
+        if (liveTuples >= 0) liveTuples++;
+        if (deadTuples > 0) deadTuples--; // most likely reused the space of a deleted tuple
+        return id;
+    }
+
+    /**
+     * Reserves {@code length} bytes on a page with room for them and has {@code writer} write the
+     * record there, given the page buffer and the record's offset in it.
+     */
+    private TupleId insertRecord(int length, ObjIntConsumer<ByteBuffer> writer) {
+        int needed = length + SlottedPage.SLOT_SIZE;
 
         // Use free-space map to find a page with enough room
         int pageIndex = freeSpaceMap.findPageWithSpace(needed);
+        if (pageIndex < 0 && pageCount > 0 && !freeSpaceMap.isKnown(pageCount - 1)) {
+            pageIndex = pageCount - 1; // in a freshly opened file the last page is the likeliest to have room
+        }
         if (pageIndex >= 0) {
-            SlottedPage page = pages.get(pageIndex);
-            int slot = page.insertTuple(data);
-            if (slot >= 0) {
+            SlottedPage page = pinPage(pageIndex);
+            int slot = -1;
+            try {
+                slot = page.reserveTuple(length);
+                if (slot >= 0) {
+                    write(page, slot, writer);
+                }
                 freeSpaceMap.updatePage(pageIndex, page.getFreeSpace());
-                flushPage(pageIndex);
-                return new TupleId(pageIndex, slot);
+                if (slot >= 0) {
+                    return new TupleId(pageIndex, slot);
+                }
+            } finally {
+                unpinPage(pageIndex, slot >= 0);
             }
         }
 
         // All pages full — allocate a new one
-        SlottedPage newPage = new SlottedPage(pages.size());
-        pages.add(newPage);
-        int newPageIndex = pages.size() - 1;
-        int slot = newPage.insertTuple(data);
-        freeSpaceMap.addPage(newPageIndex, newPage.getFreeSpace());
-        flushPage(newPageIndex);
-        return new TupleId(newPageIndex, slot);
+        int newPageIndex = pageCount;
+        SlottedPage newPage = allocatePage(newPageIndex);
+        try {
+            int slot = newPage.reserveTuple(length);
+            freeSpaceMap.addPage(newPageIndex, newPage.getFreeSpace());
+            if (slot < 0) {
+                throw new IllegalStateException("Tuple of " + length + " bytes does not fit in a page");
+            }
+            write(newPage, slot, writer);
+            return new TupleId(newPageIndex, slot);
+        } finally {
+            unpinPage(newPageIndex, true);
+        }
     }
 
-    public Tuple getTuple(TupleId id) {
-        if (id.pageIndex() < 0 || id.pageIndex() >= pages.size()) {
-            return null;
+    /** Writes a record into the slot reserved for it, giving the slot up again if the writer fails. */
+    private static void write(SlottedPage page, int slot, ObjIntConsumer<ByteBuffer> writer) {
+        try {
+            writer.accept(page.buffer(), page.slotOffset(slot));
+        } catch (RuntimeException e) {
+            page.deleteTuple(slot); // e.g. a value of the wrong type: no half-written row may remain
+            throw e;
         }
-        byte[] data = pages.get(id.pageIndex()).getTuple(id.slotIndex());
-        if (data == null) {
+    }
+
+    public synchronized Tuple getTuple(TupleId id) {
+        if (id.pageIndex() < 0 || id.pageIndex() >= pageCount) {
             return null;
         }
-        return serializer.deserialize(data, schema);
+        SlottedPage page = pinPage(id.pageIndex());
+        try {
+            int offset = page.slotOffset(id.slotIndex());
+            if (offset < 0) {
+                return null;
+            }
+            return serializer.deserialize(page.buffer(), offset, schema, overflow);
+        } finally {
+            unpinPage(id.pageIndex(), false);
+        }
     }
 
     public List<Tuple> scanAll() {
-        List<Tuple> results = new ArrayList<>();
-        for (SlottedPage page : pages) {
-            for (int slot : page.getActiveSlots()) {
-                byte[] data = page.getTuple(slot);
-                if (data != null) {
-                    results.add(serializer.deserialize(data, schema));
-                }
-            }
-        }
-        return results;
+        return scanWithFilter(t -> true);
     }
 
     public List<Tuple> scanWithFilter(Predicate<Tuple> predicate) {
         List<Tuple> results = new ArrayList<>();
-        for (SlottedPage page : pages) {
-            for (int slot : page.getActiveSlots()) {
-                byte[] data = page.getTuple(slot);
-                if (data != null) {
-                    Tuple tuple = serializer.deserialize(data, schema);
-                    if (predicate.test(tuple)) {
-                        results.add(tuple);
-                    }
-                }
-            }
-        }
+        scanPages(predicate, (id, tuple) -> results.add(tuple));
         return results;
     }
 
     public List<Map.Entry<TupleId, Tuple>> scanAllWithIds() {
+        return scanWithFilterAndIds(t -> true);
+    }
+
+    public List<Map.Entry<TupleId, Tuple>> scanWithFilterAndIds(Predicate<Tuple> predicate) {
         List<Map.Entry<TupleId, Tuple>> results = new ArrayList<>();
-        for (int p = 0; p < pages.size(); p++) {
-            SlottedPage page = pages.get(p);
-            for (int slot : page.getActiveSlots()) {
-                byte[] data = page.getTuple(slot);
-                if (data != null) {
-                    Tuple tuple = serializer.deserialize(data, schema);
-                    results.add(new AbstractMap.SimpleEntry<>(new TupleId(p, slot), tuple));
+        scanPages(predicate, (id, tuple) -> results.add(new AbstractMap.SimpleEntry<>(id, tuple)));
+        return results;
+    }
+
+    public synchronized boolean deleteTuple(TupleId id) {
+        if (id.pageIndex() < 0 || id.pageIndex() >= pageCount) {
+            return false;
+        }
+        SlottedPage page = pinPage(id.pageIndex());
+        boolean deleted = false;
+        try {
+            byte[] data = overflow != null ? page.getTuple(id.slotIndex()) : null;
+            deleted = page.deleteTuple(id.slotIndex());
+            if (deleted && data != null) {
+                Tuple tuple = serializer.deserialize(data, schema, overflow);
+                for (int i = 0; i < tuple.getColumnCount(); i++) {
+                    if (tuple.getRawValue(i) instanceof OverflowValue value) {
+                        overflow.freeChain(value.first());
+                    }
                 }
             }
+            if (deleted) {
+                freeSpaceMap.updatePage(id.pageIndex(), page.getFreeSpace());
+                if (liveTuples > 0) liveTuples--;
+                deadTuples++;
+            }
+            return deleted;
+        } finally {
+            unpinPage(id.pageIndex(), deleted);
         }
-        return results;
     }
 
-    public List<Map.Entry<TupleId, Tuple>> scanWithFilterAndIds(Predicate<Tuple> predicate) {
-        List<Map.Entry<TupleId, Tuple>> results = new ArrayList<>();
-        for (int p = 0; p < pages.size(); p++) {
-            SlottedPage page = pages.get(p);
-            for (int slot : page.getActiveSlots()) {
-                byte[] data = page.getTuple(slot);
-                if (data != null) {
-                    Tuple tuple = serializer.deserialize(data, schema);
-                    if (predicate.test(tuple)) {
-                        results.add(new AbstractMap.SimpleEntry<>(new TupleId(p, slot), tuple));
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    /** Tuples deleted since the last vacuum whose space has not been taken by new tuples. */
+    public long getDeadTupleCount() {
+        return deadTuples;
+    }
+
+    /**
+     * Share of dead tuples among live and dead ones, or 0 while the number of live tuples is
+     * unknown because the table has not been read in full since it was opened.
+     */
+    public double getDeadTupleRatio() {
+        long live = liveTuples;
+        long dead = deadTuples;
+        if (live < 0 || live + dead == 0) {
+            return 0;
+        }
+        return (double) dead / (live + dead);
+    }
+
+    /** Outcome of a {@link #vacuum()}. */
+    public record VacuumResult(String tableName, int pagesBefore, int pagesAfter, int tuplesMoved, int pageSize) {
+
+        public long bytesReclaimed() {
+            return (long) (pagesBefore - pagesAfter) * pageSize;
+        }
+    }
+
+    /**
+     * Packs the table into as few pages as possible and releases the emptied pages at the end of the
+     * file. Tuples are moved from the last pages into free space of earlier ones until the next tuple
+     * no longer fits in front of its page, so moved tuples get new {@link TupleId}s.
+     *
+     * <p>The moves out of each page are committed together: a tuple is never lost or duplicated by a
+     * crash. Callers must make sure no statement holds tuple ids of this table meanwhile.
+     *
+     * <p>The zones of the pages kept, Bloom filters included, are rebuilt from their rows, dropping
+     * the values of rows deleted since the pages were last summarised.
+     *
+     * <p>The overflow file is not packed: rows point at their chains, so chain records stay where
+     * they are and only the empty pages at the end of the overflow file are released.
+     */
+    public synchronized VacuumResult vacuum() {
+        int pagesBefore = pageCount;
+        for (int p = 0; p < pageCount; p++) {
+            if (!freeSpaceMap.isKnown(p)) {
+                SlottedPage page = pinPage(p);
+                try {
+                    freeSpaceMap.updatePage(p, page.getFreeSpace());
+                } finally {
+                    unpinPage(p, false);
+                }
+            }
+        }
+
+        int moved = 0;
+        boolean full = false;
+        for (int p = pageCount - 1; p > 0 && !full; p--) {
+            beginStatement();
+            SlottedPage page = pinPage(p);
+            boolean changed = false;
+            try {
+                for (int slot : page.getActiveSlots()) {
+                    byte[] data = page.getTuple(slot);
+                    int target = freeSpaceMap.findPageWithSpace(data.length + SlottedPage.SLOT_SIZE);
+                    if (target < 0 || target >= p || !moveTo(target, data)) {
+                        full = true; // the pages in front are full
+                        break;
                     }
+                    page.deleteTuple(slot);
+                    changed = true;
+                    moved++;
                 }
+                freeSpaceMap.updatePage(p, page.getFreeSpace());
+            } finally {
+                unpinPage(p, changed);
+                commitStatement();
             }
         }
-        return results;
-    }
 
-    public boolean deleteTuple(TupleId id) {
-        if (id.pageIndex() < 0 || id.pageIndex() >= pages.size()) {
-            return false;
+        int pagesAfter = releaseEmptyPages();
+        rebuildZones();
+        if (overflow != null) {
+            overflow.releaseEmptyPages();
         }
-        SlottedPage page = pages.get(id.pageIndex());
-        boolean deleted = page.deleteTuple(id.slotIndex());
-        if (deleted) {
-            freeSpaceMap.updatePage(id.pageIndex(), page.getFreeSpace());
-            flushPage(id.pageIndex());
+        deadTuples = 0;
+        return new VacuumResult(schema.getTableName(), pagesBefore, pagesAfter, moved, pageSize);
+    }
+
+    private void rebuildZones() {
+        PageCursor cursor = new PageCursor();
+        for (int p = 0; p < pageCount; p++) {
+            cursor.open(p);
+            try {
+                zoneMap.resetPage(p);
+                while (cursor.next()) {
+                    zoneMap.include(p, cursor.row);
+                }
+            } finally {
+                cursor.close();
+            }
         }
-        return deleted;
     }
 
-    public int getPageCount() {
-        return pages.size();
+    /** Truncates the empty pages at the end of the file. Returns the new page count. */
+    private synchronized int releaseEmptyPages() {
+        int pagesAfter = pageCount;
+        while (pagesAfter > 0 && isEmpty(pagesAfter - 1)) {
+            pagesAfter--;
+        }
+        if (pagesAfter < pageCount) {
+            if (bufferPool != null) {
+                bufferPool.truncate(diskManager, pagesAfter);
+            } else {
+                memoryPages.subList(pagesAfter, pageCount).clear();
+            }
+            freeSpaceMap.truncate(pagesAfter);
+            if (zoneMap != null) {
+                zoneMap.truncate(pagesAfter);
+            }
+            pageCount = pagesAfter;
+        }
+        return pagesAfter;
     }
 
     public TableSchema getSchema() {
         return schema;
     }
 
+    /** The table file, or null for an in-memory heap file. */
+    DiskPageManager getDiskManager() {
+        return diskManager;
+    }
+
     public void close() {
         if (diskManager != null) {
             try {
+                bufferPool.flushAll(diskManager);
+                bufferPool.discardAll(diskManager);
                 diskManager.close();
             } catch (IOException e) {
                 log.warn("Failed to close disk manager for table '{}'", schema.getTableName(), e);
             }
+            try {
+                synchronized (this) {
+                    freeSpaceMap.save(siblingPath(".fsm"));
+                }
+            } catch (IOException e) {
+                log.warn("Failed to save free-space map for table '{}'", schema.getTableName(), e);
+            }
+            if (zoneMap != null) {
+                try {
+                    synchronized (this) {
+                        zoneMap.save(siblingPath(".zmap"));
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to save zone map for table '{}'", schema.getTableName(), e);
+                }
+            }
+        }
+        if (overflow != null) {
+            overflow.close();
         }
     }
 
     public void deleteFiles() {
         if (diskManager != null) {
             try {
+                bufferPool.discardAll(diskManager);
                 diskManager.delete();
+                Files.deleteIfExists(siblingPath(".fsm"));
+                Files.deleteIfExists(siblingPath(".zmap"));
             } catch (IOException e) {
                 log.warn("Failed to delete data file for table '{}'", schema.getTableName(), e);
             }
         }
+        if (overflow != null) {
+            overflow.deleteFiles();
+        }
     }
 
-    /** Returns the SlottedPage at the given index (for free-space tracking). */
-    SlottedPage getPage(int index) {
-        return pages.get(index);
+    /**
+     * Passes the tuples matching {@code predicate} to {@code sink}. A {@link ZonePredicate} skips the
+     * pages whose zone rules out every row; pages without a zone get an exact one as they are read.
+     *
+     * <p>The predicate sees each row through a {@link TupleView} on the page, so only the columns it
+     * reads are decoded, and a {@link ZonePredicate} decides most rows on their bytes without decoding
+     * any; a {@link Tuple} of its own is made only for the rows accepted.
+     */
+    private synchronized void scanPages(Predicate<Tuple> predicate, BiConsumer<TupleId, Tuple> sink) {
+        ZonePredicate zonePredicate = predicate instanceof ZonePredicate zp ? zp : null;
+        long live = 0;
+        boolean skipped = false;
+        ReadAhead readAhead = bufferPool != null ? new ReadAhead(bufferPool, diskManager, pageCount) : null;
+        PageCursor cursor = new PageCursor();
+        for (int p = 0; p < pageCount; p++) {
+            if (zonePredicate != null && !zoneMap.mightMatch(p, zonePredicate)) {
+                skipped = true;
+                continue;
+            }
+            if (readAhead != null) {
+                readAhead.onAccess(p);
+            }
+            SlottedPage page = cursor.open(p);
+            try {
+                freeSpaceMap.updatePage(p, page.getFreeSpace());
+                boolean summarise = !zoneMap.isKnown(p);
+                if (summarise) {
+                    zoneMap.resetPage(p);
+                }
+                while (cursor.next()) {
+                    live++;
+                    if (summarise) {
+                        zoneMap.include(p, cursor.row);
+                    }
+                    if (zonePredicate != null ? zonePredicate.testInPlace(cursor.row) : predicate.test(cursor.row)) {
+                        sink.accept(new TupleId(p, cursor.slot), cursor.row.materialize());
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        if (!skipped) {
+            liveTuples = live;
+        }
     }
 
-    private void flushPage(int pageIndex) {
-        if (diskManager == null) return;
+    /**
+     * Walks the live tuples of one pinned page after another, presenting each through the same
+     * {@link TupleView}, so that moving from row to row allocates nothing. Only one page is pinned at
+     * a time; {@link #close()} unpins it.
+     */
+    private final class PageCursor {
+
+        final TupleView row = new TupleView(schema, overflow);
+        private SlottedPage page;
+        private int pageIndex;
+        int slot;
+
+        /** Pins page {@code p} and positions the cursor before its first tuple. */
+        SlottedPage open(int p) {
+            page = pinPage(p);
+            pageIndex = p;
+            slot = -1;
+            return page;
+        }
+
+        /** Moves {@link #row} to the next live tuple of the page; false once there is none. */
+        boolean next() {
+            int found = page.nextActiveSlot(slot + 1);
+            if (found < 0) {
+                slot = page.getSlotCount(); // stays past the end
+                return false;
+            }
+            slot = found;
+            row.point(page.buffer(), page.slotOffset(slot));
+            return true;
+        }
+
+        void close() {
+            page = null;
+            unpinPage(pageIndex, false);
+        }
+    }
+
+    /** Inserts {@code data} into page {@code pageIndex}; false if it does not fit after all. */
+    private boolean moveTo(int pageIndex, byte[] data) {
+        SlottedPage page = pinPage(pageIndex);
+        int slot = -1;
         try {
-            diskManager.writePage(pageIndex, pages.get(pageIndex).getRawData());
-        } catch (IOException e) {
-            throw new UncheckedIOException("Failed to write page " + pageIndex, e);
+            slot = page.insertTuple(data);
+            freeSpaceMap.updatePage(pageIndex, page.getFreeSpace());
+            if (slot >= 0) {
+                zoneMap.include(pageIndex, serializer.deserialize(data, schema, overflow));
+            }
+            return slot >= 0;
+        } finally {
+            unpinPage(pageIndex, slot >= 0);
+        }
+    }
+
+    private boolean isEmpty(int pageIndex) {
+        SlottedPage page = pinPage(pageIndex);
+        try {
+            return page.getSlotCount() == 0;
+        } finally {
+            unpinPage(pageIndex, false);
+        }
+    }
+
+    private void beginStatement() {
+        if (bufferPool != null) {
+            bufferPool.beginStatement();
+        }
+    }
+
+    private void commitStatement() {
+        if (bufferPool != null) {
+            bufferPool.commit();
+        }
+    }
+
+    /**
+     * Replaces the largest VARCHAR and TEXT values by pointers to copies in the overflow file until the
+     * row, {@code size} bytes serialized, is no larger than a quarter of a page.
+     */
+    private Tuple storeLargeValuesOutOfLine(Tuple tuple, int size) {
+        Object[] values = new Object[tuple.getColumnCount()];
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tuple.getValue(i); // a value read from another row gets its own copy
+            if (values[i] instanceof String text) {
+                encoded[i] = text.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        boolean[] outOfLine = new boolean[values.length];
+        while (size > maxInlineTuple) {
+            int largest = -1;
+            for (int i = 0; i < values.length; i++) {
+                if (encoded[i] != null && !outOfLine[i] && encoded[i].length > TupleSerializer.OVERFLOW_POINTER_SIZE
+                        && (largest < 0 || encoded[i].length > encoded[largest].length)) {
+                    largest = i;
+                }
+            }
+            if (largest < 0) break;
+            outOfLine[largest] = true;
+            size -= encoded[largest].length - TupleSerializer.OVERFLOW_POINTER_SIZE;
+        }
+        if (size > SlottedPage.maxTupleSize(pageSize)) {
+            throw new IllegalArgumentException("Row of " + size + " bytes does not fit in a page");
+        }
+        HeapFile overflowFile = overflowFile();
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (outOfLine[i]) {
+                    values[i] = new OverflowValue(overflowFile, overflowFile.insertChain(encoded[i]), encoded[i].length);
+                }
+            }
+        } catch (RuntimeException e) {
+            freeOverflowChains(new Tuple(tuple.getSchema(), values));
+            throw e;
+        }
+        return new Tuple(tuple.getSchema(), values);
+    }
+
+    /** Frees the overflow chains of {@code tuple}, e.g. those stored for a row that failed to insert. */
+    private void freeOverflowChains(Tuple tuple) {
+        for (int i = 0; i < tuple.getColumnCount(); i++) {
+            if (tuple.getRawValue(i) instanceof OverflowValue value) {
+                overflow.freeChain(value.first());
+            }
+        }
+    }
+
+    private HeapFile overflowFile() {
+        if (overflow == null) {
+            if (diskManager == null) {
+                overflow = new HeapFile(schema, null, null, false);
+            } else {
+                try {
+                    overflow = new HeapFile(schema,
+                            DiskPageManager.forTable(siblingPath(".ovf"), diskManager.getIoMode(), schema), bufferPool, false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to open overflow file for table: " + schema.getTableName(), e);
+                }
+            }
+        }
+        return overflow;
+    }
+
+    /**
+     * Stores {@code bytes} as a chain of records, each holding the location of the next one followed
+     * by a chunk of the value. The chain is written back to front so every link is known when written.
+     *
+     * @return the location of the first record
+     */
+    private synchronized TupleId insertChain(byte[] bytes) {
+        int chunkSize = SlottedPage.maxTupleSize(pageSize) - CHAIN_LINK_SIZE;
+        TupleId next = null;
+        for (int from = (bytes.length - 1) / chunkSize * chunkSize; from >= 0; from -= chunkSize) {
+            int length = Math.min(chunkSize, bytes.length - from);
+            int chunk = from;
+            TupleId link = next;
+            next = insertRecord(CHAIN_LINK_SIZE + length, (buf, offset) -> {
+                buf.putInt(offset, link != null ? link.pageIndex() : -1);
+                buf.putInt(offset + 4, link != null ? link.slotIndex() : -1);
+                buf.put(offset + CHAIN_LINK_SIZE, bytes, chunk, length);
+            });
+        }
+        return next;
+    }
+
+    /** Reads back the {@code length} bytes stored by {@link #insertChain}. */
+    synchronized byte[] readChain(TupleId first, int length) {
+        byte[] bytes = new byte[length];
+        int position = 0;
+        for (TupleId id = first; id != null; ) {
+            byte[] record = getRecord(id);
+            ByteBuffer buf = ByteBuffer.wrap(record);
+            int nextPage = buf.getInt();
+            int nextSlot = buf.getInt();
+            System.arraycopy(record, CHAIN_LINK_SIZE, bytes, position, record.length - CHAIN_LINK_SIZE);
+            position += record.length - CHAIN_LINK_SIZE;
+            id = nextPage >= 0 ? new TupleId(nextPage, nextSlot) : null;
+        }
+        return bytes;
+    }
+
+    private synchronized void freeChain(TupleId first) {
+        for (TupleId id = first; id != null; ) {
+            ByteBuffer link = ByteBuffer.wrap(getRecord(id));
+            int nextPage = link.getInt();
+            int nextSlot = link.getInt();
+            deleteTuple(id);
+            id = nextPage >= 0 ? new TupleId(nextPage, nextSlot) : null;
+        }
+    }
+
+    private byte[] getRecord(TupleId id) {
+        byte[] record = null;
+        if (id.pageIndex() >= 0 && id.pageIndex() < pageCount) {
+            SlottedPage page = pinPage(id.pageIndex());
+            try {
+                record = page.getTuple(id.slotIndex());
+            } finally {
+                unpinPage(id.pageIndex(), false);
+            }
+        }
+        if (record == null) {
+            throw new IllegalStateException("Overflow record " + id + " of table " + schema.getTableName() + " is missing");
         }
+        return record;
+    }
+
+    /** A file next to the table file, e.g. {@code USERS.fsm} for {@code USERS.dat} and suffix {@code .fsm}. */
+    private Path siblingPath(String suffix) {
+        String name = diskManager.getFileName();
+        if (name.endsWith(".dat")) {
+            name = name.substring(0, name.length() - ".dat".length());
+        }
+        return diskManager.getFilePath().resolveSibling(name + suffix);
+    }
+
+    private SlottedPage pinPage(int pageIndex) {
+        if (bufferPool == null) {
+            return memoryPages.get(pageIndex);
+        }
+        return bufferPool.fetchPage(diskManager, pageIndex);
+    }
+
+    private SlottedPage allocatePage(int pageIndex) {
+        pageCount++;
+        if (bufferPool == null) {
+            SlottedPage page = new SlottedPage(pageIndex, pageSize);
+            memoryPages.add(page);
+            return page;
+        }
+        return bufferPool.newPage(diskManager, pageIndex);
+    }
+
+    private void unpinPage(int pageIndex, boolean dirty) {
+        if (bufferPool == null) return;
+        bufferPool.unpinPage(diskManager, pageIndex, dirty);
     }
 }
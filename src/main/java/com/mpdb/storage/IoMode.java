@@ -0,0 +1,11 @@
+package com.mpdb.storage;
+
+/**
+ * How {@link DiskPageManager} accesses table files.
+ */
+public enum IoMode {
+    /** Positioned reads and writes through a file channel; every page read copies into a new buffer. */
+    STANDARD,
+    /** Table files are memory-mapped in large chunks and pages are served as views of the mapping. */
+    MMAP
+}
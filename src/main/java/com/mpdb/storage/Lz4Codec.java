@@ -0,0 +1,141 @@
+package com.mpdb.storage;
+
+/**
+ * Pure-Java compressor for the LZ4 block format: a sequence of tokens, each holding a run of literal
+ * bytes followed by a back-reference of at least {@link #MIN_MATCH} bytes into the last 64 KB of
+ * output. Matches are found with a single-probe hash table of 4-byte sequences, which favours speed
+ * over ratio; repetitive text such as log lines still shrinks several times.
+ */
+final class Lz4Codec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;  // the format ends every block with literals
+    private static final int MATCH_LIMIT = 12;   // no match may start within this many bytes of the end
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_BITS = 12;
+
+    private Lz4Codec() {
+    }
+
+    /** Upper bound of the compressed size of {@code length} bytes, for sizing the output buffer. */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code src[0, length)} into {@code dst}, which must hold at least
+     * {@link #maxCompressedLength} bytes.
+     *
+     * @return the number of bytes written to {@code dst}
+     */
+    static int compress(byte[] src, int length, byte[] dst) {
+        int[] table = new int[1 << HASH_BITS]; // position + 1 of the last sequence with each hash
+        int anchor = 0;
+        int out = 0;
+        int pos = 0;
+        int limit = length - MATCH_LIMIT;
+        while (pos < limit) {
+            int sequence = readInt(src, pos);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[hash] - 1;
+            table[hash] = pos + 1;
+            if (ref < 0 || pos - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                pos++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            int maxLength = length - LAST_LITERALS - pos;
+            while (matchLength < maxLength && src[ref + matchLength] == src[pos + matchLength]) {
+                matchLength++;
+            }
+            out = writeLiterals(src, anchor, pos - anchor, matchLength - MIN_MATCH, dst, out);
+            dst[out++] = (byte) (pos - ref);
+            dst[out++] = (byte) ((pos - ref) >>> 8);
+            if (matchLength - MIN_MATCH >= 15) {
+                out = writeLength(dst, out, matchLength - MIN_MATCH - 15);
+            }
+            pos += matchLength;
+            anchor = pos;
+        }
+        return writeLiterals(src, anchor, length - anchor, 0, dst, out);
+    }
+
+    /**
+     * Decompresses {@code src[offset, offset + length)} into {@code dst}, which it must fill exactly.
+     *
+     * @throws IllegalArgumentException if the input is not a valid block of that size
+     */
+    static void decompress(byte[] src, int offset, int length, byte[] dst) {
+        int in = offset;
+        int end = offset + length;
+        int out = 0;
+        try {
+            while (true) {
+                int token = src[in++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, in, dst, out, literals);
+                in += literals;
+                out += literals;
+                if (in >= end) break;
+
+                int distance = (src[in] & 0xFF) | (src[in + 1] & 0xFF) << 8;
+                in += 2;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = out - distance;
+                if (distance == 0 || ref < 0 || out + matchLength > dst.length) {
+                    throw new IllegalArgumentException("Corrupt compressed data at byte " + (in - offset));
+                }
+                for (int i = 0; i < matchLength; i++) {
+                    dst[out + i] = dst[ref + i]; // byte by byte: the match may overlap its own output
+                }
+                out += matchLength;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt compressed data", e);
+        }
+        if (in != end || out != dst.length) {
+            throw new IllegalArgumentException("Compressed data decodes to " + out + " bytes, expected " + dst.length);
+        }
+    }
+
+    /**
+     * Writes the token of a sequence and its {@code literals} literal bytes taken from {@code src[from, ...)}.
+     * The caller writes the match that follows, if any.
+     */
+    private static int writeLiterals(byte[] src, int from, int literals, int extraMatchLength, byte[] dst, int out) {
+        dst[out++] = (byte) (Math.min(literals, 15) << 4 | Math.min(extraMatchLength, 15));
+        if (literals >= 15) {
+            out = writeLength(dst, out, literals - 15);
+        }
+        System.arraycopy(src, from, dst, out, literals);
+        return out + literals;
+    }
+
+    private static int writeLength(byte[] dst, int out, int length) {
+        while (length >= 255) {
+            dst[out++] = (byte) 255;
+            length -= 255;
+        }
+        dst[out++] = (byte) length;
+        return out;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+}
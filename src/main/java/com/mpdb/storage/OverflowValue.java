@@ -0,0 +1,37 @@
+package com.mpdb.storage;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Placeholder for a VARCHAR or TEXT value that is stored out of line in the table's overflow file.
+ * The tuple holds only this pointer; {@link Tuple#getValue(int)} reads the chain on first use, so
+ * queries that never look at the column never read the overflow pages.
+ */
+final class OverflowValue {
+
+    private final HeapFile overflow; // null when the tuple was read without access to the table
+    private final TupleId first;
+    private final int length;
+
+    OverflowValue(HeapFile overflow, TupleId first, int length) {
+        this.overflow = overflow;
+        this.first = first;
+        this.length = length;
+    }
+
+    TupleId first() {
+        return first;
+    }
+
+    /** Size of the value in bytes. */
+    int length() {
+        return length;
+    }
+
+    String read() {
+        if (overflow == null) {
+            throw new IllegalStateException("Overflow value at " + first + " cannot be read without its table");
+        }
+        return new String(overflow.readChain(first, length), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,66 @@
+package com.mpdb.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of off-heap page buffers for the {@link BufferPool}. Buffers are cut from direct chunks of
+ * {@link #CHUNK_SIZE} bytes and recycled through a free list per page size, so resident pages
+ * occupy no Java heap: a large buffer pool neither inflates the old generation nor lengthens
+ * garbage collection pauses, and the heap can be sized for query processing alone.
+ *
+ * <p>Chunks are never returned to the operating system; the arena stays as large as the most pages
+ * of each size that were resident at once, rounded up to whole chunks, which the buffer pool's
+ * budget bounds.
+ */
+class PageArena {
+
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private final Map<Integer, ArrayDeque<ByteBuffer>> free = new HashMap<>();
+    private long allocatedBytes;
+
+    /** A buffer of {@code pageSize} bytes with arbitrary contents. */
+    synchronized ByteBuffer allocate(int pageSize) {
+        ArrayDeque<ByteBuffer> buffers = free.computeIfAbsent(pageSize, size -> new ArrayDeque<>());
+        if (buffers.isEmpty()) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, pageSize));
+            allocatedBytes += chunk.capacity();
+            for (int offset = 0; offset + pageSize <= chunk.capacity(); offset += pageSize) {
+                buffers.push(chunk.slice(offset, pageSize));
+            }
+        }
+        return buffers.pop();
+    }
+
+    /** A buffer holding a copy of the {@code pageSize} bytes of {@code data} from its position on. */
+    ByteBuffer copyOf(ByteBuffer data, int pageSize) {
+        ByteBuffer buffer = allocate(pageSize);
+        buffer.put(0, data, data.position(), pageSize);
+        return buffer;
+    }
+
+    /**
+     * Takes back a buffer handed out by {@link #allocate}. Anything else, such as a heap buffer or a
+     * read-only view of a memory-mapped file, is left to the garbage collector.
+     */
+    synchronized void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.isReadOnly() || !free.containsKey(buffer.capacity())) {
+            return;
+        }
+        free.get(buffer.capacity()).push(buffer);
+    }
+
+    /** Off-heap memory taken from the operating system so far. */
+    synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /** Buffers of {@code pageSize} bytes ready to be handed out; for tests. */
+    synchronized int getFreeCount(int pageSize) {
+        ArrayDeque<ByteBuffer> buffers = free.get(pageSize);
+        return buffers == null ? 0 : buffers.size();
+    }
+}
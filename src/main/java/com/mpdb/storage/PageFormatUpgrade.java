@@ -0,0 +1,177 @@
+package com.mpdb.storage;
+
+import com.mpdb.catalog.ColumnType;
+import com.mpdb.catalog.TableSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One-time rewrite of a table file written in the original page format: 4 KB pages with an 8-byte
+ * header (2-byte slot count, 2-byte free space pointer, 4-byte page id), 4-byte slots (2-byte offset,
+ * 2-byte length, offset 0xFFFF when deleted) and no checksum. Such a file cannot be read in place, as
+ * its pages lack the format marker and checksum, and a full page does not fit in the current layout
+ * with its larger header and slots.
+ *
+ * <p>The rows of the original format had no format version: a 4-byte size, the null bitmap, then the
+ * non-NULL values back to back, fixed-length types directly and VARCHAR and TEXT as a 4-byte length
+ * and UTF-8 bytes. They are read from the old pages and inserted into a new table file in a scratch
+ * directory, large values going out of line as usual. The new files then replace the old ones; the table file is renamed
+ * last, so an upgrade interrupted before that starts over from the old file at the next open.
+ */
+final class PageFormatUpgrade {
+
+    private static final Logger log = LoggerFactory.getLogger(PageFormatUpgrade.class);
+
+    static final int PAGE_SIZE = 4096;
+    private static final int HEADER_SIZE = 8;
+    private static final int SLOT_SIZE = 4;
+    private static final int DELETED_SENTINEL = 0xFFFF;
+    private static final long BUFFER_POOL_BYTES = 1024L * 1024;
+
+    private PageFormatUpgrade() {
+    }
+
+    /**
+     * Rewrites {@code file} in the current page format if it is in the original one.
+     *
+     * @return whether the file was rewritten
+     * @throws IOException if the file starts like a table file of the original format but one of its
+     *                     pages is not a valid page of that format
+     */
+    static boolean upgradeIfNeeded(Path file, TableSchema schema) throws IOException {
+        if (schema.isCompressed() || schema.getPageSize() != PAGE_SIZE || !Files.exists(file)) {
+            return false; // the original format had neither compression nor other page sizes
+        }
+        long size = Files.size(file);
+        if (size == 0 || size % PAGE_SIZE != 0) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+            readPage(channel, 0, page);
+            if (!isOriginalFormat(page, 0)) {
+                return false;
+            }
+            rewrite(channel, (int) (size / PAGE_SIZE), file, schema, page);
+        }
+        return true;
+    }
+
+    /**
+     * Whether {@code page} is page {@code pageIndex} of the original format: no format marker, and
+     * a header and slot directory that are consistent with each other.
+     */
+    static boolean isOriginalFormat(ByteBuffer page, int pageIndex) {
+        SlottedPage current = new SlottedPage(page);
+        if (current.hasCurrentFormat() || current.isUnformatted()) {
+            return false;
+        }
+        int slotCount = Short.toUnsignedInt(page.getShort(0));
+        int freeSpacePtr = Short.toUnsignedInt(page.getShort(2));
+        if (page.getInt(4) != pageIndex || HEADER_SIZE + slotCount * SLOT_SIZE > freeSpacePtr || freeSpacePtr > PAGE_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < slotCount; i++) {
+            int offset = Short.toUnsignedInt(page.getShort(HEADER_SIZE + i * SLOT_SIZE));
+            int length = Short.toUnsignedInt(page.getShort(HEADER_SIZE + i * SLOT_SIZE + 2));
+            if (offset != DELETED_SENTINEL && (offset < freeSpacePtr || offset + length > PAGE_SIZE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void rewrite(FileChannel channel, int pageCount, Path file, TableSchema schema, ByteBuffer page)
+            throws IOException {
+        Path scratch = file.resolveSibling(file.getFileName() + ".upgrade");
+        deleteRecursively(scratch);
+        Files.createDirectories(scratch);
+        BufferPool bufferPool = new BufferPool(BUFFER_POOL_BYTES);
+        HeapFile upgraded = new HeapFile(schema,
+                new DiskPageManager(scratch.resolve(file.getFileName()), IoMode.STANDARD, PAGE_SIZE), bufferPool);
+        long rows = 0;
+        try {
+            for (int p = 0; p < pageCount; p++) {
+                if (p > 0) {
+                    readPage(channel, p, page);
+                    if (!isOriginalFormat(page, p)) {
+                        throw new IOException("Page " + p + " of " + file.getFileName()
+                                + " is not a valid page of the original page format; the file was left unchanged");
+                    }
+                }
+                int slotCount = Short.toUnsignedInt(page.getShort(0));
+                for (int i = 0; i < slotCount; i++) {
+                    int offset = Short.toUnsignedInt(page.getShort(HEADER_SIZE + i * SLOT_SIZE));
+                    if (offset == DELETED_SENTINEL) continue;
+                    upgraded.insertTuple(readRow(page, offset, schema));
+                    rows++;
+                }
+            }
+        } finally {
+            upgraded.close();
+            bufferPool.close();
+        }
+        // The table file goes last: until it is replaced, the next open starts the upgrade over
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(scratch)) {
+            for (Path upgradedFile : files) {
+                if (!upgradedFile.getFileName().equals(file.getFileName())) {
+                    Files.move(upgradedFile, file.resolveSibling(upgradedFile.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        Files.move(scratch.resolve(file.getFileName()), file,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(scratch);
+        log.info("Upgraded table '{}' from the original page format: {} row(s) from {} page(s)",
+                schema.getTableName(), rows, pageCount);
+    }
+
+    /** Decodes the row of the original format at {@code offset}. */
+    static Tuple readRow(ByteBuffer page, int offset, TableSchema schema) {
+        int colCount = schema.getColumnCount();
+        Object[] values = new Object[colCount];
+        int pos = offset + 4 + (colCount + 7) / 8;
+        for (int i = 0; i < colCount; i++) {
+            if ((page.get(offset + 4 + i / 8) & (1 << (i % 8))) != 0) continue;
+            ColumnType type = schema.getColumn(i).type();
+            if (type.isFixedLength()) {
+                values[i] = TupleSerializer.readFixed(page, pos, type);
+                pos += type.getFixedSize();
+            } else {
+                int len = page.getInt(pos);
+                values[i] = TupleSerializer.readString(page, pos + 4, len);
+                pos += 4 + len;
+            }
+        }
+        return new Tuple(schema, values);
+    }
+
+    private static void readPage(FileChannel channel, int pageIndex, ByteBuffer page) throws IOException {
+        page.clear();
+        long position = (long) pageIndex * PAGE_SIZE;
+        while (page.hasRemaining()) {
+            if (channel.read(page, position + page.position()) < 0) {
+                throw new IOException("Unexpected end of file reading page " + pageIndex);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,176 @@
+package com.mpdb.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Low-priority background thread that re-reads table pages from disk and verifies their checksums,
+ * so that latent corruption of rarely read (cold) pages is found before a query trips over it.
+ *
+ * <p>Pages resident in the {@link BufferPool} are skipped: they are hot, were verified when loaded,
+ * and their on-disk copy is about to be replaced anyway. Reads bypass the pool so a pass does not
+ * evict the working set, and are paced to a fixed number of pages per second.
+ */
+public class PageScrubber implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PageScrubber.class);
+
+    private final Supplier<Collection<HeapFile>> heapFiles;
+    private final BufferPool bufferPool;
+    private final long intervalMillis;
+    private final int pagesPerSecond;
+
+    private final Object lock = new Object();
+    private final List<String> corruptPages = new ArrayList<>();
+    private volatile boolean closed;
+    private Thread thread;
+    private long pagesVerified;
+    private long passes;
+
+    /**
+     * @param intervalMillis wait before each full pass; 0 disables the scrubber
+     * @param pagesPerSecond read budget; 0 for unlimited
+     */
+    public PageScrubber(Supplier<Collection<HeapFile>> heapFiles, BufferPool bufferPool,
+                        long intervalMillis, int pagesPerSecond) {
+        this.heapFiles = heapFiles;
+        this.bufferPool = bufferPool;
+        this.intervalMillis = intervalMillis;
+        this.pagesPerSecond = pagesPerSecond;
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (thread == null && !closed && intervalMillis > 0) {
+                thread = new Thread(this::run, "mpdb-scrubber");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.start();
+            }
+        }
+    }
+
+    /** Verifies every cold page of every table once, on the calling thread. */
+    public void scrub() {
+        for (HeapFile heapFile : heapFiles.get()) {
+            DiskPageManager file = heapFile.getDiskManager();
+            if (file == null) continue;
+            try {
+                scrubFile(file);
+            } catch (IOException e) {
+                // Typically the table was dropped or closed during the pass
+                log.debug("Skipped scrubbing {}: {}", file.getFileName(), e.getMessage());
+            }
+            if (closed) return;
+        }
+        synchronized (lock) {
+            passes++;
+        }
+    }
+
+    /** Pages that failed verification, as {@code FILE:page}, in the order they were found. */
+    public List<String> getCorruptPages() {
+        synchronized (lock) {
+            return List.copyOf(corruptPages);
+        }
+    }
+
+    public long getPagesVerified() {
+        synchronized (lock) {
+            return pagesVerified;
+        }
+    }
+
+    public long getPassCount() {
+        synchronized (lock) {
+            return passes;
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread running;
+        synchronized (lock) {
+            closed = true;
+            running = thread;
+            lock.notifyAll();
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void scrubFile(DiskPageManager file) throws IOException {
+        int pageCount = file.getPageCount();
+        long pauseNanos = pagesPerSecond > 0 ? 1_000_000_000L / pagesPerSecond : 0;
+        for (int i = 0; i < pageCount && !closed; i++) {
+            if (bufferPool.isResident(file, i)) continue;
+            boolean corrupt = isCorrupt(file, i);
+            synchronized (lock) {
+                pagesVerified++;
+                if (corrupt) {
+                    String location = file.getFileName() + ":" + i;
+                    if (!corruptPages.contains(location)) {
+                        corruptPages.add(location);
+                        log.error("Checksum mismatch on page {} of {}", i, file.getFileName());
+                    }
+                }
+                if (pauseNanos > 0) {
+                    waitQuietly(pauseNanos / 1_000_000, (int) (pauseNanos % 1_000_000));
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the disk image of page {@code i} fails verification. The read takes no latch, so the
+     * page may have been loaded and written back meanwhile, leaving the read torn: a mismatch counts
+     * only if a second read fails too while the page is still not resident.
+     */
+    private boolean isCorrupt(DiskPageManager file, int i) throws IOException {
+        if (new SlottedPage(file.readPage(i)).verifyChecksum()) {
+            return false;
+        }
+        if (bufferPool.isResident(file, i)) {
+            return false; // hot now; verified when it was loaded
+        }
+        return !new SlottedPage(file.readPage(i)).verifyChecksum() && !bufferPool.isResident(file, i);
+    }
+
+    private void waitQuietly(long millis, int nanos) {
+        if (closed) return;
+        try {
+            lock.wait(millis, nanos); // woken early by close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (lock) {
+                long deadline = System.currentTimeMillis() + intervalMillis;
+                long remaining;
+                while (!closed && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+            }
+            scrub();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mpdb.storage;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Per-scan read-ahead: watches the pages a scan visits and, once the access pattern is sequential,
+ * keeps the next window of pages loading into the {@link BufferPool} on its background I/O thread,
+ * so that the scan evaluates tuples while the disk works.
+ *
+ * <p>The window adapts to the consumer. If the scan reaches pages whose read is still in flight, it
+ * is outrunning the disk: it waits for that read and the window doubles. If a page that was read
+ * ahead has already been evicted when the scan gets to it, the window was too large for the pool
+ * and is halved.
+ */
+public class ReadAhead {
+
+    static final int MIN_WINDOW = 8;
+    static final int MAX_WINDOW = 256;
+    private static final int SEQUENTIAL_THRESHOLD = 2; // consecutive accesses before reading ahead
+
+    private final BufferPool bufferPool;
+    private final DiskPageManager file;
+    private final int pageCount;
+
+    private int lastPage = -2;
+    private int sequentialRun;
+    private int window = MIN_WINDOW;
+    private int requestedUpTo;  // end (exclusive) of the pages already requested
+    private int inFlightStart = -1;
+    private CompletableFuture<Integer> inFlight;
+
+    public ReadAhead(BufferPool bufferPool, DiskPageManager file, int pageCount) {
+        this.bufferPool = bufferPool;
+        this.file = file;
+        this.pageCount = pageCount;
+    }
+
+    /** Called before the scan pins {@code pageIndex}. */
+    public void onAccess(int pageIndex) {
+        if (pageIndex != lastPage + 1) {
+            sequentialRun = 0;
+            window = MIN_WINDOW;
+            requestedUpTo = pageIndex + 1;
+        } else {
+            sequentialRun++;
+        }
+        lastPage = pageIndex;
+        if (sequentialRun < SEQUENTIAL_THRESHOLD) return;
+
+        boolean reading = inFlight != null && !inFlight.isDone();
+        if (reading && pageIndex >= inFlightStart && pageIndex < requestedUpTo) {
+            // The scan caught up with the disk: wait for the read rather than issue a duplicate one
+            window = Math.min(window * 2, MAX_WINDOW);
+            inFlight.join();
+            reading = false;
+        } else if (pageIndex < requestedUpTo && !bufferPool.isResident(file, pageIndex)) {
+            window = Math.max(window / 2, MIN_WINDOW);
+        }
+        if (!reading && requestedUpTo - pageIndex <= window / 2) {
+            int start = Math.max(requestedUpTo, pageIndex + 1);
+            int count = Math.min(window, pageCount - start);
+            if (count > 0) {
+                inFlightStart = start;
+                inFlight = bufferPool.prefetchAsync(file, start, count);
+                requestedUpTo = start + count;
+            }
+        }
+    }
+
+    int getWindow() {
+        return window;
+    }
+}
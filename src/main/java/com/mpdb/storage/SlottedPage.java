@@ -1,106 +1,344 @@
 package com.mpdb.storage;
 
+import com.mpdb.catalog.TableSchema;
+
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.CRC32C;
 
+/**
+ * A page of tuples: a header, a directory of slots growing forward from it, and the tuples growing
+ * backward from the end of the page. A page is {@link #PAGE_SIZE} bytes unless its table was created
+ * with another page size; all offsets are 32-bit so that pages of up to 64 KB can be addressed.
+ */
 public class SlottedPage {
 
-    public static final int PAGE_SIZE = 4096;
-    private static final int HEADER_SIZE = 8; // 2B slotCount + 2B freeSpacePtr + 4B pageId
-    static final int SLOT_SIZE = 4;   // 2B offset + 2B length
-    private static final short DELETED_SENTINEL = (short) 0xFFFF;
+    /** Default page size. */
+    public static final int PAGE_SIZE = TableSchema.DEFAULT_PAGE_SIZE;
+    // 4B slotCount + 4B freeSpacePtr + 4B pageId + 4B checksum + 4B firstFreeSlot + 4B deadBytes + 4B format
+    private static final int HEADER_SIZE = 28;
+    private static final int FREE_SPACE_PTR_OFFSET = 4;
+    private static final int PAGE_ID_OFFSET = 8;
+    private static final int CHECKSUM_OFFSET = 12;
+    private static final int FIRST_FREE_SLOT_OFFSET = 16;
+    private static final int DEAD_BYTES_OFFSET = 20;
+    private static final int FORMAT_OFFSET = 24;
+    /** "MPD" followed by the version of the page layout; pages of the original 8-byte-header layout have none. */
+    static final int PAGE_FORMAT = 0x4D504401;
+    static final int SLOT_SIZE = 8;   // 4B offset + 4B length
+    /** Largest tuple that fits on an empty page of the default size. */
+    public static final int MAX_TUPLE_SIZE = maxTupleSize(PAGE_SIZE);
+    private static final int DELETED_SENTINEL = -1;
+    private static final int NO_FREE_SLOT = -1;
+    private static final byte[] ZEROS = new byte[TableSchema.MAX_PAGE_SIZE];
+    /** Where {@link #compact()} gathers the live tuples; one per thread so that compaction allocates nothing. */
+    private static final ThreadLocal<byte[]> COMPACT_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[TableSchema.MAX_PAGE_SIZE]);
 
-    private final byte[] data;
+    private ByteBuffer buf; // read-only views are replaced by a private copy on first write; null once detached
     private final int pageId;
 
     public SlottedPage(int pageId) {
-        this.data = new byte[PAGE_SIZE];
+        this(pageId, PAGE_SIZE);
+    }
+
+    public SlottedPage(int pageId, int pageSize) {
+        this(pageId, ByteBuffer.allocate(checkPageSize(pageSize)));
+    }
+
+    /**
+     * Formats {@code buffer} as an empty page, whatever it held before, e.g. an off-heap buffer
+     * recycled by the buffer pool.
+     */
+    public SlottedPage(int pageId, ByteBuffer buffer) {
+        int pageSize = checkPageSize(buffer.capacity());
+        this.buf = buffer;
         this.pageId = pageId;
-        ByteBuffer buf = ByteBuffer.wrap(data);
-        buf.putShort((short) 0);           // slotCount
-        buf.putShort((short) PAGE_SIZE);    // freeSpacePtr (points to end)
-        buf.putInt(pageId);                 // pageId
+        buf.put(0, ZEROS, 0, pageSize);
+        buf.putInt(FREE_SPACE_PTR_OFFSET, pageSize);    // freeSpacePtr (points to end)
+        buf.putInt(PAGE_ID_OFFSET, pageId);
+        buf.putInt(FIRST_FREE_SLOT_OFFSET, NO_FREE_SLOT);
+        buf.putInt(FORMAT_OFFSET, PAGE_FORMAT);
+    }
+
+    private static int checkPageSize(int pageSize) {
+        if (!TableSchema.isValidPageSize(pageSize)) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        return pageSize;
+    }
+
+    /** Largest tuple that fits on an empty page of {@code pageSize} bytes. */
+    public static int maxTupleSize(int pageSize) {
+        return pageSize - HEADER_SIZE - SLOT_SIZE;
     }
 
     /** Reconstruct a page from raw bytes loaded from disk. */
     public SlottedPage(byte[] rawData) {
-        if (rawData.length != PAGE_SIZE) {
-            throw new IllegalArgumentException("Page data must be " + PAGE_SIZE + " bytes");
+        this(ByteBuffer.wrap(rawData));
+    }
+
+    /**
+     * Reconstruct a page on top of an existing buffer, e.g. a slice of a memory-mapped file.
+     * The buffer is used in place; a read-only buffer is copied the first time the page is modified.
+     */
+    public SlottedPage(ByteBuffer buffer) {
+        if (!TableSchema.isValidPageSize(buffer.capacity())) {
+            throw new IllegalArgumentException("Page data of " + buffer.capacity() + " bytes is not a valid page size");
         }
-        this.data = rawData;
-        this.pageId = ByteBuffer.wrap(data, 4, 4).getInt();
+        this.buf = buffer;
+        this.pageId = buf.getInt(PAGE_ID_OFFSET);
     }
 
-    /** Returns the backing byte array for writing to disk. */
+    /** Returns the page contents as a byte array for writing to disk. */
     public byte[] getRawData() {
-        return data;
+        if (buf.hasArray()) {
+            return buf.array();
+        }
+        byte[] copy = new byte[buf.capacity()];
+        buf.get(0, copy);
+        return copy;
+    }
+
+    /** Returns a view of the page contents positioned at the start of the page. */
+    public ByteBuffer getBuffer() {
+        return buf.duplicate().clear();
+    }
+
+    /**
+     * The page's own buffer, for reading tuples in place without copying them. Only valid until the
+     * page is next modified, which may replace a read-only buffer, or leaves the buffer pool.
+     */
+    ByteBuffer buffer() {
+        return buf;
+    }
+
+    /**
+     * Hands the page's buffer back, e.g. for reuse by another page, and leaves this page unusable:
+     * any later access fails instead of seeing another page's bytes.
+     */
+    ByteBuffer detach() {
+        ByteBuffer detached = buf;
+        buf = null;
+        return detached;
     }
 
     public int getPageId() {
         return pageId;
     }
 
+    public int getPageSize() {
+        return buf.capacity();
+    }
+
     public int getSlotCount() {
-        return Short.toUnsignedInt(ByteBuffer.wrap(data, 0, 2).getShort());
+        return buf.getInt(0);
     }
 
     private int getFreeSpacePtr() {
-        return Short.toUnsignedInt(ByteBuffer.wrap(data, 2, 2).getShort());
+        return buf.getInt(FREE_SPACE_PTR_OFFSET);
     }
 
     private void setSlotCount(int count) {
-        ByteBuffer.wrap(data, 0, 2).putShort((short) count);
+        buf.putInt(0, count);
     }
 
     private void setFreeSpacePtr(int ptr) {
-        ByteBuffer.wrap(data, 2, 2).putShort((short) ptr);
+        buf.putInt(FREE_SPACE_PTR_OFFSET, ptr);
+    }
+
+    /** Head of the chain of deleted slots; each links to the next through its length field. */
+    private int getFirstFreeSlot() {
+        return buf.getInt(FIRST_FREE_SLOT_OFFSET);
+    }
+
+    private void setFirstFreeSlot(int slotIndex) {
+        buf.putInt(FIRST_FREE_SLOT_OFFSET, slotIndex);
+    }
+
+    private void setDeadSpace(int bytes) {
+        buf.putInt(DEAD_BYTES_OFFSET, bytes);
+    }
+
+    /**
+     * Stores the CRC32C of the page in its header. Called just before the page is written out, so the
+     * checksum covers exactly the bytes that reach the disk.
+     */
+    public void updateChecksum() {
+        ensureWritable();
+        buf.putInt(CHECKSUM_OFFSET, computeChecksum());
+    }
+
+    /** Checks the stored checksum against the page contents. Never-written (all-zero) pages pass. */
+    public boolean verifyChecksum() {
+        int stored = buf.getInt(CHECKSUM_OFFSET);
+        if (stored == 0 && isUnformatted()) {
+            return true;
+        }
+        return stored == computeChecksum();
+    }
+
+    public int getStoredChecksum() {
+        return buf.getInt(CHECKSUM_OFFSET);
+    }
+
+    /** CRC32C over the whole page except the checksum field itself. */
+    private int computeChecksum() {
+        CRC32C crc = new CRC32C();
+        crc.update(buf.duplicate().clear().limit(CHECKSUM_OFFSET));
+        crc.update(buf.duplicate().clear().position(CHECKSUM_OFFSET + 4));
+        return (int) crc.getValue();
     }
 
+    /** Whether the page was written in the current page layout, as opposed to an older release's. */
+    public boolean hasCurrentFormat() {
+        return buf.getInt(FORMAT_OFFSET) == PAGE_FORMAT;
+    }
+
+    /**
+     * True for an all-zero page, i.e. a region of the file that was never written. A page with only a
+     * zeroed header, e.g. after a torn write, is not unformatted and fails its checksum instead.
+     */
+    public boolean isUnformatted() {
+        int pageSize = getPageSize();
+        return buf.duplicate().clear().mismatch(ByteBuffer.wrap(ZEROS, 0, pageSize)) < 0;
+    }
+
+    /**
+     * Bytes available for new tuples, including space held by deleted tuples that an insert
+     * reclaims by compacting the page.
+     */
     public int getFreeSpace() {
+        return getContiguousFreeSpace() + getDeadSpace();
+    }
+
+    /** Bytes between the end of the slot directory and the start of the tuple area. */
+    private int getContiguousFreeSpace() {
         int slotDirectoryEnd = HEADER_SIZE + getSlotCount() * SLOT_SIZE;
         return getFreeSpacePtr() - slotDirectoryEnd;
     }
 
+    /** Bytes still occupied by deleted tuples; an insert reclaims them by compacting the page. */
+    public int getDeadSpace() {
+        return buf.getInt(DEAD_BYTES_OFFSET);
+    }
+
+    /**
+     * Slides all live tuples to the end of the page so that the space of deleted tuples becomes
+     * one contiguous gap. Slot numbers do not change; only their offsets are rewritten.
+     */
+    public void compact() {
+        if (getDeadSpace() == 0) return;
+        ensureWritable();
+        int count = getSlotCount();
+        int pageSize = getPageSize();
+        byte[] tuples = COMPACT_BUFFER.get();
+        int ptr = pageSize;
+        for (int i = 0; i < count; i++) {
+            int slotOffset = HEADER_SIZE + i * SLOT_SIZE;
+            int off = buf.getInt(slotOffset);
+            if (off == DELETED_SENTINEL) continue;
+            int len = buf.getInt(slotOffset + 4);
+            ptr -= len;
+            buf.get(off, tuples, ptr, len);
+            buf.putInt(slotOffset, ptr);
+        }
+        buf.put(ptr, tuples, ptr, pageSize - ptr);
+        setFreeSpacePtr(ptr);
+        setDeadSpace(0);
+    }
+
+    /**
+     * Stores the tuple, reusing the slot of a deleted tuple when there is one so that the slot
+     * directory does not grow under delete/insert churn.
+     *
+     * @return the slot index, or -1 if the page has no room
+     */
     public int insertTuple(byte[] tupleData) {
-        int needed = tupleData.length + SLOT_SIZE;
+        int slotIndex = reserveTuple(tupleData.length);
+        if (slotIndex >= 0) {
+            buf.put(slotOffset(slotIndex), tupleData);
+        }
+        return slotIndex;
+    }
+
+    /**
+     * Makes room for a tuple of {@code length} bytes like {@link #insertTuple} but leaves it unwritten:
+     * the caller writes the tuple into {@link #buffer()} at {@link #slotOffset} of the returned slot,
+     * e.g. by serializing it there, before anything else reads the page.
+     *
+     * @return the slot index, or -1 if the page has no room
+     */
+    int reserveTuple(int length) {
+        int freeSlot = getFirstFreeSlot();
+        int needed = length + (freeSlot == NO_FREE_SLOT ? SLOT_SIZE : 0);
         if (getFreeSpace() < needed) {
             return -1; // no room
         }
+        ensureWritable();
+        if (getContiguousFreeSpace() < needed) {
+            compact(); // the page has the room, but fragmented by deleted tuples
+        }
 
-        int newFreeSpacePtr = getFreeSpacePtr() - tupleData.length;
-        System.arraycopy(tupleData, 0, data, newFreeSpacePtr, tupleData.length);
+        int newFreeSpacePtr = getFreeSpacePtr() - length;
 
-        int slotIndex = getSlotCount();
+        int slotIndex;
+        if (freeSlot != NO_FREE_SLOT) {
+            slotIndex = freeSlot;
+            setFirstFreeSlot(buf.getInt(HEADER_SIZE + slotIndex * SLOT_SIZE + 4));
+        } else {
+            slotIndex = getSlotCount();
+            setSlotCount(slotIndex + 1);
+        }
         int slotOffset = HEADER_SIZE + slotIndex * SLOT_SIZE;
-        ByteBuffer.wrap(data, slotOffset, SLOT_SIZE)
-                .putShort((short) newFreeSpacePtr)
-                .putShort((short) tupleData.length);
-
-        setSlotCount(slotIndex + 1);
+        buf.putInt(slotOffset, newFreeSpacePtr);
+        buf.putInt(slotOffset + 4, length);
         setFreeSpacePtr(newFreeSpacePtr);
 
         return slotIndex;
     }
 
     public byte[] getTuple(int slotIndex) {
-        if (slotIndex < 0 || slotIndex >= getSlotCount()) {
-            return null;
+        int offset = slotOffset(slotIndex);
+        if (offset < 0) {
+            return null; // deleted
         }
-        int slotOffset = HEADER_SIZE + slotIndex * SLOT_SIZE;
-        ByteBuffer slotBuf = ByteBuffer.wrap(data, slotOffset, SLOT_SIZE);
-        short offset = slotBuf.getShort();
-        short length = slotBuf.getShort();
+        byte[] tupleData = new byte[slotLength(slotIndex)];
+        buf.get(offset, tupleData);
+        return tupleData;
+    }
 
-        if (offset == DELETED_SENTINEL) {
-            return null; // deleted
+    /**
+     * Where the tuple in {@code slotIndex} starts in the page buffer, or -1 if the slot is out of
+     * range or its tuple was deleted.
+     */
+    public int slotOffset(int slotIndex) {
+        if (slotIndex < 0 || slotIndex >= getSlotCount()) {
+            return -1;
         }
+        int offset = buf.getInt(HEADER_SIZE + slotIndex * SLOT_SIZE);
+        return offset == DELETED_SENTINEL ? -1 : offset;
+    }
 
-        int off = Short.toUnsignedInt(offset);
-        int len = Short.toUnsignedInt(length);
-        byte[] tupleData = new byte[len];
-        System.arraycopy(data, off, tupleData, 0, len);
-        return tupleData;
+    /** Length of the tuple in {@code slotIndex}, which must hold one. */
+    public int slotLength(int slotIndex) {
+        return buf.getInt(HEADER_SIZE + slotIndex * SLOT_SIZE + 4);
+    }
+
+    /**
+     * The first slot from {@code fromSlot} on that holds a tuple, or -1 if there is none. Walking the
+     * page with {@code for (int s = nextActiveSlot(0); s >= 0; s = nextActiveSlot(s + 1))} allocates
+     * nothing, unlike {@link #getActiveSlots()}.
+     */
+    public int nextActiveSlot(int fromSlot) {
+        int count = getSlotCount();
+        for (int i = Math.max(fromSlot, 0); i < count; i++) {
+            if (buf.getInt(HEADER_SIZE + i * SLOT_SIZE) != DELETED_SENTINEL) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public boolean deleteTuple(int slotIndex) {
@@ -108,24 +346,65 @@ public class SlottedPage {
             return false;
         }
         int slotOffset = HEADER_SIZE + slotIndex * SLOT_SIZE;
-        short currentOffset = ByteBuffer.wrap(data, slotOffset, 2).getShort();
-        if (currentOffset == DELETED_SENTINEL) {
+        if (buf.getInt(slotOffset) == DELETED_SENTINEL) {
             return false; // already deleted
         }
-        ByteBuffer.wrap(data, slotOffset, 2).putShort(DELETED_SENTINEL);
+        ensureWritable();
+        setDeadSpace(getDeadSpace() + buf.getInt(slotOffset + 4));
+        buf.putInt(slotOffset, DELETED_SENTINEL);
+        if (slotIndex == getSlotCount() - 1) {
+            trimSlotDirectory();
+        } else {
+            buf.putInt(slotOffset + 4, getFirstFreeSlot());
+            setFirstFreeSlot(slotIndex);
+        }
         return true;
     }
 
-    public List<Integer> getActiveSlots() {
-        List<Integer> active = new ArrayList<>();
+    /**
+     * Drops deleted slots from the end of the directory, returning their bytes to the free gap, and
+     * rebuilds the free-slot chain from the slots that remain.
+     */
+    private void trimSlotDirectory() {
         int count = getSlotCount();
-        for (int i = 0; i < count; i++) {
+        while (count > 0 && buf.getInt(HEADER_SIZE + (count - 1) * SLOT_SIZE) == DELETED_SENTINEL) {
+            count--;
+        }
+        setSlotCount(count);
+        int next = NO_FREE_SLOT;
+        for (int i = count - 1; i >= 0; i--) {
             int slotOffset = HEADER_SIZE + i * SLOT_SIZE;
-            short offset = ByteBuffer.wrap(data, slotOffset, 2).getShort();
-            if (offset != DELETED_SENTINEL) {
-                active.add(i);
+            if (buf.getInt(slotOffset) == DELETED_SENTINEL) {
+                buf.putInt(slotOffset + 4, next);
+                next = i;
             }
         }
+        setFirstFreeSlot(next);
+    }
+
+    public List<Integer> getActiveSlots() {
+        List<Integer> active = new ArrayList<>();
+        for (int slot = nextActiveSlot(0); slot >= 0; slot = nextActiveSlot(slot + 1)) {
+            active.add(slot);
+        }
         return active;
     }
+
+    /** Number of slots that hold a tuple. */
+    public int getActiveSlotCount() {
+        int active = 0;
+        for (int slot = nextActiveSlot(0); slot >= 0; slot = nextActiveSlot(slot + 1)) {
+            active++;
+        }
+        return active;
+    }
+
+    /** Copy-on-write for pages that were loaded as read-only views (memory-mapped I/O). */
+    private void ensureWritable() {
+        if (buf.isReadOnly()) {
+            ByteBuffer copy = ByteBuffer.allocate(buf.capacity());
+            copy.put(0, buf, 0, buf.capacity());
+            buf = copy;
+        }
+    }
 }
@@ -0,0 +1,179 @@
+package com.mpdb.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Storage engine settings bound from the {@code app.storage.*} properties.
+ * Field initialisers mirror the property defaults so the engine can also be built
+ * directly (e.g. in tests) with {@code new StorageConfig()}.
+ */
+@Component
+public class StorageConfig {
+
+    @Value("${app.storage.buffer-pool-mb:64}")
+    private int bufferPoolMb = 64;
+
+    @Value("${app.storage.off-heap-pages:true}")
+    private boolean offHeapPages = true;
+
+    @Value("${app.storage.io-mode:standard}")
+    private String ioMode = "standard";
+
+    @Value("${app.storage.durability:strict}")
+    private String durability = "strict";
+
+    @Value("${app.storage.group-commit-window-ms:5}")
+    private long groupCommitWindowMs = 5;
+
+    @Value("${app.storage.wal-checkpoint-mb:64}")
+    private int walCheckpointMb = 64;
+
+    @Value("${app.storage.checkpoint-interval-ms:30000}")
+    private long checkpointIntervalMs = 30000;
+
+    @Value("${app.storage.checkpoint-max-mb-per-sec:32}")
+    private int checkpointMaxMbPerSec = 32;
+
+    @Value("${app.storage.preload:false}")
+    private boolean preload = false;
+
+    @Value("${app.storage.preload-threads:4}")
+    private int preloadThreads = 4;
+
+    @Value("${app.storage.scrub-interval-ms:3600000}")
+    private long scrubIntervalMs = 3600000;
+
+    @Value("${app.storage.scrub-pages-per-sec:256}")
+    private int scrubPagesPerSec = 256;
+
+    @Value("${app.storage.vacuum-interval-ms:60000}")
+    private long vacuumIntervalMs = 60000;
+
+    @Value("${app.storage.vacuum-dead-ratio:0.2}")
+    private double vacuumDeadRatio = 0.2;
+
+    public int getBufferPoolMb() {
+        return bufferPoolMb;
+    }
+
+    public void setBufferPoolMb(int bufferPoolMb) {
+        this.bufferPoolMb = bufferPoolMb;
+    }
+
+    public long getBufferPoolBytes() {
+        return (long) bufferPoolMb * 1024 * 1024;
+    }
+
+    public boolean isOffHeapPages() {
+        return offHeapPages;
+    }
+
+    public void setOffHeapPages(boolean offHeapPages) {
+        this.offHeapPages = offHeapPages;
+    }
+
+    public IoMode getIoMode() {
+        return IoMode.valueOf(ioMode.trim().toUpperCase());
+    }
+
+    public void setIoMode(IoMode ioMode) {
+        this.ioMode = ioMode.name();
+    }
+
+    public DurabilityMode getDurability() {
+        return DurabilityMode.valueOf(durability.trim().toUpperCase());
+    }
+
+    public void setDurability(DurabilityMode durability) {
+        this.durability = durability.name();
+    }
+
+    public long getGroupCommitWindowMs() {
+        return groupCommitWindowMs;
+    }
+
+    public void setGroupCommitWindowMs(long groupCommitWindowMs) {
+        this.groupCommitWindowMs = groupCommitWindowMs;
+    }
+
+    public int getWalCheckpointMb() {
+        return walCheckpointMb;
+    }
+
+    public void setWalCheckpointMb(int walCheckpointMb) {
+        this.walCheckpointMb = walCheckpointMb;
+    }
+
+    public long getWalCheckpointBytes() {
+        return (long) walCheckpointMb * 1024 * 1024;
+    }
+
+    public long getCheckpointIntervalMs() {
+        return checkpointIntervalMs;
+    }
+
+    public void setCheckpointIntervalMs(long checkpointIntervalMs) {
+        this.checkpointIntervalMs = checkpointIntervalMs;
+    }
+
+    public int getCheckpointMaxMbPerSec() {
+        return checkpointMaxMbPerSec;
+    }
+
+    public void setCheckpointMaxMbPerSec(int checkpointMaxMbPerSec) {
+        this.checkpointMaxMbPerSec = checkpointMaxMbPerSec;
+    }
+
+    public long getCheckpointMaxBytesPerSec() {
+        return (long) checkpointMaxMbPerSec * 1024 * 1024;
+    }
+
+    public boolean isPreload() {
+        return preload;
+    }
+
+    public void setPreload(boolean preload) {
+        this.preload = preload;
+    }
+
+    public int getPreloadThreads() {
+        return preloadThreads;
+    }
+
+    public void setPreloadThreads(int preloadThreads) {
+        this.preloadThreads = preloadThreads;
+    }
+
+    public long getScrubIntervalMs() {
+        return scrubIntervalMs;
+    }
+
+    public void setScrubIntervalMs(long scrubIntervalMs) {
+        this.scrubIntervalMs = scrubIntervalMs;
+    }
+
+    public int getScrubPagesPerSec() {
+        return scrubPagesPerSec;
+    }
+
+    public void setScrubPagesPerSec(int scrubPagesPerSec) {
+        this.scrubPagesPerSec = scrubPagesPerSec;
+    }
+
+    public long getVacuumIntervalMs() {
+        return vacuumIntervalMs;
+    }
+
+    public void setVacuumIntervalMs(long vacuumIntervalMs) {
+        this.vacuumIntervalMs = vacuumIntervalMs;
+    }
+
+    public double getVacuumDeadRatio() {
+        return vacuumDeadRatio;
+    }
+
+    public void setVacuumDeadRatio(double vacuumDeadRatio) {
+        this.vacuumDeadRatio = vacuumDeadRatio;
+    }
+}
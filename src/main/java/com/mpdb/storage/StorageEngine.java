@@ -4,6 +4,7 @@ import com.mpdb.catalog.Catalog;
 import com.mpdb.catalog.TableSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -11,58 +12,167 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 @Component
 public class StorageEngine {
 
     private static final Logger log = LoggerFactory.getLogger(StorageEngine.class);
+    private static final int SLOWEST_TABLES_REPORTED = 5;
 
     private final ConcurrentHashMap<String, HeapFile> heapFiles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TableSchema> unopenedTables = new ConcurrentHashMap<>();
     private final Path dataDir;
     private final Catalog catalog;
+    private final StorageConfig config;
+    private final WriteAheadLog wal;
+    private final DurabilityManager durability;
+    private final BufferPool bufferPool;
+    private final Checkpointer checkpointer;
+    private final PageScrubber scrubber;
+    private final AutoVacuum autoVacuum;
+    // Held from beginStatement() until commit() has logged the statement, so that a vacuum never moves
+    // tuples whose ids a statement holds
+    private final ReentrantLock statementLock = new ReentrantLock();
 
-    public StorageEngine(@Value("${app.data-dir:./data}") String dataDir, Catalog catalog) {
+    public StorageEngine(String dataDir, Catalog catalog) {
+        this(dataDir, catalog, new StorageConfig());
+    }
+
+    @Autowired
+    public StorageEngine(@Value("${app.data-dir:./data}") String dataDir, Catalog catalog, StorageConfig config) {
         this.dataDir = Path.of(dataDir);
         this.catalog = catalog;
+        this.config = config;
+        this.wal = new WriteAheadLog(this.dataDir.resolve("wal.log"));
+        this.durability = new DurabilityManager(config.getDurability(), config.getGroupCommitWindowMs(), wal);
+        this.bufferPool = new BufferPool(config.getBufferPoolBytes(), durability, config.isOffHeapPages());
+        this.checkpointer = new Checkpointer(bufferPool, durability,
+                config.getCheckpointIntervalMs(), config.getCheckpointMaxBytesPerSec());
+        this.scrubber = new PageScrubber(this::openAllHeapFiles, bufferPool,
+                config.getScrubIntervalMs(), config.getScrubPagesPerSec());
+        this.autoVacuum = new AutoVacuum(heapFiles::values, this::heapFileExists, this::vacuum,
+                config.getVacuumIntervalMs(), config.getVacuumDeadRatio());
     }
 
     @PostConstruct
     public void init() {
         if (catalog == null) return;
-        // Reload heap files for all tables in the catalog
+        recover();
+        // Heap files are opened on first access, so startup time does not depend on data size
         for (TableSchema schema : catalog.getAllTables()) {
-            String key = schema.getTableName().toUpperCase();
-            try {
-                DiskPageManager diskManager = new DiskPageManager(heapFilePath(schema.getTableName()));
-                HeapFile heapFile = new HeapFile(schema, diskManager);
-                heapFiles.put(key, heapFile);
-                log.info("Restored heap file for table '{}'", schema.getTableName());
-            } catch (IOException e) {
-                log.error("Failed to restore heap file for table '{}': {}", schema.getTableName(), e.getMessage());
+            unopenedTables.put(schema.getTableName().toUpperCase(), schema);
+        }
+        log.info("Registered {} table(s)", unopenedTables.size());
+        if (config.isPreload()) {
+            preloadTables(config.getPreloadThreads());
+        }
+        checkpointer.start();
+        scrubber.start();
+        autoVacuum.start();
+    }
+
+    /**
+     * Replays committed page images from the write-ahead log into the table files, then
+     * discards the log. Runs before any heap file is opened.
+     */
+    private void recover() {
+        Map<String, DiskPageManager> files = new HashMap<>();
+        Map<String, TableSchema> schemas = new HashMap<>();
+        for (TableSchema schema : catalog.getAllTables()) {
+            for (Path path : List.of(heapFilePath(schema.getTableName()), overflowFilePath(schema.getTableName()))) {
+                files.put(path.getFileName().toString(), null);
+                schemas.put(path.getFileName().toString(), schema);
             }
         }
+        try {
+            int groups = wal.replay(new WriteAheadLog.RedoHandler() {
+                @Override
+                public void redoPage(WriteAheadLog.PageImage image) throws IOException {
+                    if (!files.containsKey(image.fileName())) return; // table no longer in the catalog
+                    DiskPageManager file = files.get(image.fileName());
+                    if (file == null) {
+                        file = DiskPageManager.forTable(dataDir.resolve(image.fileName()), IoMode.STANDARD,
+                                schemas.get(image.fileName()));
+                        files.put(image.fileName(), file);
+                    }
+                    new SlottedPage(image.data()).updateChecksum(); // images are logged before the checksum is set
+                    file.writePage(image.pageIndex(), image.data());
+                }
+
+                @Override
+                public void redoDrop(String fileName) throws IOException {
+                    DiskPageManager file = files.get(fileName);
+                    if (file != null) {
+                        files.put(fileName, null);
+                        file.delete();
+                    } else {
+                        Files.deleteIfExists(dataDir.resolve(fileName));
+                    }
+                }
+            });
+            for (DiskPageManager file : files.values()) {
+                if (file != null) {
+                    file.close(); // syncs before the log is discarded
+                }
+            }
+            wal.reset();
+            if (groups > 0) {
+                log.info("Recovered {} committed statement(s) from the write-ahead log", groups);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Write-ahead log recovery failed", e);
+        }
     }
 
     @PreDestroy
     public void shutdown() {
+        autoVacuum.close();
+        scrubber.close();
+        checkpointer.close();
+        bufferPool.commit();
         for (HeapFile heapFile : heapFiles.values()) {
             heapFile.close();
         }
+        // Every page is on disk and synced, so the log is no longer needed
+        bufferPool.checkpoint();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            log.error("Failed to close write-ahead log: {}", e.getMessage());
+        }
+        bufferPool.close();
+        durability.close();
         log.info("Closed all heap files.");
     }
 
     public HeapFile createHeapFile(TableSchema schema) {
         String key = schema.getTableName().toUpperCase();
-        if (heapFiles.containsKey(key)) {
+        if (heapFileExists(key)) {
             throw new IllegalStateException("Heap file already exists for table: " + schema.getTableName());
         }
         HeapFile heapFile;
         if (dataDir != null) {
             try {
-                DiskPageManager diskManager = new DiskPageManager(heapFilePath(schema.getTableName()));
-                heapFile = new HeapFile(schema, diskManager);
+                DiskPageManager diskManager = DiskPageManager.forTable(
+                        heapFilePath(schema.getTableName()), config.getIoMode(), schema);
+                heapFile = new HeapFile(schema, diskManager, bufferPool);
             } catch (IOException e) {
                 throw new UncheckedIOException("Failed to create heap file for table: " + schema.getTableName(), e);
             }
@@ -73,24 +183,248 @@ public class StorageEngine {
         return heapFile;
     }
 
+    /** Returns the table's heap file, opening it on first access. */
     public HeapFile getHeapFile(String tableName) {
-        return heapFiles.get(tableName.toUpperCase());
+        String key = tableName.toUpperCase();
+        HeapFile heapFile = heapFiles.get(key);
+        if (heapFile != null) {
+            return heapFile;
+        }
+        // The schema is looked up inside the mapping: another thread may have opened the table since the miss
+        heapFile = heapFiles.computeIfAbsent(key, k -> {
+            TableSchema schema = unopenedTables.get(k);
+            return schema != null ? openHeapFile(schema) : null;
+        });
+        if (heapFile != null) {
+            unopenedTables.remove(key);
+        }
+        return heapFile;
     }
 
     public void dropHeapFile(String tableName) {
         String key = tableName.toUpperCase();
-        HeapFile heapFile = heapFiles.remove(key);
-        if (heapFile == null) {
-            throw new IllegalStateException("No heap file for table: " + tableName);
+        statementLock.lock();
+        try {
+            getHeapFile(key);
+            HeapFile heapFile = heapFiles.remove(key);
+            if (heapFile == null) {
+                throw new IllegalStateException("No heap file for table: " + tableName);
+            }
+            try {
+                // Logged first so that recovery cannot resurrect the table from older page images
+                wal.appendDrop(heapFilePath(tableName).getFileName().toString());
+                wal.appendDrop(overflowFilePath(tableName).getFileName().toString());
+                wal.sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to log drop of table: " + tableName, e);
+            }
+            heapFile.deleteFiles();
+        } finally {
+            statementLock.unlock();
+        }
+    }
+
+    /**
+     * Packs the table's tuples into as few pages as possible and truncates its file, waiting for the
+     * running statement to finish first. When pages were released a checkpoint follows, so that
+     * recovery does not extend the file again with the logged images of the emptied pages.
+     */
+    public HeapFile.VacuumResult vacuum(String tableName) {
+        statementLock.lock();
+        try {
+            HeapFile heapFile = getHeapFile(tableName);
+            if (heapFile == null) {
+                throw new IllegalStateException("No heap file for table: " + tableName);
+            }
+            HeapFile.VacuumResult result = heapFile.vacuum();
+            if (result.bytesReclaimed() > 0) {
+                checkpointer.checkpoint();
+            }
+            return result;
+        } finally {
+            statementLock.unlock();
         }
-        heapFile.deleteFiles();
+    }
+
+    /** Vacuums every table, in name order. */
+    public List<HeapFile.VacuumResult> vacuumAll() {
+        Set<String> names = new TreeSet<>(unopenedTables.keySet());
+        names.addAll(heapFiles.keySet());
+        List<HeapFile.VacuumResult> results = new ArrayList<>();
+        for (String table : names) {
+            results.add(vacuum(table));
+        }
+        return results;
     }
 
     public boolean heapFileExists(String tableName) {
+        String key = tableName.toUpperCase();
+        return heapFiles.containsKey(key) || unopenedTables.containsKey(key);
+    }
+
+    /** Whether the table's heap file has been opened since startup. */
+    public boolean isHeapFileOpen(String tableName) {
         return heapFiles.containsKey(tableName.toUpperCase());
     }
 
+    /**
+     * Starts a modifying statement; its page changes are logged together at {@link #commit()}.
+     * Vacuums wait until the statement has committed.
+     */
+    public void beginStatement() {
+        statementLock.lock();
+        bufferPool.beginStatement();
+    }
+
+    /**
+     * Ends a modifying statement: logs its page changes and makes them durable as required by the
+     * current {@link DurabilityMode}. In GROUP mode this blocks until the shared fsync has completed;
+     * the statement lock is released before that wait, so that the next statement can log its commit
+     * into the same fsync. Wakes the checkpointer early once the log has outgrown
+     * {@code app.storage.wal-checkpoint-mb}.
+     */
+    public void commit() {
+        long commitLsn;
+        try {
+            commitLsn = bufferPool.logCommit();
+        } finally {
+            if (statementLock.isHeldByCurrentThread()) {
+                statementLock.unlock();
+            }
+        }
+        bufferPool.awaitCommit(commitLsn);
+        try {
+            if (wal.getSize() > config.getWalCheckpointBytes()) {
+                checkpointer.requestCheckpoint();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read write-ahead log size", e);
+        }
+    }
+
+    /**
+     * Takes a fuzzy checkpoint on the calling thread: writes committed pages back to the table files
+     * and drops the write-ahead log records that recovery no longer needs.
+     */
+    public void checkpoint() {
+        checkpointer.checkpoint();
+    }
+
+    public Checkpointer getCheckpointer() {
+        return checkpointer;
+    }
+
+    public PageScrubber getScrubber() {
+        return scrubber;
+    }
+
+    public AutoVacuum getAutoVacuum() {
+        return autoVacuum;
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durability.getMode();
+    }
+
+    public void setDurabilityMode(DurabilityMode mode) {
+        durability.setMode(mode);
+        log.info("Durability mode set to {}", mode);
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public WriteAheadLog getWal() {
+        return wal;
+    }
+
+    /** Time taken to open and read one table during {@link #preloadTables}. */
+    public record TableLoadTime(String tableName, int pages, long millis) {
+    }
+
+    /**
+     * Opens every table and reads all of its pages, spreading the tables over a bounded pool of
+     * threads. Tables that fail to load are logged and skipped.
+     *
+     * @return per-table timings, slowest first
+     */
+    public List<TableLoadTime> preloadTables(int threads) {
+        Set<String> names = new TreeSet<>(unopenedTables.keySet());
+        names.addAll(heapFiles.keySet());
+        List<String> tables = List.copyOf(names);
+        if (tables.isEmpty()) {
+            return List.of();
+        }
+        long started = System.nanoTime();
+        int poolSize = Math.max(1, Math.min(threads, tables.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread thread = new Thread(r, "mpdb-preload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<TableLoadTime>> futures = new ArrayList<>();
+        for (String table : tables) {
+            futures.add(executor.submit(() -> preloadTable(table)));
+        }
+        List<TableLoadTime> times = new ArrayList<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    times.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    log.error("Failed to preload table '{}': {}", tables.get(i), e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        times.sort(Comparator.comparingLong(TableLoadTime::millis).reversed());
+        log.info("Preloaded {} table(s) in {} ms on {} thread(s); slowest: {}", times.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), poolSize,
+                times.subList(0, Math.min(SLOWEST_TABLES_REPORTED, times.size())).stream()
+                        .map(t -> t.tableName() + " (" + t.millis() + " ms, " + t.pages() + " pages)")
+                        .collect(Collectors.joining(", ")));
+        return times;
+    }
+
+    private TableLoadTime preloadTable(String table) {
+        long started = System.nanoTime();
+        HeapFile heapFile = getHeapFile(table);
+        heapFile.preload();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        log.debug("Preloaded table '{}' in {} ms ({} pages)", table, millis, heapFile.getPageCount());
+        return new TableLoadTime(table, heapFile.getPageCount(), millis);
+    }
+
+    private HeapFile openHeapFile(TableSchema schema) {
+        try {
+            PageFormatUpgrade.upgradeIfNeeded(heapFilePath(schema.getTableName()), schema);
+            DiskPageManager diskManager = DiskPageManager.forTable(
+                    heapFilePath(schema.getTableName()), config.getIoMode(), schema);
+            HeapFile heapFile = new HeapFile(schema, diskManager, bufferPool);
+            log.debug("Opened heap file for table '{}' ({} pages)", schema.getTableName(), heapFile.getPageCount());
+            return heapFile;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open heap file for table: " + schema.getTableName(), e);
+        }
+    }
+
+    private List<HeapFile> openAllHeapFiles() {
+        for (String key : unopenedTables.keySet()) {
+            getHeapFile(key);
+        }
+        return List.copyOf(heapFiles.values());
+    }
+
     private Path heapFilePath(String tableName) {
         return dataDir.resolve(tableName.toUpperCase() + ".dat");
     }
+
+    /** Where the table's VARCHAR and TEXT values that are too large to keep in the row are stored. */
+    private Path overflowFilePath(String tableName) {
+        return dataDir.resolve(tableName.toUpperCase() + ".ovf");
+    }
 }
@@ -13,6 +13,16 @@ public class Tuple {
     }
 
     public Object getValue(int index) {
+        Object value = values[index];
+        if (value instanceof OverflowValue overflow) {
+            value = overflow.read();
+            values[index] = value;
+        }
+        return value;
+    }
+
+    /** The stored value, which may still be an unread {@link OverflowValue}. */
+    Object getRawValue(int index) {
         return values[index];
     }
 
@@ -21,10 +31,14 @@ public class Tuple {
         if (index < 0) {
             throw new IllegalArgumentException("Unknown column: " + columnName);
         }
-        return values[index];
+        return getValue(index);
     }
 
+    /** All values, reading any that are stored out of line. */
     public Object[] getValues() {
+        for (int i = 0; i < values.length; i++) {
+            getValue(i);
+        }
         return values;
     }
 
@@ -36,10 +50,17 @@ public class Tuple {
         return values.length;
     }
 
+    /** The same values under another schema, e.g. a table alias. Values stored out of line stay unread. */
+    public Tuple withSchema(TableSchema schema) {
+        return new Tuple(schema, values);
+    }
+
     public static Tuple merge(Tuple left, Tuple right, TableSchema mergedSchema) {
-        Object[] merged = new Object[left.values.length + right.values.length];
-        System.arraycopy(left.values, 0, merged, 0, left.values.length);
-        System.arraycopy(right.values, 0, merged, left.values.length, right.values.length);
+        int leftCount = left.getColumnCount();
+        Object[] merged = new Object[leftCount + right.getColumnCount()];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = i < leftCount ? left.getRawValue(i) : right.getRawValue(i - leftCount);
+        }
         return new Tuple(mergedSchema, merged);
     }
 }
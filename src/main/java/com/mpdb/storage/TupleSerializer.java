@@ -1,102 +1,280 @@
 package com.mpdb.storage;
 
-import com.mpdb.catalog.ColumnDefinition;
+import com.mpdb.catalog.ColumnType;
 import com.mpdb.catalog.TableSchema;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
+/**
+ * Row format, version {@link #FORMAT_VERSION}: the version byte, the null bitmap, then every INT,
+ * FLOAT and BOOLEAN column at an offset fixed by the schema (zeros for NULL), then a table of 2-byte
+ * end offsets, relative to the row, of the VARCHAR and TEXT columns, then their bytes. A string is
+ * stored as its UTF-8 bytes, or, when it is stored out of line, as {@link #OUT_OF_LINE_TAG}, which
+ * UTF-8 never contains, followed by its length and the location of the first record of its chain in
+ * the overflow file; a NULL string takes no bytes. Any column is found without reading the others.
+ *
+ * <p>Rows of tables in the original page format, which had no version byte, are decoded by
+ * {@link PageFormatUpgrade} when it rewrites those tables.
+ */
 public class TupleSerializer {
 
-    public byte[] serialize(Tuple tuple) {
-        TableSchema schema = tuple.getSchema();
-        int colCount = schema.getColumnCount();
-        int nullBitmapBytes = (colCount + 7) / 8;
-        int totalSize = calculateSize(tuple);
-        ByteBuffer buffer = ByteBuffer.allocate(totalSize);
-        buffer.putInt(totalSize);
+    static final byte FORMAT_VERSION = 1;
+    static final byte OUT_OF_LINE_TAG = (byte) 0xFF;
+    /** Bytes a string stored out of line takes in the row, besides its end offset. */
+    static final int OVERFLOW_POINTER_SIZE = 13; // tag + length + page + slot
+    private static final int END_OFFSET_SIZE = 2;
 
-        // Write null bitmap
-        byte[] nullBitmap = new byte[nullBitmapBytes];
-        for (int i = 0; i < colCount; i++) {
-            if (tuple.getValue(i) == null) {
-                nullBitmap[i / 8] |= (1 << (i % 8));
+    /**
+     * Where the fields of a schema's rows are. Computed once per schema: the serializer keeps the
+     * last one it used, and a {@link TupleView} its own.
+     */
+    static final class Layout {
+
+        final TableSchema schema;
+        final ColumnType[] types;
+        private final int[] positions; // fixed-length column: its field; VARCHAR/TEXT: its end offset
+        private final int[] previousEnd; // VARCHAR/TEXT: end offset of the string before, -1 for the first
+        final int varStart; // where the bytes of the first string start
+
+        Layout(TableSchema schema) {
+            this.schema = schema;
+            int colCount = schema.getColumnCount();
+            this.types = new ColumnType[colCount];
+            this.positions = new int[colCount];
+            this.previousEnd = new int[colCount];
+            int pos = 1 + (colCount + 7) / 8;
+            for (int c = 0; c < colCount; c++) {
+                types[c] = schema.getColumn(c).type();
+                if (types[c].isFixedLength()) {
+                    positions[c] = pos;
+                    pos += types[c].getFixedSize();
+                }
+            }
+            int previous = -1;
+            for (int c = 0; c < colCount; c++) {
+                if (!types[c].isFixedLength()) {
+                    positions[c] = pos;
+                    previousEnd[c] = previous;
+                    previous = pos;
+                    pos += END_OFFSET_SIZE;
+                }
             }
+            this.varStart = pos;
+        }
+
+        /** Position of the field of fixed-length {@code column} in a row. */
+        int fixedPosition(int column) {
+            return positions[column];
+        }
+
+        /** Position of the bytes of VARCHAR or TEXT {@code column} in the row at {@code offset}. */
+        int stringStart(ByteBuffer buf, int offset, int column) {
+            int previous = previousEnd[column];
+            return previous < 0 ? offset + varStart : offset + Short.toUnsignedInt(buf.getShort(offset + previous));
+        }
+
+        /** End of the bytes of VARCHAR or TEXT {@code column} in the row at {@code offset}. */
+        int stringEnd(ByteBuffer buf, int offset, int column) {
+            return offset + Short.toUnsignedInt(buf.getShort(offset + positions[column]));
         }
-        buffer.put(nullBitmap);
+    }
+
+    private Layout layout; // of the last schema serialized or deserialized
 
-        // Write column values (skip nulls)
+    public byte[] serialize(Tuple tuple) {
+        ByteBuffer buffer = ByteBuffer.allocate(serializedSize(tuple));
+        serialize(tuple, buffer, 0);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the {@link #serializedSize} bytes of the row at {@code offset} in {@code buf}, e.g. into
+     * space reserved on a page, overwriting whatever was there. Strings are encoded straight into
+     * {@code buf}, without an intermediate array.
+     */
+    void serialize(Tuple tuple, ByteBuffer buf, int offset) {
+        Layout layout = layoutOf(tuple.getSchema());
+        int colCount = layout.types.length;
+        buf.put(offset, FORMAT_VERSION);
+        for (int i = 1; i < layout.varStart; i++) {
+            buf.put(offset + i, (byte) 0); // null bitmap, and the fixed-length fields left zero for NULLs
+        }
+        int pos = offset + layout.varStart;
         for (int i = 0; i < colCount; i++) {
-            if (tuple.getValue(i) == null) continue;
-            ColumnDefinition col = schema.getColumn(i);
-            Object value = tuple.getValue(i);
-
-            switch (col.type()) {
-                case INT -> buffer.putInt((Integer) value);
-                case FLOAT -> buffer.putFloat((Float) value);
-                case BOOLEAN -> buffer.put((byte) ((Boolean) value ? 1 : 0));
-                case VARCHAR, TEXT -> {
-                    byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
-                    buffer.putInt(bytes.length);
-                    buffer.put(bytes);
+            Object value = tuple.getRawValue(i);
+            if (value == null) {
+                int bitmap = offset + 1 + i / 8;
+                buf.put(bitmap, (byte) (buf.get(bitmap) | 1 << (i % 8)));
+            } else {
+                int fixed = offset + layout.fixedPosition(i);
+                switch (layout.types[i]) {
+                    case INT -> buf.putInt(fixed, (Integer) value);
+                    case FLOAT -> buf.putFloat(fixed, (Float) value);
+                    case BOOLEAN -> buf.put(fixed, (byte) ((Boolean) value ? 1 : 0));
+                    case VARCHAR, TEXT -> {
+                        if (value instanceof OverflowValue overflow) {
+                            buf.put(pos, OUT_OF_LINE_TAG);
+                            buf.putInt(pos + 1, overflow.length());
+                            buf.putInt(pos + 5, overflow.first().pageIndex());
+                            buf.putInt(pos + 9, overflow.first().slotIndex());
+                            pos += OVERFLOW_POINTER_SIZE;
+                        } else {
+                            pos = putUtf8(buf, pos, (String) value);
+                        }
+                    }
                 }
             }
+            if (!layout.types[i].isFixedLength()) {
+                buf.putShort(offset + layout.positions[i], (short) (pos - offset));
+            }
         }
-        return buffer.array();
     }
 
     public Tuple deserialize(byte[] data, TableSchema schema) {
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-        int totalSize = buffer.getInt(); // read past size header
-        int colCount = schema.getColumnCount();
-        int nullBitmapBytes = (colCount + 7) / 8;
+        return deserialize(data, schema, null);
+    }
 
-        // Read null bitmap
-        byte[] nullBitmap = new byte[nullBitmapBytes];
-        buffer.get(nullBitmap);
+    /**
+     * Reads a row. Values stored out of line are not read here: the tuple gets placeholders that read
+     * them from {@code overflow} when first accessed.
+     */
+    Tuple deserialize(byte[] data, TableSchema schema, HeapFile overflow) {
+        return deserialize(ByteBuffer.wrap(data), 0, schema, overflow);
+    }
 
+    /** Reads the row that starts at {@code offset} in {@code buf}, e.g. in place on a page. */
+    Tuple deserialize(ByteBuffer buf, int offset, TableSchema schema, HeapFile overflow) {
+        int colCount = schema.getColumnCount();
         Object[] values = new Object[colCount];
+        checkVersion(buf, offset);
+        Layout layout = layoutOf(schema);
         for (int i = 0; i < colCount; i++) {
-            boolean isNull = (nullBitmap[i / 8] & (1 << (i % 8))) != 0;
-            if (isNull) {
-                values[i] = null;
-                continue;
-            }
-            ColumnDefinition col = schema.getColumn(i);
-
-            switch (col.type()) {
-                case INT -> values[i] = buffer.getInt();
-                case FLOAT -> values[i] = buffer.getFloat();
-                case BOOLEAN -> values[i] = buffer.get() != 0;
-                case VARCHAR, TEXT -> {
-                    int len = buffer.getInt();
-                    byte[] bytes = new byte[len];
-                    buffer.get(bytes);
-                    values[i] = new String(bytes, StandardCharsets.UTF_8);
-                }
+            if (!isNull(buf, offset, i)) {
+                values[i] = readValue(buf, offset, layout, i, overflow);
             }
         }
         return new Tuple(schema, values);
     }
 
-    private int calculateSize(Tuple tuple) {
-        TableSchema schema = tuple.getSchema();
-        int colCount = schema.getColumnCount();
-        int size = 4; // total size header
-        size += (colCount + 7) / 8; // null bitmap
-        for (int i = 0; i < colCount; i++) {
-            if (tuple.getValue(i) == null) continue;
-            ColumnDefinition col = schema.getColumn(i);
-            switch (col.type()) {
-                case INT -> size += 4;
-                case FLOAT -> size += 4;
-                case BOOLEAN -> size += 1;
-                case VARCHAR, TEXT -> {
-                    byte[] bytes = ((String) tuple.getValue(i)).getBytes(StandardCharsets.UTF_8);
-                    size += 4 + bytes.length;
-                }
+    /** Bytes {@link #serialize} produces for the tuple, counting values stored out of line as pointers. */
+    int serializedSize(Tuple tuple) {
+        Layout layout = layoutOf(tuple.getSchema());
+        int size = layout.varStart;
+        for (int i = 0; i < layout.types.length; i++) {
+            if (layout.types[i].isFixedLength()) continue;
+            Object value = tuple.getRawValue(i);
+            if (value instanceof OverflowValue) {
+                size += OVERFLOW_POINTER_SIZE;
+            } else if (value != null) {
+                size += utf8Length((String) value);
             }
         }
         return size;
     }
+
+    /** Length of {@code text} in UTF-8, as {@link String#getBytes} encodes it, without encoding it. */
+    static int utf8Length(String text) {
+        int n = text.length();
+        int length = n;
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                length += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 2; // two chars, four bytes
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                length += 2;
+            } // an unpaired surrogate is replaced by '?'
+        }
+        return length;
+    }
+
+    /** Writes {@code text} in UTF-8 at {@code pos}, replacing unpaired surrogates like {@link String#getBytes}. */
+    private static int putUtf8(ByteBuffer buf, int pos, String text) {
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buf.put(pos++, (byte) c);
+            } else if (c < 0x800) {
+                buf.put(pos++, (byte) (0xC0 | c >> 6));
+                buf.put(pos++, (byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                buf.put(pos++, (byte) (0xF0 | cp >> 18));
+                buf.put(pos++, (byte) (0x80 | cp >> 12 & 0x3F));
+                buf.put(pos++, (byte) (0x80 | cp >> 6 & 0x3F));
+                buf.put(pos++, (byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf.put(pos++, (byte) '?');
+            } else {
+                buf.put(pos++, (byte) (0xE0 | c >> 12));
+                buf.put(pos++, (byte) (0x80 | c >> 6 & 0x3F));
+                buf.put(pos++, (byte) (0x80 | c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    private Layout layoutOf(TableSchema schema) {
+        Layout last = layout;
+        if (last == null || last.schema != schema) {
+            last = new Layout(schema);
+            layout = last;
+        }
+        return last;
+    }
+
+    /**
+     * Checks that the row at {@code offset} is of the current format.
+     *
+     * @throws IllegalStateException if it is of a format version this code does not know
+     */
+    static void checkVersion(ByteBuffer buf, int offset) {
+        byte version = buf.get(offset);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unknown row format version " + version);
+        }
+    }
+
+    /** Whether {@code column} of the row at {@code offset} is NULL. */
+    static boolean isNull(ByteBuffer buf, int offset, int column) {
+        return (buf.get(offset + 1 + column / 8) & (1 << (column % 8))) != 0;
+    }
+
+    /** Decodes the non-NULL {@code column} of the row at {@code offset}, which is of the current format. */
+    static Object readValue(ByteBuffer buf, int offset, Layout layout, int column, HeapFile overflow) {
+        ColumnType type = layout.types[column];
+        if (type.isFixedLength()) {
+            return readFixed(buf, offset + layout.fixedPosition(column), type);
+        }
+        int start = layout.stringStart(buf, offset, column);
+        int end = layout.stringEnd(buf, offset, column);
+        if (end > start && buf.get(start) == OUT_OF_LINE_TAG) {
+            TupleId first = new TupleId(buf.getInt(start + 5), buf.getInt(start + 9));
+            return new OverflowValue(overflow, first, buf.getInt(start + 1));
+        }
+        return readString(buf, start, end - start);
+    }
+
+    static Object readFixed(ByteBuffer buf, int pos, ColumnType type) {
+        return switch (type) {
+            case INT -> buf.getInt(pos);
+            case FLOAT -> buf.getFloat(pos);
+            case BOOLEAN -> buf.get(pos) != 0;
+            case VARCHAR, TEXT -> throw new IllegalArgumentException(type + " is not of fixed length");
+        };
+    }
+
+    static String readString(ByteBuffer buf, int pos, int len) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + pos, len, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[len];
+        buf.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
 }
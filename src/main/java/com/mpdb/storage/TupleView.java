@@ -0,0 +1,150 @@
+package com.mpdb.storage;
+
+import com.mpdb.catalog.ColumnType;
+import com.mpdb.catalog.TableSchema;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A row read in place from a page. Scans move one view from row to row instead of copying and
+ * decoding every row, and a column is decoded from the page bytes only when a filter or projection
+ * asks for it, so a row that a filter rejects costs nothing but the values the filter reads.
+ * {@link #materialize()} turns a row worth keeping into a plain {@link Tuple}. The package-private
+ * accessors read fields without decoding them at all, for {@link ZonePredicate}s tested in place.
+ * Every field is found at once through the schema's {@link TupleSerializer.Layout}.
+ *
+ * <p>A view is valid only while its page stays pinned and unmodified; it must not outlive the test
+ * it is passed to.
+ */
+final class TupleView extends Tuple {
+
+    private final TupleSerializer.Layout layout;
+    private final ColumnType[] types;
+    private final HeapFile overflow;
+    private final Object[] values;      // decoded values of the current row
+    private final int[] decodedRow;     // row number for which values[c] is valid
+    private ByteBuffer page;
+    private int offset;
+    private int row;
+
+    TupleView(TableSchema schema, HeapFile overflow) {
+        super(schema, null); // the values live on the page; every accessor is overridden
+        this.layout = new TupleSerializer.Layout(schema);
+        this.types = layout.types;
+        this.overflow = overflow;
+        this.values = new Object[types.length];
+        this.decodedRow = new int[types.length];
+    }
+
+    /** Moves the view to the row serialized at {@code offset} in {@code page}. */
+    void point(ByteBuffer page, int offset) {
+        this.page = page;
+        this.offset = offset;
+        if (++row == 0) { // wrapped around: forget values decoded four billion rows ago
+            Arrays.fill(decodedRow, 0);
+            row = 1;
+        }
+        TupleSerializer.checkVersion(page, offset);
+    }
+
+    /** A tuple of its own holding the current row, sharing the values decoded so far. */
+    Tuple materialize() {
+        Object[] copy = new Object[types.length];
+        for (int c = 0; c < copy.length; c++) {
+            copy[c] = getRawValue(c);
+        }
+        return new Tuple(getSchema(), copy);
+    }
+
+    @Override
+    public Object getValue(int index) {
+        Object value = getRawValue(index);
+        if (value instanceof OverflowValue overflowValue) {
+            value = overflowValue.read();
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    Object getRawValue(int index) {
+        if (decodedRow[index] == row) {
+            return values[index];
+        }
+        Object value;
+        if (isNull(index)) {
+            value = null;
+        } else {
+            value = TupleSerializer.readValue(page, offset, layout, index, overflow);
+        }
+        values[index] = value;
+        decodedRow[index] = row;
+        return value;
+    }
+
+    @Override
+    public Object[] getValues() {
+        return materialize().getValues();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    @Override
+    public Tuple withSchema(TableSchema schema) {
+        return materialize().withSchema(schema);
+    }
+
+    /** Type of {@code column}. */
+    ColumnType type(int column) {
+        return types[column];
+    }
+
+    /** Whether {@code column} of the current row is NULL, read from the null bitmap. */
+    boolean isNull(int column) {
+        return TupleSerializer.isNull(page, offset, column);
+    }
+
+    /** The non-NULL INT {@code column}, read without boxing. */
+    int getInt(int column) {
+        return page.getInt(fixedPosition(column));
+    }
+
+    /** The non-NULL FLOAT {@code column}, read without boxing. */
+    float getFloat(int column) {
+        return page.getFloat(fixedPosition(column));
+    }
+
+    /** The non-NULL BOOLEAN {@code column}, read without boxing. */
+    boolean getBoolean(int column) {
+        return page.get(fixedPosition(column)) != 0;
+    }
+
+    /** Whether the non-NULL VARCHAR or TEXT {@code column} is stored out of line, leaving its bytes unknown here. */
+    boolean isStoredOutOfLine(int column) {
+        int start = layout.stringStart(page, offset, column);
+        return start < layout.stringEnd(page, offset, column) && page.get(start) == TupleSerializer.OUT_OF_LINE_TAG;
+    }
+
+    /** Whether the non-NULL VARCHAR or TEXT {@code column}, stored inline, consists of the bytes {@code utf8}. */
+    boolean utf8Equals(int column, byte[] utf8) {
+        int pos = layout.stringStart(page, offset, column);
+        int length = layout.stringEnd(page, offset, column) - pos;
+        if (length != utf8.length) {
+            return false;
+        }
+        for (int i = 0; i < utf8.length; i++) {
+            if (page.get(pos + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int fixedPosition(int column) {
+        return offset + layout.fixedPosition(column);
+    }
+}
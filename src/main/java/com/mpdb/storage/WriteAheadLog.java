@@ -0,0 +1,387 @@
+package com.mpdb.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Sequential, append-only redo log shared by all tables.
+ *
+ * <p>Each commit appends the after-image of every page the statement modified, followed by a
+ * COMMIT record, in a single write. Because the records are full page images, replaying them is
+ * idempotent and recovery simply rewrites the logged pages of every committed group in log order;
+ * images without a trailing COMMIT (a statement cut short by a crash) are ignored.
+ *
+ * <p>A CHECKPOINT record carries the LSN from which redo must start: every page change logged before
+ * it has reached the table files. Replay skips the groups before the latest checkpoint, and
+ * {@link #truncateBefore} drops them from the file.
+ *
+ * <p>File layout: a 12-byte header (4B magic + 8B start LSN) followed by records of the form
+ * {@code 4B payload length, 4B CRC32, 1B type, payload}. The LSN of a position is the start LSN plus
+ * its file offset, so LSNs keep increasing across {@link #reset()}.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final int MAGIC = 0x4D50574C; // "MPWL"
+    private static final int FILE_HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    static final byte PAGE_IMAGE = 1;
+    static final byte COMMIT = 2;
+    static final byte DROP = 3;
+    static final byte CHECKPOINT = 4;
+
+    private final Path path;
+    private FileChannel channel; // opened lazily on first use
+    private long startLsn;
+    private long endLsn;
+    private volatile long syncedLsn;
+    private long syncCount;
+
+    public WriteAheadLog(Path path) {
+        this.path = path;
+    }
+
+    /** After-image of one page, identified by the name of its table file. */
+    public record PageImage(String fileName, int pageIndex, ByteBuffer data) {
+    }
+
+    /** Receives the contents of committed groups during {@link #replay}. */
+    public interface RedoHandler {
+        void redoPage(PageImage image) throws IOException;
+
+        void redoDrop(String fileName) throws IOException;
+    }
+
+    /**
+     * Appends the given page images and a COMMIT record in one write.
+     *
+     * @return the LSN just past the COMMIT record; the commit is durable once the log is synced to it
+     */
+    public synchronized long appendCommit(List<PageImage> images) throws IOException {
+        int size = RECORD_HEADER_SIZE;
+        List<byte[]> names = new ArrayList<>(images.size());
+        for (PageImage image : images) {
+            byte[] name = image.fileName().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            size += RECORD_HEADER_SIZE + 2 + name.length + 4 + image.data().remaining();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < images.size(); i++) {
+            PageImage image = images.get(i);
+            byte[] name = names.get(i);
+            int start = beginRecord(buffer, PAGE_IMAGE);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+            buffer.putInt(image.pageIndex());
+            buffer.put(image.data().duplicate());
+            endRecord(buffer, start);
+        }
+        endRecord(buffer, beginRecord(buffer, COMMIT));
+        return append(buffer);
+    }
+
+    /** Logs that a table file was deleted, so that recovery does not resurrect it. */
+    public synchronized long appendDrop(String fileName) throws IOException {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 * RECORD_HEADER_SIZE + 2 + name.length);
+        int start = beginRecord(buffer, DROP);
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        endRecord(buffer, start);
+        endRecord(buffer, beginRecord(buffer, COMMIT));
+        return append(buffer);
+    }
+
+    /**
+     * Records that every change logged before {@code redoLsn} has been written to the table files
+     * and synced, so recovery can start there.
+     */
+    public synchronized long appendCheckpoint(long redoLsn) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + 8);
+        int start = beginRecord(buffer, CHECKPOINT);
+        buffer.putLong(redoLsn);
+        endRecord(buffer, start);
+        return append(buffer);
+    }
+
+    /** Forces everything appended so far to stable storage. */
+    public void sync() throws IOException {
+        long target;
+        FileChannel ch;
+        synchronized (this) {
+            if (channel == null || syncedLsn >= endLsn) return;
+            target = endLsn;
+            ch = channel;
+        }
+        // Appends may continue while the fsync is in flight
+        try {
+            ch.force(false);
+        } catch (ClosedChannelException e) {
+            synchronized (this) {
+                if (ch == channel) throw e;
+            }
+            // Replaced by truncateBefore, which forced the new file before swapping it in
+        }
+        synchronized (this) {
+            syncedLsn = Math.max(syncedLsn, target);
+            syncCount++;
+        }
+    }
+
+    /** Ensures the log is durable at least up to {@code lsn}. */
+    public void syncTo(long lsn) throws IOException {
+        if (syncedLsn < lsn) {
+            sync();
+        }
+    }
+
+    /** Number of times {@link #sync()} has forced the log to disk. */
+    public synchronized long getSyncCount() {
+        return syncCount;
+    }
+
+    public synchronized long getEndLsn() throws IOException {
+        open();
+        return endLsn;
+    }
+
+    /** Size of the log in bytes, excluding the file header. */
+    public synchronized long getSize() throws IOException {
+        open();
+        return endLsn - startLsn;
+    }
+
+    /**
+     * Discards the whole log. Only valid once every logged page has been written to its table
+     * file and the table files have been synced.
+     */
+    public synchronized void reset() throws IOException {
+        open();
+        startLsn = endLsn;
+        channel.truncate(0);
+        writeHeader();
+        channel.force(true);
+        syncedLsn = endLsn;
+    }
+
+    /**
+     * Drops every record before {@code lsn}, which must be a record boundary. The remaining tail is
+     * copied into a fresh file that atomically replaces the log.
+     */
+    public synchronized void truncateBefore(long lsn) throws IOException {
+        open();
+        if (lsn <= startLsn) return;
+        if (lsn > endLsn) {
+            throw new IllegalArgumentException("LSN " + lsn + " is past the end of the log");
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putLong(lsn).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            long from = FILE_HEADER_SIZE + lsn - startLsn;
+            long remaining = endLsn - lsn;
+            while (remaining > 0) {
+                long n = channel.transferTo(from, remaining, out);
+                from += n;
+                remaining -= n;
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        startLsn = lsn;
+        syncedLsn = endLsn;
+    }
+
+    /**
+     * Reads the log and hands every committed group since the latest checkpoint to {@code handler},
+     * in order. Reading stops at the first incomplete or corrupt record, which marks a torn tail.
+     *
+     * @return the number of committed groups replayed
+     */
+    public synchronized int replay(RedoHandler handler) throws IOException {
+        open();
+        // First pass only locates the latest checkpoint, the second applies the groups after it
+        long redoPosition = scan(null, FILE_HEADER_SIZE).redoPosition();
+        Scan scan = scan(handler, redoPosition);
+        if (scan.committedEnd() < channel.size()) {
+            log.warn("Ignoring {} byte(s) of uncommitted or torn WAL tail", channel.size() - scan.committedEnd());
+        }
+        // Anything after the last complete commit is discarded so new records follow it directly
+        channel.truncate(scan.committedEnd());
+        endLsn = startLsn + scan.committedEnd() - FILE_HEADER_SIZE;
+        syncedLsn = endLsn;
+        return scan.groups();
+    }
+
+    private record Scan(long committedEnd, long redoPosition, int groups) {
+    }
+
+    /**
+     * Walks the records from the start of the file, handing committed groups that begin at or after
+     * {@code applyFrom} to {@code handler} (if any).
+     */
+    private Scan scan(RedoHandler handler, long applyFrom) throws IOException {
+        long size = channel.size();
+        List<PageImage> pendingImages = new ArrayList<>();
+        List<String> pendingDrops = new ArrayList<>();
+        int groups = 0;
+        long position = FILE_HEADER_SIZE;
+        long committedEnd = FILE_HEADER_SIZE;
+        long redoPosition = FILE_HEADER_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            byte type = header.get();
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > size) break;
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_SIZE);
+            payload.flip();
+            if (checksum(type, payload) != crc) break;
+            position += RECORD_HEADER_SIZE + length;
+
+            switch (type) {
+                case PAGE_IMAGE -> {
+                    if (handler != null) {
+                        String fileName = readName(payload);
+                        int pageIndex = payload.getInt();
+                        pendingImages.add(new PageImage(fileName, pageIndex, payload.slice()));
+                    }
+                }
+                case DROP -> {
+                    if (handler != null) {
+                        pendingDrops.add(readName(payload));
+                    }
+                }
+                case COMMIT -> {
+                    if (handler != null && committedEnd >= applyFrom) {
+                        for (PageImage image : pendingImages) {
+                            handler.redoPage(image);
+                        }
+                        for (String fileName : pendingDrops) {
+                            handler.redoDrop(fileName);
+                        }
+                        groups++;
+                    }
+                    pendingImages.clear();
+                    pendingDrops.clear();
+                    committedEnd = position;
+                }
+                case CHECKPOINT -> {
+                    long redoLsn = payload.getLong();
+                    redoPosition = Math.max(FILE_HEADER_SIZE, FILE_HEADER_SIZE + redoLsn - startLsn);
+                    committedEnd = position;
+                }
+                default -> throw new IOException("Unknown WAL record type " + type + " at offset " + position);
+            }
+        }
+        return new Scan(committedEnd, redoPosition, groups);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void open() throws IOException {
+        if (channel != null) return;
+        Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < FILE_HEADER_SIZE) {
+            startLsn = 0;
+            channel.truncate(0);
+            writeHeader();
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            readFully(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a write-ahead log: " + path);
+            }
+            startLsn = header.getLong();
+        }
+        endLsn = startLsn + channel.size() - FILE_HEADER_SIZE;
+        syncedLsn = endLsn;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putLong(startLsn).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private long append(ByteBuffer buffer) throws IOException {
+        open();
+        buffer.flip();
+        long position = FILE_HEADER_SIZE + endLsn - startLsn;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        endLsn = startLsn + position - FILE_HEADER_SIZE;
+        return endLsn;
+    }
+
+    private static int beginRecord(ByteBuffer buffer, byte type) {
+        int start = buffer.position();
+        buffer.position(start + 8); // length and CRC are filled in by endRecord
+        buffer.put(type);
+        return start;
+    }
+
+    private static void endRecord(ByteBuffer buffer, int start) {
+        int payloadStart = start + RECORD_HEADER_SIZE;
+        ByteBuffer payload = buffer.duplicate().position(payloadStart).limit(buffer.position());
+        buffer.putInt(start, buffer.position() - payloadStart);
+        buffer.putInt(start + 4, checksum(buffer.get(start + 8), payload));
+    }
+
+    private static int checksum(byte type, ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static String readName(ByteBuffer payload) {
+        byte[] name = new byte[payload.getShort()];
+        payload.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) throw new IOException("Unexpected end of WAL");
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.mpdb.storage;
+
+import com.mpdb.catalog.TableSchema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of the values on each page of a heap file: per column the smallest and largest value and
+ * the number of NULLs. A scan with a {@link ZonePredicate} skips the pages whose summary rules out
+ * every row, so a range query on a column that grows with the insertion order, such as a timestamp
+ * or a sequence number, reads only the few pages holding that range.
+ *
+ * <p>Columns named in the table's {@code bloom_filter} option also get a Bloom filter per page, so an
+ * equality or {@code IN} lookup on a column whose values are spread all over the table, such as an
+ * e-mail address, skips nearly every page although the range of every page spans the lookup value.
+ *
+ * <p>A summary only ever widens: inserts extend it and deletes leave it as it was, so it always
+ * covers the rows on the page, if not as tightly. A scan that reads a whole page replaces the
+ * summary with an exact one, and so does {@link HeapFile#vacuum()} for every page it keeps. Pages of a lazily opened file are unknown, and never skipped, until then.
+ *
+ * <p>Like the {@link FreeSpaceMap}, the map is saved to a {@code .zmap} file when the heap file is
+ * closed and deleted once read back, so a crash leaves every page unknown rather than stale.
+ */
+public class ZoneMap {
+
+    /** Strings longer than this are not kept as bounds: they leave the range of their column open. */
+    static final int MAX_BOUND_LENGTH = 64;
+
+    private static final int FILE_MAGIC = 0x4D5A4D32; // "MZM2"
+    private static final int BLOOM_HASHES = 3;
+
+    private static final byte NO_VALUE = 0;
+    private static final byte INT_VALUE = 1;
+    private static final byte FLOAT_VALUE = 2;
+    private static final byte BOOLEAN_VALUE = 3;
+    private static final byte STRING_VALUE = 4;
+
+    /** Summary of one column on one page. */
+    static final class ColumnZone {
+        Object min; // null while the page holds no bounded value in this column
+        Object max;
+        int nullCount;
+        boolean open; // holds a value outside [min, max] that is not summarised, e.g. a long string
+        long[] bloom; // null unless the column has a Bloom filter
+        boolean unhashed; // holds a value stored out of line, which the Bloom filter does not cover
+
+        ColumnZone(int bloomBits) {
+            bloom = bloomBits > 0 ? new long[bloomBits / 64] : null;
+        }
+
+        /** Whether the page may hold a non-NULL value in this column. */
+        boolean hasValues() {
+            return open || min != null;
+        }
+
+        /** Whether the page may hold {@code value}, a non-NULL value of the column's type, as far as the filter tells. */
+        boolean mightContain(Object value) {
+            if (bloom == null || unhashed) {
+                return true;
+            }
+            long hash = hash(value);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = bloomBit(hash, i, bloom.length);
+                if ((bloom[bit >>> 6] & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        void include(Object value) {
+            if (value != null && bloom != null) {
+                if (value instanceof OverflowValue) {
+                    unhashed = true;
+                } else {
+                    long hash = hash(value);
+                    for (int i = 0; i < BLOOM_HASHES; i++) {
+                        int bit = bloomBit(hash, i, bloom.length);
+                        bloom[bit >>> 6] |= 1L << bit;
+                    }
+                }
+            }
+            if (value == null) {
+                nullCount++;
+            } else if (value instanceof OverflowValue
+                    || value instanceof String s && s.length() > MAX_BOUND_LENGTH) {
+                open = true;
+            } else if (min == null) {
+                min = value;
+                max = value;
+            } else if (((Comparable<Object>) value).compareTo(min) < 0) {
+                min = value;
+            } else if (((Comparable<Object>) value).compareTo(max) > 0) {
+                max = value;
+            }
+        }
+    }
+
+    private final int columnCount;
+    private final int[] bloomBits; // per column, 0 for none
+    private final List<ColumnZone[]> pages = new ArrayList<>(); // null for a page not summarised yet
+
+    public ZoneMap(int columnCount) {
+        this.columnCount = columnCount;
+        this.bloomBits = new int[columnCount];
+    }
+
+    /**
+     * A map for the pages of {@code schema}'s table, with a Bloom filter of half a bit per page byte,
+     * e.g. 2048 bits for 4 KB pages, for each of its Bloom filter columns.
+     */
+    public ZoneMap(TableSchema schema) {
+        this(schema.getColumnCount());
+        for (int c = 0; c < columnCount; c++) {
+            if (schema.hasBloomFilter(c)) {
+                bloomBits[c] = schema.getPageSize() / 2;
+            }
+        }
+    }
+
+    /** Starts an empty summary for page {@code pageIndex}, to be widened by {@link #include}. */
+    public void resetPage(int pageIndex) {
+        while (pages.size() <= pageIndex) {
+            pages.add(null);
+        }
+        ColumnZone[] zones = new ColumnZone[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            zones[c] = new ColumnZone(bloomBits[c]);
+        }
+        pages.set(pageIndex, zones);
+    }
+
+    /** Widens the summary of page {@code pageIndex} to cover {@code tuple}, if the page is summarised. */
+    public void include(int pageIndex, Tuple tuple) {
+        ColumnZone[] zones = zones(pageIndex);
+        if (zones == null) return;
+        for (int c = 0; c < columnCount; c++) {
+            zones[c].include(tuple.getRawValue(c)); // a value stored out of line stays unread
+        }
+    }
+
+    public boolean isKnown(int pageIndex) {
+        return zones(pageIndex) != null;
+    }
+
+    /** Whether page {@code pageIndex} may hold a row matching {@code predicate}. */
+    public boolean mightMatch(int pageIndex, ZonePredicate predicate) {
+        ColumnZone[] zones = zones(pageIndex);
+        return zones == null || predicate.mightMatch(zones);
+    }
+
+    /** Forgets every page from {@code pageCount} on. */
+    public void truncate(int pageCount) {
+        if (pageCount < pages.size()) {
+            pages.subList(pageCount, pages.size()).clear();
+        }
+    }
+
+    /** Writes the map to {@code file}, replacing it atomically. */
+    public void save(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(pages.size());
+        out.writeInt(columnCount);
+        for (int bits : bloomBits) {
+            out.writeInt(bits);
+        }
+        for (ColumnZone[] zones : pages) {
+            out.writeBoolean(zones != null);
+            if (zones == null) continue;
+            for (ColumnZone zone : zones) {
+                out.writeInt(zone.nullCount);
+                out.writeBoolean(zone.open);
+                writeValue(out, zone.min);
+                writeValue(out, zone.max);
+                if (zone.bloom != null) {
+                    out.writeBoolean(zone.unhashed);
+                    for (long word : zone.bloom) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the contents with the map saved in {@code file} and deletes the file. A missing file,
+     * or one saved for a different number of pages or other columns or Bloom filters, leaves every
+     * page unknown.
+     *
+     * @return true if the saved map was used
+     */
+    public boolean load(Path file, int pageCount) throws IOException {
+        pages.clear();
+        if (!Files.exists(file)) {
+            return false;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        Files.delete(file); // rewritten on close; a crash before then must not leave stale summaries
+        try {
+            if (buf.getInt() != FILE_MAGIC || buf.getInt() != pageCount || buf.getInt() != columnCount) {
+                return false;
+            }
+            for (int bits : bloomBits) {
+                if (buf.getInt() != bits) {
+                    return false;
+                }
+            }
+            List<ColumnZone[]> loaded = new ArrayList<>(pageCount);
+            for (int p = 0; p < pageCount; p++) {
+                if (buf.get() == 0) {
+                    loaded.add(null);
+                    continue;
+                }
+                ColumnZone[] zones = new ColumnZone[columnCount];
+                for (int c = 0; c < columnCount; c++) {
+                    ColumnZone zone = new ColumnZone(bloomBits[c]);
+                    zone.nullCount = buf.getInt();
+                    zone.open = buf.get() != 0;
+                    zone.min = readValue(buf);
+                    zone.max = readValue(buf);
+                    if (zone.bloom != null) {
+                        zone.unhashed = buf.get() != 0;
+                        buf.asLongBuffer().get(zone.bloom);
+                        buf.position(buf.position() + 8 * zone.bloom.length);
+                    }
+                    zones[c] = zone;
+                }
+                loaded.add(zones);
+            }
+            if (buf.hasRemaining()) {
+                return false;
+            }
+            pages.addAll(loaded);
+            return true;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return false;
+        }
+    }
+
+    private ColumnZone[] zones(int pageIndex) {
+        return pageIndex >= 0 && pageIndex < pages.size() ? pages.get(pageIndex) : null;
+    }
+
+    /**
+     * 64-bit hash of a column value. {@code hashCode} of the value types is specified by the JDK, so
+     * the filters saved by one run stay valid in the next.
+     */
+    private static long hash(Object value) {
+        long h = value.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ h >>> 32;
+    }
+
+    /** The {@code i}-th bit of {@code hash} in a filter of {@code words} longs, by double hashing. */
+    private static int bloomBit(long hash, int i, int words) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + i * h2) & (words * 64 - 1);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NO_VALUE);
+        } else if (value instanceof Integer i) {
+            out.writeByte(INT_VALUE);
+            out.writeInt(i);
+        } else if (value instanceof Float f) {
+            out.writeByte(FLOAT_VALUE);
+            out.writeFloat(f);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN_VALUE);
+            out.writeBoolean(b);
+        } else {
+            byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING_VALUE);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buf) {
+        byte type = buf.get();
+        return switch (type) {
+            case NO_VALUE -> null;
+            case INT_VALUE -> buf.getInt();
+            case FLOAT_VALUE -> buf.getFloat();
+            case BOOLEAN_VALUE -> buf.get() != 0;
+            case STRING_VALUE -> {
+                byte[] utf8 = new byte[buf.getInt()];
+                buf.get(utf8);
+                yield new String(utf8, StandardCharsets.UTF_8);
+            }
+            default -> throw new IllegalArgumentException("Unknown value type " + type);
+        };
+    }
+}
@@ -0,0 +1,253 @@
+package com.mpdb.storage;
+
+import com.mpdb.catalog.ColumnType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A row predicate that also knows which pages cannot hold a matching row, judging by their
+ * {@link ZoneMap} summary. Heap file scans skip those pages; any other {@code Predicate<Tuple>}
+ * makes them read every page.
+ *
+ * <p>Rows are still tested by the predicate the caller passes in, so skipping pages never changes a
+ * result: a page is only skipped when its summary rules out every row the predicate could accept.
+ *
+ * <p>Comparisons of INT, FLOAT and BOOLEAN columns, equality of VARCHAR and TEXT columns and NULL
+ * tests are also evaluated on the serialized row in the page, through a {@link TupleView}, before
+ * anything is decoded; the caller's predicate only runs for the rows this cannot decide.
+ */
+public final class ZonePredicate implements Predicate<Tuple> {
+
+    /** Comparison of a column with a literal, the column being on the left. */
+    public enum Comparison {
+        EQUALS, NOT_EQUALS, LESS_THAN, LESS_THAN_OR_EQUAL, GREATER_THAN, GREATER_THAN_OR_EQUAL
+    }
+
+    /** Outcome of testing a row on its serialized bytes. */
+    enum Match {
+        YES, NO, UNDECIDED
+    }
+
+    private static final Function<TupleView, Match> UNDECIDED = row -> Match.UNDECIDED;
+
+    private final Predicate<Tuple> rows;
+    private final Predicate<ZoneMap.ColumnZone[]> pages;
+    private final Function<TupleView, Match> inPlace;
+
+    private ZonePredicate(Predicate<Tuple> rows, Predicate<ZoneMap.ColumnZone[]> pages) {
+        this(rows, pages, UNDECIDED);
+    }
+
+    private ZonePredicate(Predicate<Tuple> rows, Predicate<ZoneMap.ColumnZone[]> pages,
+                          Function<TupleView, Match> inPlace) {
+        this.rows = rows;
+        this.pages = pages;
+        this.inPlace = inPlace;
+    }
+
+    /**
+     * {@code rows}, which must accept exactly the rows whose {@code column} compares to {@code literal}
+     * as {@code comparison} says; rows with a NULL in the column, or any row if the literal is NULL,
+     * must be rejected. Rows may be accepted or rejected on their serialized bytes without it.
+     */
+    public static ZonePredicate compare(Predicate<Tuple> rows, int column, Comparison comparison, Object literal) {
+        return new ZonePredicate(rows, zones -> {
+            ZoneMap.ColumnZone zone = zones[column];
+            if (literal == null || !zone.hasValues()) {
+                return false;
+            }
+            if (!isOfColumnType(literal, zone)) {
+                return true; // a type mismatch is for the row test to report
+            }
+            if (comparison == Comparison.EQUALS && !zone.mightContain(literal)) {
+                return false;
+            }
+            if (zone.open) {
+                return true;
+            }
+            int vsMin = compareValues(literal, zone.min);
+            int vsMax = compareValues(literal, zone.max);
+            return switch (comparison) {
+                case EQUALS -> vsMin >= 0 && vsMax <= 0;
+                case NOT_EQUALS -> vsMin != 0 || vsMax != 0;
+                case LESS_THAN -> vsMin > 0;
+                case LESS_THAN_OR_EQUAL -> vsMin >= 0;
+                case GREATER_THAN -> vsMax < 0;
+                case GREATER_THAN_OR_EQUAL -> vsMax <= 0;
+            };
+        }, compareInPlace(column, comparison, literal));
+    }
+
+    /**
+     * {@code rows}, which must accept only rows whose {@code column} equals one of {@code values}.
+     * A page is read if it may hold any of them, judging by its range and its Bloom filter, if any.
+     */
+    public static ZonePredicate in(Predicate<Tuple> rows, int column, Collection<?> values) {
+        List<Object> candidates = values.stream().filter(Objects::nonNull).map(v -> (Object) v).toList();
+        return new ZonePredicate(rows, zones -> {
+            ZoneMap.ColumnZone zone = zones[column];
+            if (!zone.hasValues()) {
+                return false;
+            }
+            for (Object value : candidates) {
+                if (!isOfColumnType(value, zone)) {
+                    return true; // a type mismatch is for the row test to report
+                }
+                if ((zone.open || compareValues(value, zone.min) >= 0 && compareValues(value, zone.max) <= 0)
+                        && zone.mightContain(value)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /** {@code rows}, which must accept exactly the rows with a NULL in {@code column}. */
+    public static ZonePredicate isNull(Predicate<Tuple> rows, int column) {
+        return new ZonePredicate(rows, zones -> zones[column].nullCount > 0,
+                row -> row.isNull(column) ? Match.YES : Match.NO);
+    }
+
+    /** {@code rows}, which must accept exactly the rows with a value in {@code column}. */
+    public static ZonePredicate isNotNull(Predicate<Tuple> rows, int column) {
+        return new ZonePredicate(rows, zones -> zones[column].hasValues(),
+                row -> row.isNull(column) ? Match.NO : Match.YES);
+    }
+
+    /** Both predicates; pages are skipped when either rules them out. */
+    public static Predicate<Tuple> and(Predicate<Tuple> left, Predicate<Tuple> right) {
+        if (!(left instanceof ZonePredicate) && !(right instanceof ZonePredicate)) {
+            return left.and(right);
+        }
+        Predicate<ZoneMap.ColumnZone[]> leftPages = pagesOf(left);
+        Predicate<ZoneMap.ColumnZone[]> rightPages = pagesOf(right);
+        Function<TupleView, Match> leftInPlace = inPlaceOf(left);
+        Function<TupleView, Match> rightInPlace = inPlaceOf(right);
+        return new ZonePredicate(left.and(right), zones -> leftPages.test(zones) && rightPages.test(zones), row -> {
+            Match l = leftInPlace.apply(row);
+            if (l == Match.NO) {
+                return Match.NO;
+            }
+            Match r = rightInPlace.apply(row);
+            return r == Match.NO ? Match.NO : l == Match.YES && r == Match.YES ? Match.YES : Match.UNDECIDED;
+        });
+    }
+
+    /** Either predicate; pages are skipped only when both rule them out. */
+    public static Predicate<Tuple> or(Predicate<Tuple> left, Predicate<Tuple> right) {
+        if (!(left instanceof ZonePredicate l) || !(right instanceof ZonePredicate r)) {
+            return left.or(right);
+        }
+        return new ZonePredicate(left.or(right), zones -> l.pages.test(zones) || r.pages.test(zones), row -> {
+            Match leftMatch = l.inPlace.apply(row);
+            if (leftMatch == Match.YES) {
+                return Match.YES;
+            }
+            Match rightMatch = r.inPlace.apply(row);
+            return rightMatch == Match.YES ? Match.YES
+                    : leftMatch == Match.NO && rightMatch == Match.NO ? Match.NO : Match.UNDECIDED;
+        });
+    }
+
+    @Override
+    public boolean test(Tuple tuple) {
+        return rows.test(tuple);
+    }
+
+    /**
+     * Tests the row {@code row} points at, deciding on its serialized bytes where possible and
+     * decoding the columns the predicate reads otherwise.
+     */
+    boolean testInPlace(TupleView row) {
+        Match match = inPlace.apply(row);
+        return match == Match.UNDECIDED ? rows.test(row) : match == Match.YES;
+    }
+
+    boolean mightMatch(ZoneMap.ColumnZone[] zones) {
+        return pages.test(zones);
+    }
+
+    /** Whether {@code value} is of the type of the values in {@code zone}, which must have some. */
+    private static boolean isOfColumnType(Object value, ZoneMap.ColumnZone zone) {
+        // A zone without bounds has only seen strings too long to keep as bounds
+        return zone.min != null ? value.getClass() == zone.min.getClass() : value instanceof String;
+    }
+
+    /**
+     * The in-place form of {@link #compare}. It leaves undecided what the row test has to decide: a
+     * literal of another type than the column, whose mismatch the row test reports, a string ordering,
+     * and a string stored out of line.
+     */
+    private static Function<TupleView, Match> compareInPlace(int column, Comparison comparison, Object literal) {
+        if (literal == null) {
+            return row -> Match.NO;
+        }
+        if (literal instanceof String text) {
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            if (comparison != Comparison.EQUALS && comparison != Comparison.NOT_EQUALS
+                    || !new String(utf8, StandardCharsets.UTF_8).equals(text)) { // unpaired surrogates
+                return UNDECIDED;
+            }
+            boolean equals = comparison == Comparison.EQUALS;
+            return row -> {
+                if (row.isNull(column)) {
+                    return Match.NO;
+                }
+                ColumnType type = row.type(column);
+                if (type != ColumnType.VARCHAR && type != ColumnType.TEXT || row.isStoredOutOfLine(column)) {
+                    return Match.UNDECIDED;
+                }
+                return row.utf8Equals(column, utf8) == equals ? Match.YES : Match.NO;
+            };
+        }
+        if (literal instanceof Integer value) {
+            int i = value;
+            return row -> row.isNull(column) ? Match.NO
+                    : row.type(column) != ColumnType.INT ? Match.UNDECIDED
+                    : matchOf(comparison, Integer.compare(row.getInt(column), i));
+        }
+        if (literal instanceof Float value) {
+            float f = value;
+            return row -> row.isNull(column) ? Match.NO
+                    : row.type(column) != ColumnType.FLOAT ? Match.UNDECIDED
+                    : matchOf(comparison, Float.compare(row.getFloat(column), f));
+        }
+        if (literal instanceof Boolean value) {
+            boolean b = value;
+            return row -> row.isNull(column) ? Match.NO
+                    : row.type(column) != ColumnType.BOOLEAN ? Match.UNDECIDED
+                    : matchOf(comparison, Boolean.compare(row.getBoolean(column), b));
+        }
+        return UNDECIDED;
+    }
+
+    private static Match matchOf(Comparison comparison, int cmp) {
+        boolean matches = switch (comparison) {
+            case EQUALS -> cmp == 0;
+            case NOT_EQUALS -> cmp != 0;
+            case LESS_THAN -> cmp < 0;
+            case LESS_THAN_OR_EQUAL -> cmp <= 0;
+            case GREATER_THAN -> cmp > 0;
+            case GREATER_THAN_OR_EQUAL -> cmp >= 0;
+        };
+        return matches ? Match.YES : Match.NO;
+    }
+
+    private static Function<TupleView, Match> inPlaceOf(Predicate<Tuple> predicate) {
+        return predicate instanceof ZonePredicate zp ? zp.inPlace : UNDECIDED;
+    }
+
+    private static Predicate<ZoneMap.ColumnZone[]> pagesOf(Predicate<Tuple> predicate) {
+        return predicate instanceof ZonePredicate zp ? zp.pages : zones -> true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+}
@@ -109,4 +109,38 @@ class CatalogTest {
         assertEquals("active", loaded.getColumn(3).name());
         assertEquals(ColumnType.BOOLEAN, loaded.getColumn(3).type());
     }
+
+    @Test
+    void persistence_shouldKeepPageSizeAndCompression() {
+        catalog.createTable(new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ), 16384, true));
+        catalog.createTable(new TableSchema("users", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        )));
+
+        Catalog reloaded = new Catalog(tempDir.toString());
+        reloaded.init();
+
+        assertEquals(16384, reloaded.getTable("events").getPageSize());
+        assertEquals(4096, reloaded.getTable("users").getPageSize());
+        assertTrue(reloaded.getTable("events").isCompressed());
+        assertFalse(reloaded.getTable("users").isCompressed());
+        assertEquals(1, reloaded.getTable("events").getColumnCount());
+    }
+
+    @Test
+    void persistence_shouldKeepBloomFilterColumns() {
+        catalog.createTable(new TableSchema("users", List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("email", ColumnType.VARCHAR, 100),
+                new ColumnDefinition("name", ColumnType.VARCHAR, 50)
+        ), 4096, false, List.of("email", "name")));
+
+        Catalog reloaded = new Catalog(tempDir.toString());
+        reloaded.init();
+
+        assertEquals(List.of("email", "name"), reloaded.getTable("users").getBloomFilterColumns());
+        assertEquals(3, reloaded.getTable("users").getColumnCount());
+    }
 }
@@ -64,4 +64,29 @@ class TableSchemaTest {
         assertEquals(0, schema.getColumnIndex("id"));
         assertEquals(1, schema.getColumnIndex("name"));
     }
+
+    @Test
+    void pageSize_shouldDefaultTo4KAndRejectUnsupportedSizes() {
+        List<ColumnDefinition> columns = List.of(new ColumnDefinition("id", ColumnType.INT));
+
+        assertEquals(4096, new TableSchema("users", columns).getPageSize());
+        assertEquals(65536, new TableSchema("users", columns, 65536).getPageSize());
+        assertThrows(IllegalArgumentException.class, () -> new TableSchema("users", columns, 2048));
+        assertThrows(IllegalArgumentException.class, () -> new TableSchema("users", columns, 10000));
+        assertThrows(IllegalArgumentException.class, () -> new TableSchema("users", columns, 131072));
+    }
+
+    @Test
+    void bloomFilterColumns_shouldNameExistingColumns() {
+        List<ColumnDefinition> columns = List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("email", ColumnType.VARCHAR, 100));
+
+        TableSchema schema = new TableSchema("users", columns, 4096, false, List.of("EMAIL"));
+        assertTrue(schema.hasBloomFilter(1));
+        assertFalse(schema.hasBloomFilter(0));
+        assertTrue(new TableSchema("users", columns).getBloomFilterColumns().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> new TableSchema("users", columns, 4096, false, List.of("phone")));
+    }
 }
@@ -5,6 +5,7 @@ import com.mpdb.catalog.ColumnType;
 import com.mpdb.catalog.TableSchema;
 import com.mpdb.repl.CalciteQueryParser;
 import com.mpdb.storage.Tuple;
+import com.mpdb.storage.ZonePredicate;
 import org.apache.calcite.sql.SqlJoin;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlSelect;
@@ -217,4 +218,26 @@ class PredicateBuilderTest {
         assertFalse(pred.test(new Tuple(schema, new Object[]{1, "Alice", true})));
         assertTrue(pred.test(new Tuple(schema, new Object[]{2, "Bob", false})));
     }
+
+    @Test
+    void rangeAndConjunction_shouldBeZonePredicates() throws Exception {
+        Predicate<Tuple> range = predicateBuilder.build(parseWhere("SELECT * FROM users WHERE id >= 10"), schema);
+        Predicate<Tuple> and = predicateBuilder.build(
+                parseWhere("SELECT * FROM users WHERE id < 20 AND name = 'Alice'"), schema);
+
+        assertInstanceOf(ZonePredicate.class, range);
+        assertInstanceOf(ZonePredicate.class, and);
+        assertTrue(and.test(new Tuple(schema, new Object[]{1, "Alice", true})));
+        assertFalse(and.test(new Tuple(schema, new Object[]{25, "Alice", true})));
+    }
+
+    @Test
+    void in_literalList() throws Exception {
+        SqlNode where = parseWhere("SELECT * FROM users WHERE id IN (1, 3)");
+        Predicate<Tuple> pred = predicateBuilder.build(where, schema);
+
+        assertInstanceOf(ZonePredicate.class, pred);
+        assertTrue(pred.test(new Tuple(schema, new Object[]{3, "Carol", true})));
+        assertFalse(pred.test(new Tuple(schema, new Object[]{2, "Bob", false})));
+    }
 }
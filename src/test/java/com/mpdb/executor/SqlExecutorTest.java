@@ -16,6 +16,8 @@ class SqlExecutorTest {
 
     private SqlExecutor executor;
     private CalciteQueryParser parser;
+    private StorageEngine storageEngine;
+    private Runnable beforeNextStatement;
 
     @TempDir
     Path tempDir;
@@ -24,7 +26,17 @@ class SqlExecutorTest {
     void setUp() {
         Catalog catalog = new Catalog(tempDir.toString());
         catalog.init();
-        StorageEngine storageEngine = new StorageEngine(tempDir.toString(), catalog);
+        storageEngine = new StorageEngine(tempDir.toString(), catalog) {
+            @Override
+            public void beginStatement() {
+                Runnable hook = beforeNextStatement;
+                beforeNextStatement = null;
+                if (hook != null) {
+                    hook.run();
+                }
+                super.beginStatement();
+            }
+        };
         PredicateBuilder predicateBuilder = new PredicateBuilder();
 
         executor = new SqlExecutor(
@@ -33,7 +45,8 @@ class SqlExecutorTest {
                 new SelectHandler(catalog, storageEngine, predicateBuilder),
                 new DeleteHandler(catalog, storageEngine, predicateBuilder),
                 new UpdateHandler(catalog, storageEngine, predicateBuilder),
-                new DropTableHandler(catalog, storageEngine)
+                new DropTableHandler(catalog, storageEngine),
+                new VacuumHandler(catalog, storageEngine)
         );
         parser = new CalciteQueryParser();
     }
@@ -389,4 +402,56 @@ class SqlExecutorTest {
             executor.execute(node);
         });
     }
+
+    @Test
+    void vacuumTable() throws Exception {
+        execute("CREATE TABLE users (id INT, name VARCHAR(50))");
+        execute("INSERT INTO users VALUES (1, 'Alice')");
+        execute("INSERT INTO users VALUES (2, 'Bob')");
+        execute("DELETE FROM users WHERE id = 2");
+
+        String result = execute("VACUUM users");
+        assertTrue(result.contains("Vacuumed 'USERS'"));
+        assertTrue(result.contains("bytes reclaimed"));
+        assertTrue(execute("SELECT * FROM users").contains("Alice"));
+    }
+
+    @Test
+    void deleteWithWhere_vacuumBeforeStatement_shouldDeleteOnlyMatchingRows() throws Exception {
+        fillAndThinUsers();
+        beforeNextStatement = () -> storageEngine.vacuum("users");
+
+        assertTrue(execute("DELETE FROM users WHERE id >= 990").contains("Deleted 10 rows."));
+
+        assertEquals(490, storageEngine.getHeapFile("users").scanAll().size());
+        assertTrue(execute("SELECT * FROM users WHERE id >= 500 AND id < 990").contains("(490 rows)"));
+    }
+
+    @Test
+    void updateWithWhere_vacuumBeforeStatement_shouldUpdateOnlyMatchingRows() throws Exception {
+        fillAndThinUsers();
+        beforeNextStatement = () -> storageEngine.vacuum("users");
+
+        assertTrue(execute("UPDATE users SET name = 'moved' WHERE id >= 990").contains("Updated 10 rows."));
+
+        assertEquals(500, storageEngine.getHeapFile("users").scanAll().size());
+        assertTrue(execute("SELECT * FROM users WHERE name = 'moved'").contains("(10 rows)"));
+        assertTrue(execute("SELECT * FROM users WHERE name = 'moved' AND id >= 990").contains("(10 rows)"));
+    }
+
+    /** Fills users with ids 0 to 999 and deletes the first half, so that a vacuum moves the rest. */
+    private void fillAndThinUsers() throws Exception {
+        execute("CREATE TABLE users (id INT, name VARCHAR(50))");
+        StringBuilder insert = new StringBuilder("INSERT INTO users VALUES ");
+        for (int i = 0; i < 1000; i++) {
+            insert.append(i == 0 ? "" : ", ").append("(").append(i).append(", 'user").append(i).append("')");
+        }
+        execute(insert.toString());
+        execute("DELETE FROM users WHERE id < 500");
+    }
+
+    @Test
+    void vacuumNonExistentTable_shouldThrow() {
+        assertThrows(Exception.class, () -> execute("VACUUM nonexistent"));
+    }
 }
@@ -1,10 +1,13 @@
 package com.mpdb.repl;
 
+import com.mpdb.executor.SqlCreateTableWithOptions;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("CalciteQueryParser Tests")
@@ -172,5 +175,41 @@ class CalciteQueryParserTest {
         assertEquals("N/A", result.getAstString());
         assertEquals("N/A", result.getSqlKind());
     }
-}
 
+    @Test
+    @DisplayName("Should parse VACUUM with and without a table name")
+    void shouldParseVacuum() {
+        CalciteQueryParser.ParseResult result = parser.parseAndValidate("VACUUM users;");
+        assertTrue(result.isValid());
+        assertEquals("OTHER_DDL", result.getSqlKind());
+        assertTrue(result.getAstString().contains("USERS"));
+
+        assertTrue(parser.parseAndValidate("vacuum").isValid());
+        assertFalse(parser.parseAndValidate("VACUUM users extra").isValid());
+    }
+
+    @Test
+    @DisplayName("Should parse CREATE TABLE with page size and compression options")
+    void shouldParseCreateTableWithOptions() {
+        CalciteQueryParser.ParseResult result = parser.parseAndValidate(
+                "CREATE TABLE events (id INT, payload TEXT) WITH (page_size = 16384);");
+        assertTrue(result.isValid());
+        assertEquals("CREATE_TABLE", result.getSqlKind());
+        assertInstanceOf(SqlCreateTableWithOptions.class, result.ast());
+        assertEquals(16384, ((SqlCreateTableWithOptions) result.ast()).pageSize);
+        assertFalse(((SqlCreateTableWithOptions) result.ast()).compressed);
+
+        result = parser.parseAndValidate("CREATE TABLE logs (line TEXT) WITH (compression = 'lz4', page_size = 8192)");
+        assertTrue(result.isValid());
+        assertTrue(((SqlCreateTableWithOptions) result.ast()).compressed);
+        assertEquals(8192, ((SqlCreateTableWithOptions) result.ast()).pageSize);
+
+        result = parser.parseAndValidate(
+                "CREATE TABLE users (id INT, email VARCHAR(100)) WITH (bloom_filter = 'email, id', page_size = 8192)");
+        assertTrue(result.isValid());
+        assertEquals(List.of("EMAIL", "ID"), ((SqlCreateTableWithOptions) result.ast()).bloomFilterColumns);
+        assertEquals(8192, ((SqlCreateTableWithOptions) result.ast()).pageSize);
+
+        assertFalse(parser.parseAndValidate("CREATE TABLE events (id INT) WITH (fill_factor = 90)").isValid());
+    }
+}
@@ -1,11 +1,16 @@
 package com.mpdb.repl;
 
+import com.mpdb.storage.DurabilityMode;
+import com.mpdb.storage.HeapFile;
+import com.mpdb.storage.StorageEngine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -17,10 +22,13 @@ class ColonCommandProcessorTest {
     @Mock
     private DbState dbState;
 
+    @Mock
+    private StorageEngine storageEngine;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        processor = new ColonCommandProcessor(dbState);
+        processor = new ColonCommandProcessor(dbState, storageEngine);
     }
 
     @Test
@@ -173,5 +181,54 @@ class ColonCommandProcessorTest {
         verify(dbState).setDebugAstMode(true);
         assertTrue(result.contains("enabled"));
     }
-}
 
+    @Test
+    @DisplayName("Should set durability mode with :durability group")
+    void shouldSetDurabilityMode() {
+        String result = processor.process(":durability group");
+
+        verify(storageEngine).setDurabilityMode(DurabilityMode.GROUP);
+        assertTrue(result.contains("GROUP"));
+    }
+
+    @Test
+    @DisplayName("Should show current durability mode when no argument provided")
+    void shouldShowCurrentDurabilityMode() {
+        when(storageEngine.getDurabilityMode()).thenReturn(DurabilityMode.STRICT);
+
+        String result = processor.process(":durability");
+
+        assertTrue(result.contains("STRICT"));
+        assertTrue(result.contains("Usage"));
+    }
+
+    @Test
+    @DisplayName("Should return error for invalid :durability argument")
+    void shouldReturnErrorForInvalidDurabilityArgument() {
+        String result = processor.process(":durability never");
+
+        verify(storageEngine, never()).setDurabilityMode(any());
+        assertTrue(result.contains("Invalid argument"));
+    }
+
+    @Test
+    @DisplayName("Should vacuum all tables with :vacuum")
+    void shouldVacuumAllTables() {
+        when(storageEngine.vacuumAll()).thenReturn(List.of(new HeapFile.VacuumResult("USERS", 10, 4, 120, 4096)));
+
+        String result = processor.process(":vacuum");
+
+        assertTrue(result.contains("USERS"));
+        assertTrue(result.contains(String.valueOf(6 * 4096)));
+    }
+
+    @Test
+    @DisplayName("Should report failure of :vacuum for an unknown table")
+    void shouldReportVacuumFailure() {
+        when(storageEngine.vacuum("nope")).thenThrow(new IllegalStateException("No heap file for table: nope"));
+
+        String result = processor.process(":vacuum nope");
+
+        assertTrue(result.contains("Vacuum failed"));
+    }
+}
@@ -0,0 +1,224 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+
+    private static final int CAPACITY_PAGES = 3;
+
+    private BufferPool pool;
+    private DiskPageManager file;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new BufferPool((long) CAPACITY_PAGES * SlottedPage.PAGE_SIZE);
+        file = new DiskPageManager(tempDir.resolve("T.dat"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        file.close();
+    }
+
+    private void writePages(int count) {
+        for (int i = 0; i < count; i++) {
+            SlottedPage page = pool.newPage(file, i);
+            page.insertTuple(new byte[]{(byte) i});
+            pool.unpinPage(file, i, true);
+        }
+    }
+
+    @Test
+    void fetchPage_residentPage_shouldBeHit() {
+        writePages(1);
+
+        SlottedPage page = pool.fetchPage(file, 0);
+        pool.unpinPage(file, 0, false);
+
+        assertArrayEquals(new byte[]{0}, page.getTuple(0));
+        assertEquals(1, pool.getHits());
+        assertEquals(0, pool.getMisses());
+    }
+
+    @Test
+    void residentPages_shouldNeverExceedCapacity() {
+        writePages(10);
+
+        assertEquals(CAPACITY_PAGES, pool.getResidentPageCount());
+        assertEquals(7, pool.getEvictions());
+    }
+
+    @Test
+    void evictedDirtyPage_shouldBeWrittenBackAndReloaded() throws Exception {
+        writePages(10);
+
+        // Only the evicted pages have reached disk; the resident ones are still dirty
+        assertEquals(10 - CAPACITY_PAGES, file.getPageCount());
+        for (int i = 0; i < 10; i++) {
+            SlottedPage page = pool.fetchPage(file, i);
+            assertArrayEquals(new byte[]{(byte) i}, page.getTuple(0));
+            pool.unpinPage(file, i, false);
+        }
+    }
+
+    @Test
+    void pinnedPages_shouldNotBeEvicted() {
+        for (int i = 0; i < CAPACITY_PAGES; i++) {
+            pool.newPage(file, i);
+        }
+
+        assertThrows(IllegalStateException.class, () -> pool.newPage(file, CAPACITY_PAGES));
+    }
+
+    @Test
+    void unpinPage_notPinned_shouldThrow() {
+        assertThrows(IllegalStateException.class, () -> pool.unpinPage(file, 0, false));
+    }
+
+    @Test
+    void discardAll_shouldDropPagesWithoutWriting() throws Exception {
+        pool.newPage(file, 0);
+        pool.unpinPage(file, 0, true);
+
+        pool.discardAll(file);
+
+        assertEquals(0, pool.getResidentPageCount());
+        assertEquals(0, file.getPageCount());
+    }
+
+    @Test
+    void fetchPage_corruptedOnDisk_shouldFailChecksum() throws Exception {
+        writePages(1);
+        pool.flushAll(file);
+        pool.discardAll(file);
+
+        byte[] raw = file.readPage(0);
+        raw[SlottedPage.PAGE_SIZE - 1] ^= 0x01; // flip a bit in the tuple data
+        file.writePage(0, raw);
+
+        assertThrows(UncheckedIOException.class, () -> pool.fetchPage(file, 0));
+    }
+
+    @Test
+    void fetchPage_zeroedHeaderOnDisk_shouldFailChecksum() throws Exception {
+        writePages(1);
+        pool.flushAll(file);
+        pool.discardAll(file);
+
+        byte[] raw = file.readPage(0);
+        Arrays.fill(raw, 0, 16, (byte) 0); // torn header sector, tuple data intact
+        file.writePage(0, raw);
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> pool.fetchPage(file, 0));
+        assertTrue(e.getCause().getMessage().startsWith("Checksum mismatch"));
+    }
+
+    @Test
+    void fetchPage_pageOfOriginalLayout_shouldReportUnsupportedFormat() throws Exception {
+        byte[] legacy = new byte[SlottedPage.PAGE_SIZE];
+        ByteBuffer.wrap(legacy).putShort((short) 0).putShort((short) SlottedPage.PAGE_SIZE).putInt(0);
+        legacy[SlottedPage.PAGE_SIZE - 1] = 42;
+        file.writePage(0, legacy);
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> pool.fetchPage(file, 0));
+        assertTrue(e.getCause().getMessage().startsWith("Unsupported page format"));
+    }
+
+    @Test
+    void prefetch_shouldLoadMissingPagesWithoutPinning() throws Exception {
+        BufferPool largePool = new BufferPool(16L * SlottedPage.PAGE_SIZE);
+        for (int i = 0; i < 10; i++) {
+            SlottedPage page = new SlottedPage(i);
+            page.updateChecksum();
+            file.writePage(i, page.getRawData());
+        }
+
+        assertEquals(4, largePool.prefetch(file, 0, 10)); // capped at a quarter of the pool
+        assertEquals(4, largePool.getResidentPageCount());
+
+        largePool.fetchPage(file, 3);
+        largePool.unpinPage(file, 3, false);
+        assertEquals(1, largePool.getHits());
+        assertEquals(0, largePool.getMisses());
+        assertEquals(0, largePool.prefetch(file, 0, 4)); // already resident
+    }
+
+    @Test
+    void prefetch_onHeap_shouldGiveEachPageItsOwnBuffer() throws Exception {
+        BufferPool largePool = new BufferPool(16L * SlottedPage.PAGE_SIZE);
+        for (int i = 0; i < 4; i++) {
+            SlottedPage page = new SlottedPage(i);
+            page.insertTuple(new byte[]{(byte) (10 + i)});
+            page.updateChecksum();
+            file.writePage(i, page.getRawData());
+        }
+
+        assertEquals(4, largePool.prefetch(file, 0, 4)); // one read of all four pages
+        SlottedPage page = largePool.fetchPage(file, 2);
+
+        // Not a slice of the four-page read, which would stay reachable as long as this page
+        assertEquals(SlottedPage.PAGE_SIZE, page.getRawData().length);
+        assertArrayEquals(new byte[]{12}, page.getTuple(0));
+        largePool.unpinPage(file, 2, false);
+    }
+
+    @Test
+    void offHeap_shouldKeepPagesInRecycledDirectBuffers() {
+        BufferPool offHeapPool = new BufferPool((long) CAPACITY_PAGES * SlottedPage.PAGE_SIZE,
+                new DurabilityManager(DurabilityMode.STRICT, 0, null), true);
+        int pages = 2 * PageArena.CHUNK_SIZE / SlottedPage.PAGE_SIZE; // twice what one chunk holds
+        for (int i = 0; i < pages; i++) {
+            SlottedPage page = offHeapPool.newPage(file, i);
+            page.insertTuple(new byte[]{(byte) i});
+            offHeapPool.unpinPage(file, i, true);
+        }
+        for (int i = pages - 1; i >= pages - 2 * CAPACITY_PAGES; i--) {
+            SlottedPage page = offHeapPool.fetchPage(file, i);
+            assertTrue(page.getBuffer().isDirect());
+            assertArrayEquals(new byte[]{(byte) i}, page.getTuple(0));
+            offHeapPool.unpinPage(file, i, false);
+        }
+
+        // Evicted pages hand their buffers back, so one chunk serves every page
+        assertEquals(PageArena.CHUNK_SIZE, offHeapPool.getOffHeapBytes());
+        assertEquals(0, pool.getOffHeapBytes());
+    }
+
+    @Test
+    void offHeap_prefetchedAndFormattedPages_shouldBeUsable() throws Exception {
+        BufferPool offHeapPool = new BufferPool(16L * SlottedPage.PAGE_SIZE,
+                new DurabilityManager(DurabilityMode.STRICT, 0, null), true);
+        for (int i = 0; i < 4; i++) {
+            SlottedPage page = new SlottedPage(i);
+            page.insertTuple(new byte[]{(byte) (10 + i)});
+            page.updateChecksum();
+            file.writePage(i, page.getRawData());
+        }
+        file.writePage(5, new byte[SlottedPage.PAGE_SIZE]); // leaves page 4 a hole of zeros
+
+        assertEquals(4, offHeapPool.prefetch(file, 0, 4));
+        SlottedPage prefetched = offHeapPool.fetchPage(file, 2);
+        assertTrue(prefetched.getBuffer().isDirect());
+        assertArrayEquals(new byte[]{12}, prefetched.getTuple(0));
+        offHeapPool.unpinPage(file, 2, false);
+
+        SlottedPage hole = offHeapPool.fetchPage(file, 4);
+        assertEquals(0, hole.getSlotCount());
+        assertEquals(4, hole.getPageId());
+        assertTrue(hole.insertTuple(new byte[]{1, 2, 3}) >= 0);
+        offHeapPool.unpinPage(file, 4, true);
+    }
+}
@@ -0,0 +1,94 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private WriteAheadLog wal;
+    private DurabilityManager durability;
+    private BufferPool pool;
+    private DiskPageManager file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        wal = new WriteAheadLog(tempDir.resolve("wal.log"));
+        durability = new DurabilityManager(DurabilityMode.STRICT, 0, wal);
+        pool = new BufferPool(64L * SlottedPage.PAGE_SIZE, durability);
+        file = new DiskPageManager(tempDir.resolve("T.dat"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        durability.close();
+        file.close();
+        wal.close();
+    }
+
+    private void writeCommitted(int pageIndex, byte marker) {
+        SlottedPage page = pool.newPage(file, pageIndex);
+        page.insertTuple(new byte[]{marker});
+        pool.unpinPage(file, pageIndex, true);
+    }
+
+    @Test
+    void checkpoint_shouldWriteDirtyPagesAndTruncateLog() throws IOException {
+        for (int i = 0; i < 40; i++) {
+            writeCommitted(i, (byte) i);
+        }
+        assertEquals(0, file.getPageCount());
+        long logSize = wal.getSize();
+
+        assertTrue(new Checkpointer(pool, durability, 0, 0).checkpoint());
+
+        assertEquals(40, file.getPageCount());
+        assertArrayEquals(new byte[]{39}, new SlottedPage(file.readPage(39)).getTuple(0));
+        assertTrue(wal.getSize() < logSize);
+    }
+
+    @Test
+    void checkpoint_pageWithUncommittedChanges_shouldWaitForCommit() throws Exception {
+        writeCommitted(0, (byte) 1);
+        pool.beginStatement();
+        SlottedPage page = pool.fetchPage(file, 0);
+        page.insertTuple(new byte[]{2});
+        pool.unpinPage(file, 0, true);
+
+        Checkpointer checkpointer = new Checkpointer(pool, durability, 0, 0);
+        Thread thread = new Thread(checkpointer::checkpoint);
+        thread.start();
+        Thread.sleep(50);
+        assertTrue(thread.isAlive());
+        assertEquals(0, file.getPageCount()); // uncommitted changes never reach the table file
+
+        pool.commit();
+        thread.join(5_000);
+        assertFalse(thread.isAlive());
+        assertEquals(2, new SlottedPage(file.readPage(0)).getSlotCount());
+    }
+
+    @Test
+    void requestCheckpoint_shouldRunInBackground() throws Exception {
+        writeCommitted(0, (byte) 1);
+        Checkpointer checkpointer = new Checkpointer(pool, durability, 0, 0);
+
+        checkpointer.requestCheckpoint();
+        for (int i = 0; i < 500 && checkpointer.getCheckpointCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        checkpointer.close();
+
+        assertEquals(1, checkpointer.getCheckpointCount());
+        assertEquals(1, file.getPageCount());
+    }
+}
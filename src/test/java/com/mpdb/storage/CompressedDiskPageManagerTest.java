@@ -0,0 +1,131 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedDiskPageManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static SlottedPage textPage(int pageId, int rows) {
+        SlottedPage page = new SlottedPage(pageId);
+        for (int i = 0; i < rows; i++) {
+            page.insertTuple(("GET /api/orders/" + pageId + " 200 user=" + (i % 5)).getBytes(StandardCharsets.UTF_8));
+        }
+        page.updateChecksum();
+        return page;
+    }
+
+    private static SlottedPage randomPage(int pageId, long seed) {
+        SlottedPage page = new SlottedPage(pageId);
+        byte[] noise = new byte[3000];
+        new Random(seed).nextBytes(noise);
+        page.insertTuple(noise);
+        page.updateChecksum();
+        return page;
+    }
+
+    @Test
+    void writeAndRead_shouldRoundTripAndTakeLessSpace() throws IOException {
+        Path file = tempDir.resolve("T.dat");
+        try (CompressedDiskPageManager dm = new CompressedDiskPageManager(file, SlottedPage.PAGE_SIZE)) {
+            for (int p = 0; p < 20; p++) {
+                dm.writePage(p, textPage(p, 80).getBuffer());
+            }
+
+            assertEquals(20, dm.getPageCount());
+            assertTrue(dm.getFileSize() * 4 < 20L * SlottedPage.PAGE_SIZE, "file is " + dm.getFileSize() + " bytes");
+            assertArrayEquals(textPage(13, 80).getRawData(), dm.readPage(13));
+            ByteBuffer[] run = dm.readPages(5, 10);
+            assertEquals(10, run.length);
+            assertArrayEquals(textPage(9, 80).getRawData(), new SlottedPage(run[4]).getRawData());
+        }
+    }
+
+    @Test
+    void rewrite_growingAndShrinkingPages_shouldRelocateAndReuseSpace() throws IOException {
+        try (CompressedDiskPageManager dm = new CompressedDiskPageManager(tempDir.resolve("T.dat"), SlottedPage.PAGE_SIZE)) {
+            for (int p = 0; p < 3; p++) {
+                dm.writePage(p, textPage(p, 10).getBuffer());
+            }
+            long small = dm.getFileSize();
+
+            dm.writePage(1, randomPage(1, 7).getBuffer()); // no longer fits its extent
+            assertArrayEquals(randomPage(1, 7).getRawData(), dm.readPage(1));
+            assertArrayEquals(textPage(2, 10).getRawData(), dm.readPage(2));
+
+            dm.writePage(1, textPage(1, 10).getBuffer()); // shrinks in place, the tail is cut off
+            assertEquals(small + CompressedDiskPageManager.SECTOR_SIZE, dm.getFileSize());
+            dm.writePage(3, textPage(3, 10).getBuffer()); // takes the extent page 1 left behind
+            assertEquals(small + CompressedDiskPageManager.SECTOR_SIZE, dm.getFileSize());
+            assertArrayEquals(textPage(1, 10).getRawData(), dm.readPage(1));
+            assertArrayEquals(textPage(3, 10).getRawData(), dm.readPage(3));
+        }
+    }
+
+    @Test
+    void reopen_afterCleanClose_shouldUseSavedMap() throws IOException {
+        Path file = tempDir.resolve("T.dat");
+        try (CompressedDiskPageManager dm = new CompressedDiskPageManager(file, SlottedPage.PAGE_SIZE)) {
+            dm.writePage(0, textPage(0, 30).getBuffer());
+            dm.writePage(1, randomPage(1, 3).getBuffer());
+        }
+        assertTrue(Files.exists(tempDir.resolve("T.dat.map")));
+
+        try (CompressedDiskPageManager dm = new CompressedDiskPageManager(file, SlottedPage.PAGE_SIZE)) {
+            assertFalse(Files.exists(tempDir.resolve("T.dat.map")));
+            assertEquals(2, dm.getPageCount());
+            assertArrayEquals(randomPage(1, 3).getRawData(), dm.readPage(1));
+        }
+    }
+
+    @Test
+    void reopen_withoutMap_shouldRebuildFromHeadersKeepingLatestCopy() throws IOException {
+        Path file = tempDir.resolve("T.dat");
+        CompressedDiskPageManager crashed = new CompressedDiskPageManager(file, SlottedPage.PAGE_SIZE);
+        crashed.writePage(0, textPage(0, 10).getBuffer());
+        crashed.writePage(1, textPage(1, 10).getBuffer());
+        crashed.writePage(0, randomPage(0, 9).getBuffer()); // moves page 0 behind page 1
+        crashed.writePage(2, textPage(2, 10).getBuffer());
+        crashed.sync(); // no close: the map is never saved
+
+        try (CompressedDiskPageManager dm = new CompressedDiskPageManager(file, SlottedPage.PAGE_SIZE)) {
+            assertEquals(3, dm.getPageCount());
+            assertArrayEquals(randomPage(0, 9).getRawData(), dm.readPage(0));
+            assertArrayEquals(textPage(1, 10).getRawData(), dm.readPage(1));
+            assertArrayEquals(textPage(2, 10).getRawData(), dm.readPage(2));
+        }
+    }
+
+    @Test
+    void truncate_shouldDropPagesAndShrinkFile() throws IOException {
+        Path file = tempDir.resolve("T.dat");
+        try (CompressedDiskPageManager dm = new CompressedDiskPageManager(file, SlottedPage.PAGE_SIZE)) {
+            dm.writePage(0, textPage(0, 10).getBuffer());
+            long onePage = dm.getFileSize();
+            for (int p = 1; p < 6; p++) {
+                dm.writePage(p, randomPage(p, p).getBuffer());
+            }
+
+            dm.truncate(1);
+
+            assertEquals(1, dm.getPageCount());
+            assertEquals(onePage, dm.getFileSize());
+            assertEquals(onePage, Files.size(file));
+            assertThrows(IOException.class, () -> dm.readPage(1));
+        }
+        try (CompressedDiskPageManager dm = new CompressedDiskPageManager(file, SlottedPage.PAGE_SIZE)) {
+            assertEquals(1, dm.getPageCount());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskPageManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static SlottedPage pageWith(int pageId, byte marker) {
+        SlottedPage page = new SlottedPage(pageId);
+        page.insertTuple(new byte[]{marker});
+        return page;
+    }
+
+    @Test
+    void writeAndRead_standardMode_shouldRoundTrip() throws IOException {
+        try (DiskPageManager dm = new DiskPageManager(tempDir.resolve("T.dat"))) {
+            dm.writePage(0, pageWith(0, (byte) 7).getRawData());
+
+            assertEquals(1, dm.getPageCount());
+            assertArrayEquals(new byte[]{7}, new SlottedPage(dm.readPage(0)).getTuple(0));
+        }
+    }
+
+    @Test
+    void readPageBuffer_mmapMode_shouldReturnReadOnlyView() throws IOException {
+        try (DiskPageManager dm = new DiskPageManager(tempDir.resolve("T.dat"), IoMode.MMAP)) {
+            dm.writePage(0, pageWith(0, (byte) 1).getBuffer());
+
+            ByteBuffer view = dm.readPageBuffer(0);
+            assertTrue(view.isReadOnly());
+            assertArrayEquals(new byte[]{1}, new SlottedPage(view).getTuple(0));
+        }
+    }
+
+    @Test
+    void mmapMode_shouldSeeWritesAfterFileGrows() throws IOException {
+        try (DiskPageManager dm = new DiskPageManager(tempDir.resolve("T.dat"), IoMode.MMAP)) {
+            dm.writePage(0, pageWith(0, (byte) 1).getBuffer());
+            dm.readPageBuffer(0); // map the first chunk while the file holds a single page
+
+            for (int i = 1; i < 5; i++) {
+                dm.writePage(i, pageWith(i, (byte) (i + 1)).getBuffer());
+            }
+            dm.writePage(0, pageWith(0, (byte) 9).getBuffer());
+
+            assertEquals(5, dm.getPageCount());
+            assertArrayEquals(new byte[]{9}, new SlottedPage(dm.readPageBuffer(0)).getTuple(0));
+            assertArrayEquals(new byte[]{5}, new SlottedPage(dm.readPageBuffer(4)).getTuple(0));
+        }
+    }
+
+    @Test
+    void mmapMode_modifyingLoadedPage_shouldNotTouchFileUntilWritten() throws IOException {
+        try (DiskPageManager dm = new DiskPageManager(tempDir.resolve("T.dat"), IoMode.MMAP)) {
+            dm.writePage(0, pageWith(0, (byte) 1).getBuffer());
+
+            SlottedPage page = new SlottedPage(dm.readPageBuffer(0));
+            page.insertTuple(new byte[]{2});
+            assertEquals(1, new SlottedPage(dm.readPageBuffer(0)).getSlotCount());
+
+            dm.writePage(0, page.getBuffer());
+            assertEquals(2, new SlottedPage(dm.readPageBuffer(0)).getSlotCount());
+        }
+    }
+
+    @Test
+    void readPage_beyondEnd_shouldThrow() throws IOException {
+        try (DiskPageManager dm = new DiskPageManager(tempDir.resolve("T.dat"), IoMode.MMAP)) {
+            assertThrows(IOException.class, () -> dm.readPageBuffer(3));
+        }
+    }
+
+    @Test
+    void readPages_shouldReturnConsecutivePagesUpToEndOfFile() throws IOException {
+        for (IoMode mode : IoMode.values()) {
+            try (DiskPageManager dm = new DiskPageManager(tempDir.resolve(mode + ".dat"), mode)) {
+                for (int i = 0; i < 5; i++) {
+                    dm.writePage(i, pageWith(i, (byte) i).getBuffer());
+                }
+
+                ByteBuffer[] pages = dm.readPages(2, 8);
+
+                assertEquals(3, pages.length);
+                for (int i = 0; i < pages.length; i++) {
+                    assertArrayEquals(new byte[]{(byte) (i + 2)}, new SlottedPage(pages[i]).getTuple(0));
+                }
+                assertEquals(0, dm.readPages(5, 4).length);
+            }
+        }
+    }
+
+    @Test
+    void truncate_mmapMode_shouldDropTrailingPagesAndKeepWorking() throws IOException {
+        try (DiskPageManager dm = new DiskPageManager(tempDir.resolve("T.dat"), IoMode.MMAP)) {
+            for (int i = 0; i < 4; i++) {
+                dm.writePage(i, pageWith(i, (byte) i).getBuffer());
+            }
+            dm.readPageBuffer(3); // maps the whole file
+            dm.writePage(1, pageWith(1, (byte) 9).getBuffer());
+
+            dm.truncate(2);
+
+            assertEquals(2, dm.getPageCount());
+            assertArrayEquals(new byte[]{9}, new SlottedPage(dm.readPage(1)).getTuple(0));
+            assertThrows(IOException.class, () -> dm.readPage(2));
+            dm.writePage(2, pageWith(2, (byte) 5).getBuffer());
+            assertArrayEquals(new byte[]{5}, new SlottedPage(dm.readPage(2)).getTuple(0));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurabilityManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void groupCommit_concurrentCommits_shouldAllComplete() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(tempDir.resolve("wal.log"));
+        DurabilityManager durability = new DurabilityManager(DurabilityMode.GROUP, 2, wal);
+        List<Thread> committers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String fileName = "T" + t + ".dat";
+            committers.add(new Thread(() -> {
+                for (int i = 0; i < 3; i++) {
+                    try {
+                        long lsn = wal.appendCommit(List.of(
+                                new WriteAheadLog.PageImage(fileName, i, new SlottedPage(i).getBuffer())));
+                        durability.commit(lsn);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+        committers.forEach(Thread::start);
+        for (Thread t : committers) {
+            t.join(10_000);
+            assertFalse(t.isAlive());
+        }
+        durability.close();
+
+        int[] pages = new int[1];
+        assertEquals(12, wal.replay(new WriteAheadLog.RedoHandler() {
+            @Override
+            public void redoPage(WriteAheadLog.PageImage image) {
+                pages[0]++;
+            }
+
+            @Override
+            public void redoDrop(String fileName) {
+            }
+        }));
+        assertEquals(12, pages[0]);
+        wal.close();
+    }
+
+    @Test
+    void setMode_shouldSyncPendingWrites() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(tempDir.resolve("wal.log"));
+        DurabilityManager durability = new DurabilityManager(DurabilityMode.OS, 2, wal);
+        long lsn = wal.appendCommit(List.of(new WriteAheadLog.PageImage("T.dat", 0, new SlottedPage(0).getBuffer())));
+        durability.commit(lsn);
+
+        durability.setMode(DurabilityMode.STRICT);
+
+        assertEquals(DurabilityMode.STRICT, durability.getMode());
+        assertEquals(lsn, wal.getEndLsn());
+        wal.close();
+    }
+
+    @Test
+    void syncDataFiles_shouldSyncWrittenFiles() throws Exception {
+        DurabilityManager durability = new DurabilityManager(DurabilityMode.STRICT, 0, null);
+        try (DiskPageManager file = new DiskPageManager(tempDir.resolve("T.dat"))) {
+            file.writePage(0, new SlottedPage(0).getRawData());
+            durability.pageWritten(file);
+
+            durability.syncDataFiles();
+
+            assertEquals(1, file.getPageCount());
+        }
+    }
+}
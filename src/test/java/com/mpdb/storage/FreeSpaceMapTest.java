@@ -0,0 +1,91 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FreeSpaceMapTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void findPageWithSpace_shouldReturnFirstPageWithEnoughRoom() {
+        FreeSpaceMap fsm = new FreeSpaceMap();
+        for (int i = 0; i < 1000; i++) {
+            fsm.addPage(i, 10);
+        }
+        fsm.updatePage(700, 500);
+        fsm.updatePage(300, 200);
+
+        assertEquals(0, fsm.findPageWithSpace(10));
+        assertEquals(300, fsm.findPageWithSpace(150));
+        assertEquals(700, fsm.findPageWithSpace(201));
+        assertEquals(-1, fsm.findPageWithSpace(501));
+    }
+
+    @Test
+    void unknownPages_shouldNeverBeFound() {
+        FreeSpaceMap fsm = new FreeSpaceMap();
+        fsm.addUnknownPages(40);
+        fsm.addPage(40, 100);
+
+        assertFalse(fsm.isKnown(3));
+        assertEquals(0, fsm.getFreeSpace(3));
+        assertEquals(40, fsm.findPageWithSpace(1));
+        assertEquals(41, fsm.getPageCount());
+    }
+
+    @Test
+    void truncate_shouldForgetTrailingPages() {
+        FreeSpaceMap fsm = new FreeSpaceMap();
+        for (int i = 0; i < 20; i++) {
+            fsm.addPage(i, i == 15 ? 4000 : 0);
+        }
+
+        fsm.truncate(10);
+
+        assertEquals(10, fsm.getPageCount());
+        assertEquals(-1, fsm.findPageWithSpace(1));
+        fsm.addUnknownPages(10);
+        assertFalse(fsm.isKnown(15));
+    }
+
+    @Test
+    void saveAndLoad_shouldRestoreMapAndConsumeFile() throws IOException {
+        Path file = tempDir.resolve("T.fsm");
+        FreeSpaceMap fsm = new FreeSpaceMap();
+        fsm.addPage(0, 12);
+        fsm.addUnknownPages(1);
+        fsm.addPage(2, 3000);
+        fsm.save(file);
+
+        FreeSpaceMap loaded = new FreeSpaceMap();
+        assertTrue(loaded.load(file, 3));
+
+        assertEquals(12, loaded.getFreeSpace(0));
+        assertFalse(loaded.isKnown(1));
+        assertEquals(2, loaded.findPageWithSpace(100));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void load_pageCountMismatch_shouldLeaveAllPagesUnknown() throws IOException {
+        Path file = tempDir.resolve("T.fsm");
+        FreeSpaceMap fsm = new FreeSpaceMap();
+        fsm.addPage(0, 100);
+        fsm.save(file);
+
+        FreeSpaceMap loaded = new FreeSpaceMap();
+        assertFalse(loaded.load(file, 5));
+
+        assertEquals(5, loaded.getPageCount());
+        assertFalse(loaded.isKnown(0));
+        assertFalse(Files.exists(file));
+    }
+}
@@ -5,7 +5,10 @@ import com.mpdb.catalog.ColumnType;
 import com.mpdb.catalog.TableSchema;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
@@ -16,6 +19,9 @@ class HeapFileTest {
     private TableSchema schema;
     private HeapFile heapFile;
 
+    @TempDir
+    Path tempDir;
+
     @BeforeEach
     void setUp() {
         schema = new TableSchema("users", List.of(
@@ -128,4 +134,366 @@ class HeapFileTest {
             assertTrue((Integer) t.getValue(0) % 2 != 0);
         }
     }
+
+    @Test
+    void diskBacked_tableLargerThanBufferPool_shouldScanAllTuples() throws Exception {
+        BufferPool pool = new BufferPool(2L * SlottedPage.PAGE_SIZE);
+        HeapFile diskHeap = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        for (int i = 0; i < 500; i++) {
+            diskHeap.insertTuple(new Tuple(schema, new Object[]{i, "Name" + i, true}));
+        }
+
+        assertTrue(diskHeap.getPageCount() > 2);
+        assertTrue(pool.getResidentPageCount() <= 2);
+        List<Tuple> all = diskHeap.scanAll();
+        assertEquals(500, all.size());
+        assertEquals("Name499", all.get(499).getValue(1));
+        diskHeap.close();
+    }
+
+    @Test
+    void diskBacked_reopen_shouldNotReadPagesUntilUsed() throws Exception {
+        BufferPool pool = new BufferPool(16L * SlottedPage.PAGE_SIZE);
+        DiskPageManager file = new DiskPageManager(tempDir.resolve("USERS.dat"));
+        HeapFile diskHeap = new HeapFile(schema, file, pool);
+        for (int i = 0; i < 150; i++) {
+            diskHeap.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true}));
+        }
+        int pages = diskHeap.getPageCount();
+        diskHeap.close();
+
+        BufferPool reopenPool = new BufferPool(16L * SlottedPage.PAGE_SIZE);
+        HeapFile reopened = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), reopenPool);
+        assertEquals(pages, reopened.getPageCount());
+        assertEquals(0, reopenPool.getMisses());
+
+        // The partly filled last page is reused rather than a new page appended
+        reopened.insertTuple(new Tuple(schema, new Object[]{150, "User150", true}));
+        assertEquals(pages, reopened.getPageCount());
+        assertEquals(151, reopened.scanAll().size());
+        reopened.close();
+    }
+
+    @Test
+    void deleteThenInsert_shouldReuseSpaceOfDeletedTuples() {
+        List<TupleId> ids = new java.util.ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(heapFile.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true})));
+        }
+        int pages = heapFile.getPageCount();
+
+        for (int i = 0; i < 100; i++) {
+            heapFile.deleteTuple(ids.get(i));
+        }
+        for (int i = 0; i < 100; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i, "Renamed" + i, false}));
+        }
+
+        assertEquals(pages, heapFile.getPageCount());
+        assertEquals(200, heapFile.scanAll().size());
+    }
+
+    @Test
+    void deleteInsertChurn_shouldNotGrowFile() {
+        List<TupleId> ids = new java.util.ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(heapFile.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true})));
+        }
+        int pages = heapFile.getPageCount();
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 200; i += 2) {
+                heapFile.deleteTuple(ids.get(i));
+                ids.set(i, heapFile.insertTuple(new Tuple(schema, new Object[]{i, "Round" + round, false})));
+            }
+        }
+
+        assertEquals(pages, heapFile.getPageCount());
+        assertEquals(200, heapFile.scanAll().size());
+    }
+
+    @Test
+    void vacuum_shouldPackTuplesAndDropEmptiedPages() {
+        List<TupleId> ids = new java.util.ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(heapFile.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true})));
+        }
+        int pages = heapFile.getPageCount();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 4 != 0) {
+                heapFile.deleteTuple(ids.get(i));
+            }
+        }
+
+        HeapFile.VacuumResult result = heapFile.vacuum();
+
+        assertEquals(pages, result.pagesBefore());
+        assertTrue(result.pagesAfter() <= pages / 3, "expected at most " + pages / 3 + " pages, got " + result.pagesAfter());
+        assertEquals(result.pagesAfter(), heapFile.getPageCount());
+        assertEquals((long) (pages - result.pagesAfter()) * SlottedPage.PAGE_SIZE, result.bytesReclaimed());
+        List<Tuple> remaining = heapFile.scanAll();
+        assertEquals(250, remaining.size());
+        assertEquals(250, remaining.stream().map(t -> t.getValue(0)).distinct().count());
+        assertEquals(0, heapFile.getDeadTupleCount());
+    }
+
+    @Test
+    void vacuum_diskBacked_shouldTruncateFile() throws Exception {
+        BufferPool pool = new BufferPool(64 * SlottedPage.PAGE_SIZE);
+        DiskPageManager file = new DiskPageManager(tempDir.resolve("users.dat"));
+        HeapFile diskHeap = new HeapFile(schema, file, pool);
+        List<TupleId> ids = new java.util.ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(diskHeap.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true})));
+        }
+        for (int i = 100; i < 1000; i++) {
+            diskHeap.deleteTuple(ids.get(i));
+        }
+        pool.flushAll(file);
+
+        HeapFile.VacuumResult result = diskHeap.vacuum();
+
+        assertTrue(result.pagesAfter() < result.pagesBefore());
+        assertEquals(result.pagesAfter(), file.getPageCount());
+        assertEquals(100, diskHeap.scanAll().size());
+        diskHeap.insertTuple(new Tuple(schema, new Object[]{-1, "After", false}));
+        assertEquals(101, diskHeap.scanAll().size());
+        diskHeap.close();
+    }
+
+    @Test
+    void deadTupleRatio_shouldIgnoreDeletesRefilledByInserts() {
+        List<TupleId> ids = new java.util.ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(heapFile.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true})));
+        }
+        heapFile.scanAll();
+        for (int i = 0; i < 40; i++) {
+            heapFile.deleteTuple(ids.get(i));
+        }
+        assertEquals(0.4, heapFile.getDeadTupleRatio(), 1e-9);
+
+        for (int i = 0; i < 30; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i, "Again" + i, true}));
+        }
+        assertEquals(10, heapFile.getDeadTupleCount());
+    }
+
+    @Test
+    void insertLargeValue_shouldStoreItOutOfLineAndReadItBack() {
+        String document = "x".repeat(20_000) + "end";
+        TupleId id = heapFile.insertTuple(new Tuple(schema, new Object[]{1, document, true}));
+        heapFile.insertTuple(new Tuple(schema, new Object[]{2, "Bob", false}));
+
+        assertEquals(1, heapFile.getPageCount());
+        assertEquals(document, heapFile.getTuple(id).getValue(1));
+        assertEquals(document, heapFile.scanAll().get(0).getValue("name"));
+    }
+
+    @Test
+    void deleteLargeValue_shouldFreeItsOverflowRecords() {
+        String document = "y".repeat(50_000);
+        TupleId id = heapFile.insertTuple(new Tuple(schema, new Object[]{1, document, true}));
+        heapFile.deleteTuple(id);
+
+        // The freed overflow pages take the next value instead of new ones
+        TupleId again = heapFile.insertTuple(new Tuple(schema, new Object[]{2, document, true}));
+        heapFile.vacuum();
+
+        assertEquals(document, heapFile.getTuple(again).getValue(1));
+        assertEquals(1, heapFile.scanAll().size());
+    }
+
+    @Test
+    void scan_shouldNotReadOverflowPagesOfUnusedColumns() throws Exception {
+        BufferPool pool = new BufferPool(64 * SlottedPage.PAGE_SIZE);
+        HeapFile diskHeap = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        for (int i = 0; i < 10; i++) {
+            diskHeap.insertTuple(new Tuple(schema, new Object[]{i, "doc" + i + "z".repeat(8000), true}));
+        }
+        diskHeap.close();
+
+        HeapFile reopened = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        long missesBefore = pool.getMisses();
+        List<Tuple> tuples = reopened.scanAll();
+        assertEquals(10, tuples.size());
+        assertEquals(9, tuples.get(9).getValue(0));
+        long scanMisses = pool.getMisses() - missesBefore;
+        assertTrue(scanMisses <= reopened.getPageCount(), "scan read " + scanMisses + " pages");
+
+        assertTrue(((String) tuples.get(3).getValue(1)).startsWith("doc3"));
+        assertTrue(pool.getMisses() - missesBefore > scanMisses);
+        reopened.close();
+    }
+
+    @Test
+    void close_withOverflowFile_shouldSaveFreeSpaceButNoZonesForIt() throws Exception {
+        BufferPool pool = new BufferPool(64 * SlottedPage.PAGE_SIZE);
+        HeapFile diskHeap = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        diskHeap.insertTuple(new Tuple(schema, new Object[]{1, "z".repeat(8000), true}));
+        diskHeap.close();
+
+        assertTrue(Files.exists(tempDir.resolve("USERS.zmap")));
+        assertTrue(Files.exists(tempDir.resolve("USERS.ovf.fsm")));
+        assertFalse(Files.exists(tempDir.resolve("USERS.ovf.zmap")));
+
+        HeapFile reopened = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        assertEquals("z".repeat(8000), reopened.scanAll().get(0).getValue(1));
+        reopened.close();
+    }
+
+    private static ZonePredicate idAtLeast(int id) {
+        return ZonePredicate.compare(t -> (Integer) t.getValue(0) >= id, 0,
+                ZonePredicate.Comparison.GREATER_THAN_OR_EQUAL, id);
+    }
+
+    @Test
+    void rangeScan_shouldSkipPagesRuledOutByZoneMap() throws Exception {
+        BufferPool pool = new BufferPool(64 * SlottedPage.PAGE_SIZE);
+        HeapFile diskHeap = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        for (int i = 0; i < 1000; i++) {
+            diskHeap.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true}));
+        }
+        int pages = diskHeap.getPageCount();
+        diskHeap.close();
+
+        // The zone map saved on close lets the reopened file skip pages it never read
+        HeapFile reopened = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        long missesBefore = pool.getMisses();
+        List<Tuple> tuples = reopened.scanWithFilter(idAtLeast(990));
+        assertEquals(10, tuples.size());
+        long scanMisses = pool.getMisses() - missesBefore;
+        assertTrue(pages > 5 && scanMisses <= 2, "scan read " + scanMisses + " of " + pages + " pages");
+        reopened.close();
+    }
+
+    @Test
+    void rangeScan_afterCrash_shouldLearnZonesFromAFullScan() throws Exception {
+        BufferPool pool = new BufferPool(64 * SlottedPage.PAGE_SIZE);
+        HeapFile diskHeap = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        for (int i = 0; i < 1000; i++) {
+            diskHeap.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true}));
+        }
+        diskHeap.close();
+        Files.delete(tempDir.resolve("USERS.zmap"));
+
+        HeapFile reopened = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        long readsBefore = pool.getMisses() + pool.getPrefetched();
+        assertEquals(10, reopened.scanWithFilter(idAtLeast(990)).size());
+        assertEquals(reopened.getPageCount(), pool.getMisses() + pool.getPrefetched() - readsBefore); // every page
+
+        pool.discardAll(reopened.getDiskManager());
+        long missesBefore = pool.getMisses();
+
+        assertEquals(10, reopened.scanWithFilter(idAtLeast(990)).size());
+        assertTrue(pool.getMisses() - missesBefore <= 2);
+        reopened.close();
+    }
+
+    @Test
+    void insertTuple_withValueOfWrongType_shouldLeaveNoRowBehind() {
+        heapFile.insertTuple(new Tuple(schema, new Object[]{1, "Alice", true}));
+
+        assertThrows(ClassCastException.class,
+                () -> heapFile.insertTuple(new Tuple(schema, new Object[]{"two", "Bob", true})));
+
+        assertEquals(1, heapFile.scanAll().size());
+        heapFile.insertTuple(new Tuple(schema, new Object[]{3, "Carol", false}));
+        assertEquals(List.of(1, 3), heapFile.scanAll().stream().map(t -> t.getValue(0)).toList());
+    }
+
+    @Test
+    void insertTuple_largeValueWithValueOfWrongType_shouldFreeItsOverflowRecords() throws Exception {
+        BufferPool pool = new BufferPool(64 * SlottedPage.PAGE_SIZE);
+        String document = "w".repeat(50_000);
+        HeapFile failed = new HeapFile(schema, new DiskPageManager(tempDir.resolve("FAILED.dat")), pool);
+        assertThrows(ClassCastException.class,
+                () -> failed.insertTuple(new Tuple(schema, new Object[]{"one", document, true})));
+        failed.insertTuple(new Tuple(schema, new Object[]{1, document, true}));
+        failed.close();
+        HeapFile clean = new HeapFile(schema, new DiskPageManager(tempDir.resolve("CLEAN.dat")), pool);
+        clean.insertTuple(new Tuple(schema, new Object[]{1, document, true}));
+        clean.close();
+
+        // The chain of the failed row was freed and taken by the next one
+        assertEquals(Files.size(tempDir.resolve("CLEAN.ovf")), Files.size(tempDir.resolve("FAILED.ovf")));
+    }
+
+    @Test
+    void scanWithFilter_shouldDecideComparisonsWithoutDecodingRows() {
+        for (int i = 0; i < 200; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, i % 2 == 0}));
+        }
+        int[] decoded = {0};
+        ZonePredicate user7 = ZonePredicate.compare(t -> {
+            decoded[0]++;
+            return "User7".equals(t.getValue(1));
+        }, 1, ZonePredicate.Comparison.EQUALS, "User7");
+        ZonePredicate active = ZonePredicate.compare(t -> {
+            decoded[0]++;
+            return Boolean.TRUE.equals(t.getValue(2));
+        }, 2, ZonePredicate.Comparison.EQUALS, true);
+
+        List<Tuple> found = heapFile.scanWithFilter(user7);
+        assertEquals(1, found.size());
+        assertEquals(7, found.get(0).getValue(0));
+        assertEquals(100, heapFile.scanWithFilter(active).size());
+        assertEquals(0, decoded[0]);
+    }
+
+    @Test
+    void zoneMap_shouldWidenOnInsertAndCoverDeletedRows() {
+        for (int i = 0; i < 300; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true}));
+        }
+        TupleId late = heapFile.insertTuple(new Tuple(schema, new Object[]{5000, "Late", true}));
+        heapFile.deleteTuple(new TupleId(0, 0));
+
+        // The row went into the last page, whose zone now reaches 5000
+        assertEquals(List.of(5000), heapFile.scanWithFilter(idAtLeast(1000)).stream().map(t -> t.getValue(0)).toList());
+        assertEquals(late, heapFile.scanWithFilterAndIds(idAtLeast(1000)).get(0).getKey());
+        assertEquals(300, heapFile.scanWithFilter(idAtLeast(1)).size());
+    }
+
+    @Test
+    void pointLookup_withBloomFilter_shouldReadOnlyPagesThatMayMatch() throws Exception {
+        TableSchema bloomSchema = new TableSchema("users", schema.getColumns(), 4096, false, List.of("name"));
+        BufferPool pool = new BufferPool(64 * SlottedPage.PAGE_SIZE);
+        HeapFile diskHeap = new HeapFile(bloomSchema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        for (int i = 0; i < 1000; i++) {
+            // Names are not ordered by insertion, so every page's range spans nearly all of them
+            diskHeap.insertTuple(new Tuple(bloomSchema, new Object[]{i, "user" + (i * 7919 % 1000), true}));
+        }
+        int pages = diskHeap.getPageCount();
+        diskHeap.close();
+
+        HeapFile reopened = new HeapFile(bloomSchema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        ZonePredicate lookup = ZonePredicate.compare(t -> t.getValue(1).equals("user123"), 1,
+                ZonePredicate.Comparison.EQUALS, "user123");
+        long missesBefore = pool.getMisses();
+        assertEquals(1, reopened.scanWithFilter(lookup).size());
+        long scanMisses = pool.getMisses() - missesBefore;
+        assertTrue(pages > 5 && scanMisses <= 2, "lookup read " + scanMisses + " of " + pages + " pages");
+        reopened.close();
+    }
+
+    @Test
+    void vacuum_shouldRebuildZonesWithoutDeletedRows() throws Exception {
+        BufferPool pool = new BufferPool(64 * SlottedPage.PAGE_SIZE);
+        HeapFile diskHeap = new HeapFile(schema, new DiskPageManager(tempDir.resolve("USERS.dat")), pool);
+        for (int i = 0; i < 300; i++) {
+            diskHeap.insertTuple(new Tuple(schema, new Object[]{i, "User" + i, true}));
+        }
+        diskHeap.deleteTuple(diskHeap.insertTuple(new Tuple(schema, new Object[]{5000, "Outlier", true})));
+        diskHeap.vacuum();
+
+        // No page's zone reaches 5000 any more, so the lookup reads nothing
+        pool.flushAll(diskHeap.getDiskManager());
+        pool.discardAll(diskHeap.getDiskManager());
+        long missesBefore = pool.getMisses();
+        assertEquals(0, diskHeap.scanWithFilter(idAtLeast(1000)).size());
+        assertEquals(0, pool.getMisses() - missesBefore);
+        assertEquals(1, diskHeap.scanWithFilter(idAtLeast(299)).size());
+        diskHeap.close();
+    }
 }
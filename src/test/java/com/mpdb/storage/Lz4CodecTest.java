@@ -0,0 +1,63 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Lz4CodecTest {
+
+    private static byte[] roundTrip(byte[] data) {
+        byte[] compressed = new byte[Lz4Codec.maxCompressedLength(data.length)];
+        int length = Lz4Codec.compress(data, data.length, compressed);
+        byte[] restored = new byte[data.length];
+        Lz4Codec.decompress(compressed, 0, length, restored);
+        assertArrayEquals(data, restored);
+        return Arrays.copyOf(compressed, length);
+    }
+
+    @Test
+    void repetitiveText_shouldShrinkSeveralTimesAndRoundTrip() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; log.length() < 4096; i++) {
+            log.append("2024-05-01 12:00:").append(i % 60).append(" INFO request served in ").append(i % 7).append(" ms\n");
+        }
+        byte[] data = Arrays.copyOf(log.toString().getBytes(StandardCharsets.UTF_8), 4096);
+
+        byte[] compressed = roundTrip(data);
+
+        assertTrue(compressed.length < data.length / 4, "compressed to " + compressed.length + " bytes");
+    }
+
+    @Test
+    void randomAndEdgeCaseInputs_shouldRoundTrip() {
+        Random random = new Random(42);
+        for (int length : new int[]{0, 1, 12, 13, 100, 4096, 65536}) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            byte[] compressed = new byte[Lz4Codec.maxCompressedLength(length)];
+            int n = Lz4Codec.compress(data, length, compressed);
+            byte[] restored = new byte[length];
+            Lz4Codec.decompress(compressed, 0, n, restored);
+            assertArrayEquals(data, restored);
+        }
+
+        byte[] zeros = new byte[65536];
+        assertTrue(roundTrip(zeros).length < 300); // long matches and overlapping copies
+    }
+
+    @Test
+    void decompress_corruptInput_shouldThrow() {
+        byte[] data = "abcdabcdabcdabcdabcdabcdabcdabcd".getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = roundTrip(data);
+        compressed[0] = (byte) 0xFF; // literal run longer than the input; flipped literals are left to the page checksum
+
+        assertThrows(IllegalArgumentException.class,
+                () -> Lz4Codec.decompress(compressed, 0, compressed.length, new byte[data.length]));
+        assertThrows(IllegalArgumentException.class,
+                () -> Lz4Codec.decompress(compressed, 0, 3, new byte[data.length]));
+    }
+}
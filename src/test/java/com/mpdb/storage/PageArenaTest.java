@@ -0,0 +1,57 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageArenaTest {
+
+    @Test
+    void allocate_shouldCutDirectPagesFromOneChunk() {
+        PageArena arena = new PageArena();
+
+        ByteBuffer first = arena.allocate(4096);
+        ByteBuffer second = arena.allocate(4096);
+
+        assertTrue(first.isDirect());
+        assertEquals(4096, first.capacity());
+        assertEquals(PageArena.CHUNK_SIZE, arena.getAllocatedBytes());
+        assertEquals(PageArena.CHUNK_SIZE / 4096 - 2, arena.getFreeCount(4096));
+        first.put(0, (byte) 7);
+        assertNotEquals(7, second.get(0)); // separate memory
+    }
+
+    @Test
+    void release_shouldRecycleOnlyArenaBuffers() {
+        PageArena arena = new PageArena();
+        ByteBuffer page = arena.allocate(8192);
+        int free = arena.getFreeCount(8192);
+
+        arena.release(page);
+        arena.release(ByteBuffer.allocate(8192));                       // heap
+        arena.release(ByteBuffer.allocateDirect(8192).asReadOnlyBuffer()); // e.g. a mapped view
+        arena.release(ByteBuffer.allocateDirect(16384));                // size never handed out
+
+        assertEquals(free + 1, arena.getFreeCount(8192));
+        assertEquals(0, arena.getFreeCount(16384));
+        assertSame(page, arena.allocate(8192));
+    }
+
+    @Test
+    void formattedPage_shouldClearWhatTheBufferHeld() {
+        PageArena arena = new PageArena();
+        ByteBuffer buffer = arena.allocate(4096);
+        SlottedPage old = new SlottedPage(1, buffer);
+        old.insertTuple(new byte[]{1, 2, 3});
+        arena.release(old.detach());
+
+        SlottedPage page = new SlottedPage(2, arena.allocate(4096));
+
+        assertEquals(0, page.getSlotCount());
+        assertEquals(2, page.getPageId());
+        assertEquals(0, page.getBuffer().get(4095));
+        assertThrows(NullPointerException.class, old::getSlotCount);
+    }
+}
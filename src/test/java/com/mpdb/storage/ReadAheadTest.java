@@ -0,0 +1,67 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadAheadTest {
+
+    private static final int PAGES = 200;
+
+    @TempDir
+    Path tempDir;
+
+    private DiskPageManager file;
+    private BufferPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = new DiskPageManager(tempDir.resolve("T.dat"));
+        for (int i = 0; i < PAGES; i++) {
+            SlottedPage page = new SlottedPage(i);
+            page.insertTuple(new byte[]{(byte) i});
+            page.updateChecksum();
+            file.writePage(i, page.getRawData());
+        }
+        pool = new BufferPool(256L * SlottedPage.PAGE_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        file.close();
+    }
+
+    @Test
+    void sequentialScan_shouldPrefetchAhead() {
+        ReadAhead readAhead = new ReadAhead(pool, file, PAGES);
+        for (int p = 0; p < PAGES; p++) {
+            readAhead.onAccess(p);
+            SlottedPage page = pool.fetchPage(file, p);
+            assertArrayEquals(new byte[]{(byte) p}, page.getTuple(0));
+            pool.unpinPage(file, p, false);
+        }
+
+        assertTrue(pool.getPrefetched() > 0);
+        assertTrue(pool.getMisses() < PAGES);
+        assertEquals(PAGES, pool.getMisses() + pool.getHits());
+    }
+
+    @Test
+    void randomAccess_shouldNotPrefetch() {
+        ReadAhead readAhead = new ReadAhead(pool, file, PAGES);
+        for (int p : new int[]{50, 3, 120, 7, 199, 0, 64}) {
+            readAhead.onAccess(p);
+            pool.fetchPage(file, p);
+            pool.unpinPage(file, p, false);
+        }
+
+        assertEquals(0, pool.getPrefetched());
+        assertEquals(ReadAhead.MIN_WINDOW, readAhead.getWindow());
+    }
+}
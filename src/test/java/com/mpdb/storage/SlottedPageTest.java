@@ -3,6 +3,8 @@ package com.mpdb.storage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,8 +25,8 @@ class SlottedPageTest {
 
     @Test
     void newPage_shouldHaveFullFreeSpace() {
-        // PAGE_SIZE(4096) - HEADER(8) = 4088
-        assertEquals(4088, page.getFreeSpace());
+        // PAGE_SIZE(4096) - HEADER(28) = 4068
+        assertEquals(4068, page.getFreeSpace());
     }
 
     @Test
@@ -91,6 +93,34 @@ class SlottedPageTest {
         assertEquals(List.of(0, 2), active);
     }
 
+    @Test
+    void nextActiveSlot_shouldSkipDeletedSlots() {
+        byte[] data = {1, 2, 3};
+        for (int i = 0; i < 5; i++) {
+            page.insertTuple(data);
+        }
+        page.deleteTuple(0);
+        page.deleteTuple(2);
+        page.deleteTuple(4);
+
+        assertEquals(1, page.nextActiveSlot(0));
+        assertEquals(3, page.nextActiveSlot(2));
+        assertEquals(-1, page.nextActiveSlot(4));
+        assertEquals(2, page.getActiveSlotCount());
+        assertEquals(-1, page.slotOffset(2));
+        assertEquals(3, page.slotLength(3));
+        assertEquals(data[0], page.getBuffer().get(page.slotOffset(3)));
+    }
+
+    @Test
+    void reserveTuple_shouldLeaveTheTupleToTheCaller() {
+        int slot = page.reserveTuple(4);
+        page.buffer().putInt(page.slotOffset(slot), 0x01020304);
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, page.getTuple(slot));
+        assertEquals(-1, page.reserveTuple(page.getFreeSpace()));
+    }
+
     @Test
     void fillToCapacity_shouldReturnNegativeWhenFull() {
         // Each insert uses data + 4 bytes for slot directory entry
@@ -112,8 +142,8 @@ class SlottedPageTest {
         byte[] data = new byte[50];
         page.insertTuple(data);
 
-        // Free space decreases by data size + slot directory entry (4 bytes)
-        assertEquals(initialFreeSpace - 50 - 4, page.getFreeSpace());
+        // Free space decreases by data size + slot directory entry (8 bytes)
+        assertEquals(initialFreeSpace - 50 - 8, page.getFreeSpace());
     }
 
     @Test
@@ -128,4 +158,164 @@ class SlottedPageTest {
         SlottedPage p = new SlottedPage(42);
         assertEquals(42, p.getPageId());
     }
+
+    @Test
+    void checksum_shouldDetectModifiedBytes() {
+        page.insertTuple(new byte[]{1, 2, 3});
+        page.updateChecksum();
+        assertTrue(page.verifyChecksum());
+
+        byte[] raw = page.getRawData().clone();
+        raw[SlottedPage.PAGE_SIZE - 2] ^= 0x10;
+
+        assertFalse(new SlottedPage(raw).verifyChecksum());
+    }
+
+    @Test
+    void checksum_neverWrittenPage_shouldVerify() {
+        assertTrue(new SlottedPage(new byte[SlottedPage.PAGE_SIZE]).verifyChecksum());
+    }
+
+    @Test
+    void checksum_zeroedHeader_shouldNotPassAsNeverWritten() {
+        page.insertTuple(new byte[]{1, 2, 3});
+        page.updateChecksum();
+
+        byte[] raw = page.getRawData().clone();
+        Arrays.fill(raw, 0, 16, (byte) 0); // torn header: slot count, free space pointer, page id, checksum
+        SlottedPage torn = new SlottedPage(raw);
+
+        assertFalse(torn.isUnformatted());
+        assertFalse(torn.verifyChecksum());
+    }
+
+    @Test
+    void hasCurrentFormat_shouldDistinguishPagesOfTheOriginalLayout() {
+        assertTrue(page.hasCurrentFormat());
+
+        // Original layout: 2B slot count, 2B free space pointer, 4B page id, then 4-byte slots
+        ByteBuffer legacy = ByteBuffer.allocate(SlottedPage.PAGE_SIZE);
+        legacy.putShort(0, (short) 1).putShort(2, (short) (SlottedPage.PAGE_SIZE - 3)).putInt(4, 0);
+        legacy.putShort(8, (short) (SlottedPage.PAGE_SIZE - 3)).putShort(10, (short) 3);
+
+        assertFalse(new SlottedPage(legacy.array()).hasCurrentFormat());
+    }
+
+    @Test
+    void deleteTuple_shouldReturnSpaceToFreeSpace() {
+        page.insertTuple(new byte[10]);
+        int initialFreeSpace = page.getFreeSpace();
+        int slot = page.insertTuple(new byte[50]);
+        page.insertTuple(new byte[10]);
+
+        page.deleteTuple(slot);
+
+        assertEquals(50, page.getDeadSpace());
+        assertEquals(initialFreeSpace - 10 - 16, page.getFreeSpace()); // the slot entry stays for reuse
+    }
+
+    @Test
+    void insertTuple_shouldReuseSlotOfDeletedTuple() {
+        byte[] data = new byte[10];
+        for (int i = 0; i < 4; i++) {
+            page.insertTuple(data);
+        }
+        page.deleteTuple(1);
+        page.deleteTuple(2);
+
+        assertEquals(2, page.insertTuple(new byte[]{7}));
+        assertEquals(1, page.insertTuple(new byte[]{8}));
+        assertEquals(4, page.insertTuple(new byte[]{9}));
+        assertEquals(5, page.getSlotCount());
+        assertArrayEquals(new byte[]{8}, page.getTuple(1));
+    }
+
+    @Test
+    void deleteTuple_trailingSlots_shouldShrinkSlotDirectory() {
+        byte[] data = new byte[10];
+        int initialFreeSpace = page.getFreeSpace();
+        for (int i = 0; i < 4; i++) {
+            page.insertTuple(data);
+        }
+        page.deleteTuple(1);
+        page.deleteTuple(3);
+        assertEquals(3, page.getSlotCount());
+
+        page.deleteTuple(2);
+        assertEquals(1, page.getSlotCount()); // slots 2 and 1 fall off the end together
+
+        page.deleteTuple(0);
+        assertEquals(0, page.getSlotCount());
+        assertEquals(initialFreeSpace, page.getFreeSpace());
+        assertEquals(0, page.insertTuple(data));
+    }
+
+    @Test
+    void freeSlotChain_shouldSurviveRoundTripThroughRawBytes() {
+        byte[] data = new byte[10];
+        for (int i = 0; i < 5; i++) {
+            page.insertTuple(data);
+        }
+        page.deleteTuple(0);
+        page.deleteTuple(3);
+
+        SlottedPage reloaded = new SlottedPage(page.getRawData().clone());
+
+        assertEquals(20, reloaded.getDeadSpace());
+        assertEquals(3, reloaded.insertTuple(data));
+        assertEquals(0, reloaded.insertTuple(data));
+        assertEquals(5, reloaded.insertTuple(data));
+    }
+
+    @Test
+    void insertTuple_fragmentedPage_shouldCompactAndKeepSlotNumbers() {
+        byte[] data = new byte[100];
+        int count = 0;
+        while (page.insertTuple(new byte[]{(byte) count, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0}) >= 0) {
+            count++;
+        }
+        for (int i = 0; i < count; i += 2) {
+            page.deleteTuple(i);
+        }
+
+        int slot = page.insertTuple(data);
+
+        assertTrue(slot >= 0);
+        assertEquals(0, page.getDeadSpace());
+        assertArrayEquals(data, page.getTuple(slot));
+        for (int i = 1; i < count; i += 2) {
+            assertEquals((byte) i, page.getTuple(i)[0]);
+        }
+    }
+
+    @Test
+    void largePage_shouldHoldTuplesLargerThanADefaultPage() {
+        SlottedPage large = new SlottedPage(7, 65536);
+        byte[] big = new byte[40_000];
+        big[0] = 1;
+        big[big.length - 1] = 2;
+        int first = large.insertTuple(big);
+        int second = large.insertTuple(new byte[]{9, 8, 7});
+
+        assertEquals(65536, large.getPageSize());
+        assertEquals(65536 - 28 - 2 * 8 - 40_003, large.getFreeSpace());
+        assertArrayEquals(big, large.getTuple(first));
+        assertArrayEquals(new byte[]{9, 8, 7}, large.getTuple(second));
+
+        large.deleteTuple(first);
+        large.compact();
+        large.updateChecksum();
+        SlottedPage reread = new SlottedPage(large.getRawData().clone());
+        assertTrue(reread.verifyChecksum());
+        assertEquals(7, reread.getPageId());
+        assertArrayEquals(new byte[]{9, 8, 7}, reread.getTuple(second));
+        assertEquals(65536 - 28 - 2 * 8 - 3, reread.getFreeSpace()); // slot 0 stays for reuse
+    }
+
+    @Test
+    void constructor_shouldRejectUnsupportedPageSize() {
+        assertThrows(IllegalArgumentException.class, () -> new SlottedPage(0, 6000));
+        assertThrows(IllegalArgumentException.class, () -> new SlottedPage(new byte[2048]));
+    }
 }
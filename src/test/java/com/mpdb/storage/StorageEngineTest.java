@@ -4,11 +4,15 @@ import com.mpdb.catalog.Catalog;
 import com.mpdb.catalog.ColumnDefinition;
 import com.mpdb.catalog.ColumnType;
 import com.mpdb.catalog.TableSchema;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -17,6 +21,7 @@ class StorageEngineTest {
 
     private StorageEngine engine;
     private Catalog catalog;
+    private final List<StorageEngine> reopenedEngines = new ArrayList<>();
 
     @TempDir
     Path tempDir;
@@ -28,6 +33,27 @@ class StorageEngineTest {
         engine = new StorageEngine(tempDir.toString(), catalog);
     }
 
+    @AfterEach
+    void tearDown() {
+        for (StorageEngine reopened : reopenedEngines) {
+            reopened.shutdown();
+        }
+    }
+
+    /** Simulates a restart: reloads the catalog and starts a new engine on the same data directory. */
+    private StorageEngine reopen() {
+        return reopen(new StorageConfig());
+    }
+
+    private StorageEngine reopen(StorageConfig config) {
+        Catalog reloadedCatalog = new Catalog(tempDir.toString());
+        reloadedCatalog.init();
+        StorageEngine reopened = new StorageEngine(tempDir.toString(), reloadedCatalog, config);
+        reopened.init();
+        reopenedEngines.add(reopened);
+        return reopened;
+    }
+
     @Test
     void createHeapFile_shouldReturnHeapFile() {
         TableSchema schema = new TableSchema("users", List.of(
@@ -94,10 +120,7 @@ class StorageEngineTest {
         heapFile.insertTuple(new Tuple(schema, new Object[]{2, "Bob"}));
 
         // Simulate restart: reload catalog and storage engine
-        Catalog reloadedCatalog = new Catalog(tempDir.toString());
-        reloadedCatalog.init();
-        StorageEngine reloadedEngine = new StorageEngine(tempDir.toString(), reloadedCatalog);
-        reloadedEngine.init();
+        StorageEngine reloadedEngine = reopen();
 
         assertTrue(reloadedEngine.heapFileExists("users"));
         HeapFile reloadedHeap = reloadedEngine.getHeapFile("users");
@@ -108,4 +131,480 @@ class StorageEngineTest {
         assertEquals(2, tuples.get(1).getValue(0));
         assertEquals("Bob", tuples.get(1).getValue(1));
     }
+
+    @Test
+    void persistence_mmapMode_shouldSurviveRestart() {
+        StorageConfig config = new StorageConfig();
+        config.setIoMode(IoMode.MMAP);
+        StorageEngine mmapEngine = new StorageEngine(tempDir.toString(), catalog, config);
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = mmapEngine.createHeapFile(schema);
+        for (int i = 0; i < 1000; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i}));
+        }
+        mmapEngine.shutdown();
+
+        StorageEngine reloadedEngine = reopen(config);
+
+        List<Tuple> tuples = reloadedEngine.getHeapFile("events").scanAll();
+        assertEquals(1000, tuples.size());
+        assertEquals(999, tuples.get(999).getValue(0));
+    }
+
+    @Test
+    void persistence_groupDurability_shouldSurviveRestart() {
+        StorageConfig config = new StorageConfig();
+        config.setDurability(DurabilityMode.GROUP);
+        StorageEngine groupEngine = new StorageEngine(tempDir.toString(), catalog, config);
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = groupEngine.createHeapFile(schema);
+        groupEngine.beginStatement();
+        for (int i = 0; i < 100; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i}));
+        }
+        groupEngine.commit();
+        groupEngine.shutdown();
+
+        StorageEngine reloadedEngine = reopen();
+
+        assertEquals(100, reloadedEngine.getHeapFile("events").scanAll().size());
+    }
+
+    @Test
+    void statement_changingMorePagesThanThePoolHolds_shouldStayWithinBudget() {
+        StorageConfig config = new StorageConfig();
+        config.setBufferPoolMb(1);
+        StorageEngine smallEngine = new StorageEngine(tempDir.toString(), catalog, config);
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("body", ColumnType.TEXT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = smallEngine.createHeapFile(schema);
+        for (int i = 0; i < 8000; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i, "a".repeat(400)}));
+        }
+        BufferPool pool = smallEngine.getBufferPool();
+        assertTrue(heapFile.getPageCount() * (long) SlottedPage.PAGE_SIZE > 2 * pool.getCapacityBytes());
+
+        smallEngine.beginStatement();
+        for (var entry : heapFile.scanAllWithIds()) {
+            heapFile.deleteTuple(entry.getKey());
+            heapFile.insertTuple(new Tuple(schema, new Object[]{entry.getValue().getValue(0), "b".repeat(400)}));
+        }
+        assertTrue(pool.getResidentPageCount() * (long) SlottedPage.PAGE_SIZE <= pool.getCapacityBytes());
+        smallEngine.commit();
+        smallEngine.shutdown();
+
+        List<Tuple> tuples = reopen().getHeapFile("events").scanAll();
+        assertEquals(8000, tuples.size());
+        assertTrue(tuples.stream().allMatch(t -> "b".repeat(400).equals(t.getValue(1))));
+    }
+
+    @Test
+    void commit_groupDurability_concurrentStatementsShouldShareOneFsync() throws Exception {
+        StorageConfig config = new StorageConfig();
+        config.setDurability(DurabilityMode.GROUP);
+        config.setGroupCommitWindowMs(500);
+        StorageEngine groupEngine = new StorageEngine(tempDir.toString(), catalog, config);
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = groupEngine.createHeapFile(schema);
+        long syncs = groupEngine.getWal().getSyncCount();
+
+        java.util.concurrent.CyclicBarrier start = new java.util.concurrent.CyclicBarrier(2);
+        List<Thread> committers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int id = t;
+            committers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                groupEngine.beginStatement();
+                heapFile.insertTuple(new Tuple(schema, new Object[]{id}));
+                groupEngine.commit();
+            }));
+        }
+        committers.forEach(Thread::start);
+        for (Thread t : committers) {
+            t.join(10_000);
+            assertFalse(t.isAlive());
+        }
+
+        // The second statement logged its commit while the first waited, so one fsync covered both
+        assertEquals(syncs + 1, groupEngine.getWal().getSyncCount());
+        assertEquals(2, heapFile.scanAll().size());
+        groupEngine.shutdown();
+    }
+
+    @Test
+    void recovery_withoutShutdown_shouldRestoreOnlyCommittedStatements() {
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = engine.createHeapFile(schema);
+        engine.beginStatement();
+        for (int i = 0; i < 500; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i}));
+        }
+        engine.commit();
+        engine.beginStatement();
+        heapFile.insertTuple(new Tuple(schema, new Object[]{-1}));
+        // Crash: neither committed nor shut down, so committed pages exist only in the log
+
+        StorageEngine reloadedEngine = reopen();
+
+        List<Tuple> tuples = reloadedEngine.getHeapFile("events").scanAll();
+        assertEquals(500, tuples.size());
+        assertEquals(499, tuples.get(499).getValue(0));
+    }
+
+    @Test
+    void recovery_afterDrop_shouldNotResurrectTable() {
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        engine.createHeapFile(schema).insertTuple(new Tuple(schema, new Object[]{1}));
+        engine.dropHeapFile("events");
+        catalog.dropTable("events");
+        catalog.createTable(schema);
+        engine.createHeapFile(schema).insertTuple(new Tuple(schema, new Object[]{2}));
+
+        StorageEngine reloadedEngine = reopen();
+
+        List<Tuple> tuples = reloadedEngine.getHeapFile("events").scanAll();
+        assertEquals(1, tuples.size());
+        assertEquals(2, tuples.get(0).getValue(0));
+    }
+
+    @Test
+    void recovery_afterCheckpoint_shouldReplayOnlyLaterCommits() {
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = engine.createHeapFile(schema);
+        engine.beginStatement();
+        for (int i = 0; i < 300; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i}));
+        }
+        engine.commit();
+        engine.checkpoint();
+        engine.beginStatement();
+        for (int i = 300; i < 600; i++) {
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i}));
+        }
+        engine.commit();
+
+        StorageEngine reloadedEngine = reopen();
+
+        List<Tuple> tuples = reloadedEngine.getHeapFile("events").scanAll();
+        assertEquals(600, tuples.size());
+        assertEquals(599, tuples.get(599).getValue(0));
+    }
+
+    @Test
+    void init_shouldOpenHeapFilesOnFirstAccess() {
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = engine.createHeapFile(schema);
+        heapFile.insertTuple(new Tuple(schema, new Object[]{1}));
+        engine.shutdown();
+
+        StorageEngine reloadedEngine = reopen();
+
+        assertTrue(reloadedEngine.heapFileExists("events"));
+        assertFalse(reloadedEngine.isHeapFileOpen("events"));
+        assertEquals(1, reloadedEngine.getHeapFile("events").scanAll().size());
+        assertTrue(reloadedEngine.isHeapFileOpen("events"));
+    }
+
+    @Test
+    void getHeapFile_concurrentFirstAccess_shouldAlwaysFindTheTable() throws Exception {
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        engine.createHeapFile(schema).insertTuple(new Tuple(schema, new Object[]{1}));
+        engine.shutdown();
+
+        StorageEngine reloadedEngine = reopen();
+
+        java.util.concurrent.CyclicBarrier start = new java.util.concurrent.CyclicBarrier(8);
+        List<java.util.concurrent.Future<HeapFile>> opened = new ArrayList<>();
+        java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            opened.add(executor.submit(() -> {
+                start.await();
+                return reloadedEngine.getHeapFile("events");
+            }));
+        }
+        HeapFile first = opened.get(0).get();
+        assertNotNull(first);
+        for (var future : opened) {
+            assertSame(first, future.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void preloadTables_shouldOpenAllTablesAndReportSlowestFirst() {
+        for (String name : List.of("a", "b", "c")) {
+            TableSchema schema = new TableSchema(name, List.of(
+                    new ColumnDefinition("id", ColumnType.INT)
+            ));
+            catalog.createTable(schema);
+            HeapFile heapFile = engine.createHeapFile(schema);
+            for (int i = 0; i < 1000; i++) {
+                heapFile.insertTuple(new Tuple(schema, new Object[]{i}));
+            }
+        }
+        engine.shutdown();
+
+        StorageEngine reloadedEngine = reopen();
+        List<StorageEngine.TableLoadTime> times = reloadedEngine.preloadTables(2);
+
+        assertEquals(3, times.size());
+        assertTrue(reloadedEngine.getBufferPool().getPrefetched() > 0); // read in batches outside the pool lock
+        for (int i = 1; i < times.size(); i++) {
+            assertTrue(times.get(i - 1).millis() >= times.get(i).millis());
+        }
+        for (String name : List.of("a", "b", "c")) {
+            assertTrue(reloadedEngine.isHeapFileOpen(name));
+            assertEquals(1000, reloadedEngine.getHeapFile(name).scanAll().size());
+        }
+    }
+
+    @Test
+    void vacuum_shouldShrinkFileAndSurviveRestart() throws Exception {
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = engine.createHeapFile(schema);
+        engine.beginStatement();
+        List<TupleId> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ids.add(heapFile.insertTuple(new Tuple(schema, new Object[]{i})));
+        }
+        engine.commit();
+        engine.beginStatement();
+        for (int i = 0; i < 1900; i++) {
+            heapFile.deleteTuple(ids.get(i));
+        }
+        engine.commit();
+        engine.checkpoint();
+
+        HeapFile.VacuumResult result = engine.vacuum("events");
+
+        assertTrue(result.bytesReclaimed() > 0);
+        assertEquals((long) result.pagesAfter() * SlottedPage.PAGE_SIZE,
+                java.nio.file.Files.size(tempDir.resolve("EVENTS.dat")));
+        // Crash: recovery must not bring back the emptied pages
+
+        StorageEngine reloadedEngine = reopen();
+
+        HeapFile reloaded = reloadedEngine.getHeapFile("events");
+        assertEquals(result.pagesAfter(), reloaded.getPageCount());
+        List<Tuple> tuples = reloaded.scanAll();
+        assertEquals(100, tuples.size());
+        assertEquals(100, tuples.stream().map(t -> t.getValue(0)).distinct().count());
+    }
+
+    @Test
+    void autoVacuum_shouldVacuumOnlyTablesWithManyDeadTuples() {
+        for (String name : List.of("churned", "steady")) {
+            TableSchema schema = new TableSchema(name, List.of(
+                    new ColumnDefinition("id", ColumnType.INT)
+            ));
+            catalog.createTable(schema);
+            HeapFile heapFile = engine.createHeapFile(schema);
+            engine.beginStatement();
+            for (int i = 0; i < 1000; i++) {
+                heapFile.insertTuple(new Tuple(schema, new Object[]{i}));
+            }
+            engine.commit();
+        }
+        HeapFile churned = engine.getHeapFile("churned");
+        int pages = churned.getPageCount();
+        engine.beginStatement();
+        for (var entry : churned.scanWithFilterAndIds(t -> (int) t.getValue(0) >= 100)) {
+            churned.deleteTuple(entry.getKey());
+        }
+        engine.commit();
+
+        engine.getAutoVacuum().vacuumDeadTables();
+
+        assertEquals(1, engine.getAutoVacuum().getVacuumCount());
+        assertTrue(churned.getPageCount() < pages);
+        assertEquals(100, churned.scanAll().size());
+        engine.shutdown();
+    }
+
+    @Test
+    void freeSpaceMap_shouldBeSavedOnShutdownAndUsedOnReopen() {
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = engine.createHeapFile(schema);
+        List<TupleId> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ids.add(heapFile.insertTuple(new Tuple(schema, new Object[]{i})));
+        }
+        for (int i = 0; i < 100; i++) {
+            heapFile.deleteTuple(ids.get(i)); // room on the first page only
+        }
+        int pages = heapFile.getPageCount();
+        engine.shutdown();
+        Path fsm = tempDir.resolve("EVENTS.fsm");
+        assertTrue(java.nio.file.Files.exists(fsm));
+
+        StorageEngine reloadedEngine = reopen();
+        HeapFile reloaded = reloadedEngine.getHeapFile("events");
+        assertFalse(java.nio.file.Files.exists(fsm));
+
+        TupleId id = reloaded.insertTuple(new Tuple(schema, new Object[]{-1}));
+        assertEquals(0, id.pageIndex());
+        assertEquals(pages, reloaded.getPageCount());
+    }
+
+    @Test
+    void recovery_shouldRestoreValuesStoredOutOfLine() {
+        TableSchema schema = new TableSchema("docs", List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("body", ColumnType.TEXT)
+        ));
+        catalog.createTable(schema);
+        HeapFile heapFile = engine.createHeapFile(schema);
+        String body = "lorem ipsum ".repeat(3000);
+        engine.beginStatement();
+        heapFile.insertTuple(new Tuple(schema, new Object[]{1, body}));
+        engine.commit();
+        // Crash: the overflow pages exist only in the log
+
+        StorageEngine reloadedEngine = reopen();
+
+        List<Tuple> tuples = reloadedEngine.getHeapFile("docs").scanAll();
+        assertEquals(1, tuples.size());
+        assertEquals(body, tuples.get(0).getValue("body"));
+        reloadedEngine.dropHeapFile("docs");
+        assertFalse(java.nio.file.Files.exists(tempDir.resolve("DOCS.ovf")));
+    }
+
+    @Test
+    void largePageTable_shouldUseItsPageSizeOnDiskAndSurviveRecovery() throws Exception {
+        TableSchema schema = new TableSchema("events", List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("payload", ColumnType.VARCHAR, 200)
+        ), 16384);
+        catalog.createTable(schema);
+        HeapFile heapFile = engine.createHeapFile(schema);
+        for (int i = 0; i < 500; i++) {
+            engine.beginStatement();
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i, "event payload " + i}));
+            engine.commit();
+        }
+        int pages = heapFile.getPageCount();
+        assertTrue(pages <= 2, "500 rows took " + pages + " pages"); // about 19 KB of rows and slots
+        // Crash: recovery must write the logged 16 KB images at 16 KB offsets
+
+        StorageEngine reloadedEngine = reopen();
+
+        assertEquals((long) pages * 16384, java.nio.file.Files.size(tempDir.resolve("EVENTS.dat")));
+        List<Tuple> tuples = reloadedEngine.getHeapFile("events").scanAll();
+        assertEquals(500, tuples.size());
+        assertEquals("event payload 499", tuples.get(499).getValue("payload"));
+    }
+
+    @Test
+    void compressedTable_shouldTakeLessDiskAndSurviveRecovery() throws Exception {
+        TableSchema schema = new TableSchema("logs", List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("line", ColumnType.VARCHAR, 200)
+        ), SlottedPage.PAGE_SIZE, true);
+        catalog.createTable(schema);
+        HeapFile heapFile = engine.createHeapFile(schema);
+        for (int i = 0; i < 2000; i++) {
+            engine.beginStatement();
+            heapFile.insertTuple(new Tuple(schema, new Object[]{i, "INFO GET /api/orders status=200 user=" + (i % 10)}));
+            engine.commit();
+        }
+        engine.checkpoint();
+        int pages = heapFile.getPageCount();
+        long fileSize = java.nio.file.Files.size(tempDir.resolve("LOGS.dat"));
+        assertTrue(fileSize * 3 < (long) pages * SlottedPage.PAGE_SIZE, pages + " pages in " + fileSize + " bytes");
+
+        engine.beginStatement();
+        heapFile.insertTuple(new Tuple(schema, new Object[]{2000, "after the checkpoint"}));
+        engine.commit();
+        // Crash: the last row is only in the log, and the page map was never saved
+
+        StorageEngine reloadedEngine = reopen();
+
+        List<Tuple> tuples = reloadedEngine.getHeapFile("logs").scanAll();
+        assertEquals(2001, tuples.size());
+        assertEquals("after the checkpoint", tuples.get(2000).getValue("line"));
+    }
+
+    @Test
+    void tableInOriginalPageFormat_shouldBeUpgradedOnFirstOpen() throws Exception {
+        TableSchema schema = new TableSchema("users", List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("name", ColumnType.VARCHAR, 4000)
+        ));
+        catalog.createTable(schema);
+        // Original format: 8-byte header, 4-byte slots, rows of size, null bitmap and values back to back
+        List<ByteBuffer> pages = new ArrayList<>();
+        ByteBuffer page = null;
+        for (int i = 0; i < 300; i++) {
+            String name = i == 7 ? null : i == 100 ? "x".repeat(3000) : "user" + i;
+            byte[] utf8 = name != null ? name.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            int size = 4 + 1 + 4 + (name != null ? 4 + utf8.length : 0);
+            int slots = page != null ? page.getShort(0) : 0;
+            if (page == null || page.getShort(2) - size < 8 + (slots + 1) * 4) {
+                page = ByteBuffer.allocate(SlottedPage.PAGE_SIZE);
+                page.putShort(0, (short) 0).putShort(2, (short) SlottedPage.PAGE_SIZE).putInt(4, pages.size());
+                pages.add(page);
+                slots = 0;
+            }
+            int offset = page.getShort(2) - size;
+            page.position(offset);
+            page.putInt(size).put((byte) (name == null ? 0b10 : 0)).putInt(i);
+            if (name != null) {
+                page.putInt(utf8.length).put(utf8);
+            }
+            page.putShort(8 + slots * 4, (short) (i == 5 ? 0xFFFF : offset)).putShort(10 + slots * 4, (short) size);
+            page.putShort(0, (short) (slots + 1)).putShort(2, (short) offset);
+        }
+        try (var out = java.nio.file.Files.newOutputStream(tempDir.resolve("USERS.dat"))) {
+            for (ByteBuffer p : pages) {
+                out.write(p.array());
+            }
+        }
+
+        StorageEngine reloadedEngine = reopen();
+
+        List<Tuple> tuples = reloadedEngine.getHeapFile("users").scanAll();
+        assertEquals(299, tuples.size()); // row 5 was deleted
+        assertEquals("user0", tuples.get(0).getValue("name"));
+        assertNull(tuples.get(6).getValue("name"));
+        assertEquals("x".repeat(3000), tuples.get(99).getValue("name"));
+        assertTrue(java.nio.file.Files.exists(tempDir.resolve("USERS.ovf"))); // too large to stay inline now
+        assertFalse(java.nio.file.Files.exists(tempDir.resolve("USERS.dat.upgrade")));
+    }
 }
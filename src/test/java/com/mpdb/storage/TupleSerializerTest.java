@@ -5,6 +5,8 @@ import com.mpdb.catalog.ColumnType;
 import com.mpdb.catalog.TableSchema;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -216,4 +218,77 @@ class TupleSerializerTest {
 
         assertEquals(false, restored.getValue(0));
     }
+
+    @Test
+    void serialize_shouldPlaceFixedLengthColumnsAtSchemaOffsets() {
+        TableSchema schema = new TableSchema("t", List.of(
+                new ColumnDefinition("name", ColumnType.VARCHAR, 50),
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("desc", ColumnType.TEXT),
+                new ColumnDefinition("active", ColumnType.BOOLEAN)
+        ));
+        ByteBuffer first = ByteBuffer.wrap(serializer.serialize(new Tuple(schema, new Object[]{"a", 7, "bc", true})));
+        ByteBuffer second = ByteBuffer.wrap(serializer.serialize(new Tuple(schema, new Object[]{"longer name", 8, null, false})));
+
+        assertEquals(TupleSerializer.FORMAT_VERSION, first.get(0));
+        assertEquals(7, first.getInt(2)); // version, bitmap, then id
+        assertEquals(8, second.getInt(2));
+        assertEquals(1, first.get(6));
+        assertEquals(0, second.get(6));
+        assertEquals(1 + 1 + 5 + 2 * 2 + 3, first.capacity());
+    }
+
+    @Test
+    void roundTrip_valueStoredOutOfLine() {
+        TableSchema schema = new TableSchema("t", List.of(
+                new ColumnDefinition("body", ColumnType.TEXT),
+                new ColumnDefinition("title", ColumnType.VARCHAR, 50)
+        ));
+        Tuple original = new Tuple(schema, new Object[]{new OverflowValue(null, new TupleId(5, 6), 70_000), "t"});
+
+        Tuple restored = serializer.deserialize(serializer.serialize(original), schema);
+
+        OverflowValue body = (OverflowValue) restored.getRawValue(0);
+        assertEquals(new TupleId(5, 6), body.first());
+        assertEquals(70_000, body.length());
+        assertEquals("t", restored.getValue(1));
+    }
+
+    @Test
+    void deserialize_unknownFormatVersion_shouldThrow() {
+        TableSchema schema = new TableSchema("t", List.of(new ColumnDefinition("id", ColumnType.INT)));
+        byte[] data = serializer.serialize(new Tuple(schema, new Object[]{1}));
+        data[0] = 9;
+
+        assertThrows(IllegalStateException.class, () -> serializer.deserialize(data, schema));
+    }
+
+    @Test
+    void utf8Length_shouldMatchStringEncoding() {
+        for (String text : List.of("", "ascii", "Grüße", "日本語", "emoji \uD83D\uDE00!", "lone \uD800 high", "lone \uDC00 low", "end \uD83D")) {
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length, TupleSerializer.utf8Length(text), text);
+        }
+    }
+
+    @Test
+    void serializeInPlace_shouldMatchSerializeAndOverwriteOldBytes() {
+        TableSchema schema = new TableSchema("t", List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("name", ColumnType.VARCHAR, 50),
+                new ColumnDefinition("active", ColumnType.BOOLEAN)
+        ));
+        Tuple tuple = new Tuple(schema, new Object[]{null, "Zoë \uD83D\uDE00 \uD800", null});
+        byte[] expected = serializer.serialize(tuple);
+        ByteBuffer page = ByteBuffer.allocate(expected.length + 10);
+        for (int i = 0; i < page.capacity(); i++) {
+            page.put(i, (byte) 0x5A); // leftovers of a deleted tuple
+        }
+
+        serializer.serialize(tuple, page, 10);
+
+        byte[] written = new byte[expected.length];
+        page.get(10, written);
+        assertArrayEquals(expected, written);
+        assertEquals("Zoë \uD83D\uDE00 ?", serializer.deserialize(page, 10, schema, null).getValue(1));
+    }
 }
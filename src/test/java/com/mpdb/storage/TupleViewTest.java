@@ -0,0 +1,99 @@
+package com.mpdb.storage;
+
+import com.mpdb.catalog.ColumnDefinition;
+import com.mpdb.catalog.ColumnType;
+import com.mpdb.catalog.TableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleViewTest {
+
+    private final TableSchema schema = new TableSchema("t", List.of(
+            new ColumnDefinition("id", ColumnType.INT),
+            new ColumnDefinition("name", ColumnType.VARCHAR, 50),
+            new ColumnDefinition("active", ColumnType.BOOLEAN),
+            new ColumnDefinition("price", ColumnType.FLOAT)
+    ));
+    private final TupleSerializer serializer = new TupleSerializer();
+
+    private SlottedPage pageWith(SlottedPage page, Object[]... rows) {
+        for (Object[] row : rows) {
+            page.insertTuple(serializer.serialize(new Tuple(schema, row)));
+        }
+        return page;
+    }
+
+    @Test
+    void point_shouldDecodeColumnsOfEachRowInPlace() {
+        SlottedPage page = pageWith(new SlottedPage(0),
+                new Object[]{1, "Alice", true, 1.5f},
+                new Object[]{2, null, null, 2.5f});
+        TupleView view = new TupleView(schema, null);
+
+        view.point(page.buffer(), page.slotOffset(0));
+        assertEquals(1.5f, view.getValue(3)); // a later column first
+        assertEquals("Alice", view.getValue("name"));
+        assertEquals(1, view.getValue(0));
+
+        view.point(page.buffer(), page.slotOffset(1));
+        assertEquals(2.5f, view.getValue(3));
+        assertNull(view.getValue(1));
+        assertNull(view.getValue(2));
+        assertEquals(2, view.getValue(0));
+        assertEquals(4, view.getColumnCount());
+    }
+
+    @Test
+    void materialize_shouldOutliveTheView() {
+        SlottedPage page = pageWith(new SlottedPage(0),
+                new Object[]{1, "Alice", true, 1.5f},
+                new Object[]{2, "Bob", false, 2.5f});
+        TupleView view = new TupleView(schema, null);
+
+        view.point(page.buffer(), page.slotOffset(0));
+        view.getValue(1);
+        Tuple first = view.materialize();
+        view.point(page.buffer(), page.slotOffset(1));
+
+        assertArrayEquals(new Object[]{1, "Alice", true, 1.5f}, first.getValues());
+        assertArrayEquals(new Object[]{2, "Bob", false, 2.5f}, view.getValues());
+        assertEquals("Bob", Tuple.merge(view, first, schema).getValue(1));
+    }
+
+    @Test
+    void point_shouldReadOffHeapPages() {
+        SlottedPage page = pageWith(new SlottedPage(0, ByteBuffer.allocateDirect(SlottedPage.PAGE_SIZE)),
+                new Object[]{7, "Grüße", false, null});
+        TupleView view = new TupleView(schema, null);
+
+        view.point(page.buffer(), page.slotOffset(0));
+
+        assertEquals("Grüße", view.getValue(1));
+        assertEquals(false, view.getValue(2));
+        assertNull(view.getValue(3));
+    }
+
+    @Test
+    void valuesStoredOutOfLine_shouldStayUnreadUntilAskedFor() {
+        TableSchema textSchema = new TableSchema("t", List.of(
+                new ColumnDefinition("id", ColumnType.INT),
+                new ColumnDefinition("body", ColumnType.TEXT)
+        ));
+        Tuple row = new Tuple(textSchema, new Object[]{1, new OverflowValue(null, new TupleId(3, 4), 10_000)});
+        SlottedPage page = new SlottedPage(0);
+        page.insertTuple(serializer.serialize(row));
+        TupleView view = new TupleView(textSchema, null);
+
+        view.point(page.buffer(), page.slotOffset(0));
+
+        assertTrue(view.getRawValue(1) instanceof OverflowValue);
+        OverflowValue body = (OverflowValue) view.getRawValue(1);
+        assertEquals(new TupleId(3, 4), body.first());
+        assertEquals(10_000, body.length());
+        assertThrows(IllegalStateException.class, () -> view.getValue(1)); // no table to read it from
+    }
+}
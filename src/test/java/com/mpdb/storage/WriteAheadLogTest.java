@@ -0,0 +1,153 @@
+package com.mpdb.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static WriteAheadLog.PageImage image(String fileName, int pageIndex, byte marker) {
+        SlottedPage page = new SlottedPage(pageIndex);
+        page.insertTuple(new byte[]{marker});
+        return new WriteAheadLog.PageImage(fileName, pageIndex, page.getBuffer());
+    }
+
+    private static final class Recorder implements WriteAheadLog.RedoHandler {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void redoPage(WriteAheadLog.PageImage image) {
+            byte marker = new SlottedPage(image.data()).getTuple(0)[0];
+            events.add(image.fileName() + ":" + image.pageIndex() + "=" + marker);
+        }
+
+        @Override
+        public void redoDrop(String fileName) {
+            events.add("drop " + fileName);
+        }
+    }
+
+    @Test
+    void replay_shouldReturnCommittedGroupsInOrder() throws IOException {
+        Path path = tempDir.resolve("wal.log");
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.appendCommit(List.of(image("A.dat", 0, (byte) 1), image("A.dat", 1, (byte) 2)));
+            wal.appendDrop("B.dat");
+            wal.appendCommit(List.of(image("A.dat", 0, (byte) 3)));
+            wal.sync();
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            assertEquals(3, wal.replay(recorder));
+        }
+        assertEquals(List.of("A.dat:0=1", "A.dat:1=2", "drop B.dat", "A.dat:0=3"), recorder.events);
+    }
+
+    @Test
+    void replay_tornTail_shouldIgnoreIncompleteCommit() throws IOException {
+        Path path = tempDir.resolve("wal.log");
+        long committedEnd;
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            committedEnd = wal.appendCommit(List.of(image("A.dat", 0, (byte) 1)));
+            wal.appendCommit(List.of(image("A.dat", 1, (byte) 2)));
+        }
+        // Cut the second group off in the middle of its page image
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 100);
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            assertEquals(1, wal.replay(recorder));
+            assertEquals(committedEnd, wal.getEndLsn());
+        }
+        assertEquals(List.of("A.dat:0=1"), recorder.events);
+    }
+
+    @Test
+    void replay_corruptRecord_shouldStopAtIt() throws IOException {
+        Path path = tempDir.resolve("wal.log");
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.appendCommit(List.of(image("A.dat", 0, (byte) 1)));
+            wal.appendCommit(List.of(image("A.dat", 1, (byte) 2)));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), channel.size() - 20);
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            assertEquals(1, wal.replay(recorder));
+        }
+        assertEquals(List.of("A.dat:0=1"), recorder.events);
+    }
+
+    @Test
+    void reset_shouldEmptyLogButKeepLsnsIncreasing() throws IOException {
+        Path path = tempDir.resolve("wal.log");
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            long lsn = wal.appendCommit(List.of(image("A.dat", 0, (byte) 1)));
+            wal.reset();
+
+            assertEquals(0, wal.getSize());
+            assertTrue(wal.appendCommit(List.of(image("A.dat", 0, (byte) 2))) > lsn);
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            assertEquals(1, wal.replay(recorder));
+        }
+        assertEquals(List.of("A.dat:0=2"), recorder.events);
+    }
+
+    @Test
+    void replay_shouldStartAtLatestCheckpoint() throws IOException {
+        Path path = tempDir.resolve("wal.log");
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.appendCommit(List.of(image("A.dat", 0, (byte) 1)));
+            long redoLsn = wal.appendCommit(List.of(image("A.dat", 1, (byte) 2)));
+            wal.appendCommit(List.of(image("A.dat", 2, (byte) 3)));
+            wal.appendCheckpoint(redoLsn);
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            assertEquals(1, wal.replay(recorder));
+        }
+        assertEquals(List.of("A.dat:2=3"), recorder.events);
+    }
+
+    @Test
+    void truncateBefore_shouldKeepLaterRecords() throws IOException {
+        Path path = tempDir.resolve("wal.log");
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            long lsn = wal.appendCommit(List.of(image("A.dat", 0, (byte) 1)));
+            long end = wal.appendCommit(List.of(image("A.dat", 1, (byte) 2)));
+
+            wal.truncateBefore(lsn);
+
+            assertEquals(end, wal.getEndLsn());
+            assertEquals(end - lsn, wal.getSize());
+            wal.appendCommit(List.of(image("A.dat", 2, (byte) 3)));
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            assertEquals(2, wal.replay(recorder));
+        }
+        assertEquals(List.of("A.dat:1=2", "A.dat:2=3"), recorder.events);
+    }
+}
@@ -0,0 +1,179 @@
+package com.mpdb.storage;
+
+import com.mpdb.catalog.ColumnDefinition;
+import com.mpdb.catalog.ColumnType;
+import com.mpdb.catalog.TableSchema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZoneMapTest {
+
+    private final TableSchema schema = new TableSchema("events", List.of(
+            new ColumnDefinition("id", ColumnType.INT),
+            new ColumnDefinition("name", ColumnType.VARCHAR, 100)
+    ));
+
+    @TempDir
+    Path tempDir;
+
+    private Tuple row(Integer id, String name) {
+        return new Tuple(schema, new Object[]{id, name});
+    }
+
+    private static ZonePredicate idIs(ZonePredicate.Comparison comparison, int literal) {
+        return ZonePredicate.compare(t -> true, 0, comparison, literal);
+    }
+
+    @Test
+    void comparisons_shouldRuleOutPagesOutsideTheRange() {
+        ZoneMap zones = new ZoneMap(2);
+        zones.resetPage(0);
+        zones.include(0, row(10, "a"));
+        zones.include(0, row(20, "b"));
+
+        assertTrue(zones.mightMatch(0, idIs(ZonePredicate.Comparison.EQUALS, 15)));
+        assertFalse(zones.mightMatch(0, idIs(ZonePredicate.Comparison.EQUALS, 21)));
+        assertFalse(zones.mightMatch(0, idIs(ZonePredicate.Comparison.LESS_THAN, 10)));
+        assertTrue(zones.mightMatch(0, idIs(ZonePredicate.Comparison.LESS_THAN_OR_EQUAL, 10)));
+        assertFalse(zones.mightMatch(0, idIs(ZonePredicate.Comparison.GREATER_THAN, 20)));
+        assertTrue(zones.mightMatch(0, idIs(ZonePredicate.Comparison.GREATER_THAN_OR_EQUAL, 20)));
+        assertTrue(zones.mightMatch(0, idIs(ZonePredicate.Comparison.NOT_EQUALS, 10)));
+    }
+
+    @Test
+    void unknownPages_shouldAlwaysMightMatch() {
+        ZoneMap zones = new ZoneMap(2);
+        zones.resetPage(3);
+        zones.include(1, row(1, "a")); // page 1 is unknown, so nothing is recorded
+
+        assertFalse(zones.isKnown(1));
+        assertTrue(zones.mightMatch(1, idIs(ZonePredicate.Comparison.EQUALS, 99)));
+        assertTrue(zones.mightMatch(10, idIs(ZonePredicate.Comparison.EQUALS, 99)));
+        assertFalse(zones.mightMatch(3, idIs(ZonePredicate.Comparison.EQUALS, 99))); // known and empty
+    }
+
+    @Test
+    void nulls_shouldBeCountedSeparatelyFromTheRange() {
+        ZoneMap zones = new ZoneMap(2);
+        zones.resetPage(0);
+        zones.include(0, row(null, "a"));
+        zones.resetPage(1);
+        zones.include(1, row(5, "b"));
+
+        assertTrue(zones.mightMatch(0, ZonePredicate.isNull(t -> true, 0)));
+        assertFalse(zones.mightMatch(0, ZonePredicate.isNotNull(t -> true, 0)));
+        assertFalse(zones.mightMatch(0, idIs(ZonePredicate.Comparison.NOT_EQUALS, 5)));
+        assertFalse(zones.mightMatch(1, ZonePredicate.isNull(t -> true, 0)));
+        assertFalse(zones.mightMatch(1, ZonePredicate.compare(t -> true, 0, ZonePredicate.Comparison.EQUALS, null)));
+    }
+
+    @Test
+    void longStrings_shouldLeaveTheRangeOpen() {
+        ZoneMap zones = new ZoneMap(2);
+        zones.resetPage(0);
+        zones.include(0, row(1, "m"));
+        zones.include(0, row(2, "z".repeat(ZoneMap.MAX_BOUND_LENGTH + 1)));
+
+        assertTrue(zones.mightMatch(0, ZonePredicate.compare(t -> true, 1, ZonePredicate.Comparison.GREATER_THAN, "y")));
+    }
+
+    @Test
+    void andOr_shouldCombinePageTests() {
+        ZoneMap zones = new ZoneMap(2);
+        zones.resetPage(0);
+        zones.include(0, row(10, "a"));
+        Predicate<Tuple> plain = t -> true;
+
+        ZonePredicate miss = idIs(ZonePredicate.Comparison.GREATER_THAN, 10);
+        ZonePredicate hit = idIs(ZonePredicate.Comparison.EQUALS, 10);
+        assertFalse(zones.mightMatch(0, (ZonePredicate) ZonePredicate.and(miss, plain)));
+        assertFalse(zones.mightMatch(0, (ZonePredicate) ZonePredicate.and(plain, miss)));
+        assertTrue(zones.mightMatch(0, (ZonePredicate) ZonePredicate.or(miss, hit)));
+        assertFalse(zones.mightMatch(0, (ZonePredicate) ZonePredicate.or(miss, miss)));
+        assertFalse(ZonePredicate.or(miss, plain) instanceof ZonePredicate);
+    }
+
+    @Test
+    void saveAndLoad_shouldRestoreZonesAndDeleteTheFile() throws Exception {
+        Path file = tempDir.resolve("EVENTS.zmap");
+        ZoneMap zones = new ZoneMap(2);
+        zones.resetPage(0);
+        zones.include(0, row(1, "apple"));
+        zones.include(0, row(null, "pear"));
+        zones.resetPage(2);
+        zones.include(2, row(100, "x"));
+        zones.save(file);
+
+        ZoneMap loaded = new ZoneMap(2);
+        assertTrue(loaded.load(file, 3));
+        assertFalse(Files.exists(file));
+        assertTrue(loaded.isKnown(0));
+        assertFalse(loaded.isKnown(1));
+        assertTrue(loaded.mightMatch(0, ZonePredicate.isNull(t -> true, 0)));
+        assertFalse(loaded.mightMatch(0, ZonePredicate.compare(t -> true, 1, ZonePredicate.Comparison.GREATER_THAN, "pear")));
+        assertTrue(loaded.mightMatch(2, idIs(ZonePredicate.Comparison.EQUALS, 100)));
+        assertFalse(loaded.mightMatch(2, idIs(ZonePredicate.Comparison.LESS_THAN, 100)));
+    }
+
+    @Test
+    void load_withDifferentPageCount_shouldLeaveAllPagesUnknown() throws Exception {
+        Path file = tempDir.resolve("EVENTS.zmap");
+        ZoneMap zones = new ZoneMap(2);
+        zones.resetPage(0);
+        zones.save(file);
+
+        ZoneMap loaded = new ZoneMap(2);
+        assertFalse(loaded.load(file, 5));
+        assertFalse(loaded.isKnown(0));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void bloomFilter_shouldRuleOutValuesInsideTheRange() throws Exception {
+        TableSchema bloomSchema = new TableSchema("events", schema.getColumns(), 4096, false, List.of("name"));
+        ZoneMap zones = new ZoneMap(bloomSchema);
+        zones.resetPage(0);
+        for (int i = 0; i < 100; i += 2) {
+            zones.include(0, row(i, "user" + i + "@example.com"));
+        }
+        ZonePredicate present = ZonePredicate.compare(t -> true, 1, ZonePredicate.Comparison.EQUALS, "user42@example.com");
+        int missed = 0;
+        for (int i = 1; i < 100; i += 2) {
+            ZonePredicate absent = ZonePredicate.compare(t -> true, 1, ZonePredicate.Comparison.EQUALS, "user" + i + "@example.com");
+            if (!zones.mightMatch(0, absent)) missed++;
+        }
+        assertTrue(zones.mightMatch(0, present));
+        assertTrue(missed >= 45, "only " + missed + " of 50 absent values ruled out");
+        assertFalse(zones.mightMatch(0, ZonePredicate.in(t -> true, 1, List.of("user1@example.com", "user3@example.com"))));
+        assertTrue(zones.mightMatch(0, ZonePredicate.in(t -> true, 1, List.of("user1@example.com", "user2@example.com"))));
+
+        Path file = tempDir.resolve("EVENTS.zmap");
+        zones.save(file);
+        ZoneMap loaded = new ZoneMap(bloomSchema);
+        assertTrue(loaded.load(file, 1));
+        assertTrue(loaded.mightMatch(0, present));
+        assertFalse(loaded.mightMatch(0, ZonePredicate.in(t -> true, 1, List.of("user1@example.com", "user3@example.com"))));
+
+        zones.save(file);
+        assertFalse(new ZoneMap(2).load(file, 1)); // saved with a filter the table no longer has
+    }
+
+    @Test
+    void in_shouldUseTheRangeOfColumnsWithoutBloomFilter() {
+        ZoneMap zones = new ZoneMap(2);
+        zones.resetPage(0);
+        zones.include(0, row(10, "a"));
+        zones.include(0, row(20, "b"));
+
+        assertTrue(zones.mightMatch(0, ZonePredicate.in(t -> true, 0, List.of(5, 15))));
+        assertFalse(zones.mightMatch(0, ZonePredicate.in(t -> true, 0, List.of(5, 25))));
+        assertFalse(zones.mightMatch(0, ZonePredicate.in(t -> true, 0, List.of())));
+    }
+}
@@ -0,0 +1,102 @@
+package com.mpdb.storage;
+
+import com.mpdb.catalog.ColumnDefinition;
+import com.mpdb.catalog.ColumnType;
+import com.mpdb.catalog.TableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZonePredicateTest {
+
+    private final TableSchema schema = new TableSchema("t", List.of(
+            new ColumnDefinition("id", ColumnType.INT),
+            new ColumnDefinition("name", ColumnType.VARCHAR, 50),
+            new ColumnDefinition("active", ColumnType.BOOLEAN),
+            new ColumnDefinition("price", ColumnType.FLOAT)
+    ));
+    private final TupleSerializer serializer = new TupleSerializer();
+    private final SlottedPage page = new SlottedPage(0);
+    private final TupleView view = new TupleView(schema, null);
+
+    /** A row test that must not be needed. */
+    private static final Predicate<Tuple> UNUSED = t -> {
+        throw new AssertionError("row was decoded");
+    };
+
+    private TupleView rowOf(Object... values) {
+        int slot = page.insertTuple(serializer.serialize(new Tuple(schema, values)));
+        view.point(page.buffer(), page.slotOffset(slot));
+        return view;
+    }
+
+    @Test
+    void comparisons_shouldBeDecidedOnTheBytes() {
+        TupleView row = rowOf(42, "Alice", true, 9.5f);
+
+        assertTrue(ZonePredicate.compare(UNUSED, 0, ZonePredicate.Comparison.EQUALS, 42).testInPlace(row));
+        assertFalse(ZonePredicate.compare(UNUSED, 0, ZonePredicate.Comparison.LESS_THAN, 42).testInPlace(row));
+        assertTrue(ZonePredicate.compare(UNUSED, 0, ZonePredicate.Comparison.GREATER_THAN, -1).testInPlace(row));
+        assertTrue(ZonePredicate.compare(UNUSED, 3, ZonePredicate.Comparison.LESS_THAN_OR_EQUAL, 9.5f).testInPlace(row));
+        assertFalse(ZonePredicate.compare(UNUSED, 2, ZonePredicate.Comparison.EQUALS, false).testInPlace(row));
+        assertTrue(ZonePredicate.compare(UNUSED, 1, ZonePredicate.Comparison.EQUALS, "Alice").testInPlace(row));
+        assertFalse(ZonePredicate.compare(UNUSED, 1, ZonePredicate.Comparison.EQUALS, "Alicia").testInPlace(row));
+        assertTrue(ZonePredicate.compare(UNUSED, 1, ZonePredicate.Comparison.NOT_EQUALS, "Bob").testInPlace(row));
+        assertFalse(ZonePredicate.compare(UNUSED, 0, ZonePredicate.Comparison.EQUALS, null).testInPlace(row));
+    }
+
+    @Test
+    void nulls_shouldBeDecidedOnTheBitmap() {
+        TupleView row = rowOf(null, "Bob", null, 1.0f);
+
+        assertFalse(ZonePredicate.compare(UNUSED, 0, ZonePredicate.Comparison.NOT_EQUALS, 1).testInPlace(row));
+        assertFalse(ZonePredicate.compare(UNUSED, 2, ZonePredicate.Comparison.EQUALS, true).testInPlace(row));
+        assertTrue(ZonePredicate.isNull(UNUSED, 0).testInPlace(row));
+        assertFalse(ZonePredicate.isNotNull(UNUSED, 2).testInPlace(row));
+        assertEquals(1.0f, row.getValue(3)); // fields after NULLs are still found
+    }
+
+    @Test
+    void undecidableRows_shouldFallBackToTheRowTest() {
+        TupleView row = rowOf(42, "Alice", true, 9.5f);
+        Predicate<Tuple> nameAfterA = t -> ((String) t.getValue(1)).compareTo("A") > 0;
+        Predicate<Tuple> mismatch = t -> {
+            throw new IllegalStateException("Type mismatch in comparison");
+        };
+
+        assertTrue(ZonePredicate.compare(nameAfterA, 1, ZonePredicate.Comparison.GREATER_THAN, "A").testInPlace(row));
+        assertThrows(IllegalStateException.class,
+                () -> ZonePredicate.compare(mismatch, 0, ZonePredicate.Comparison.EQUALS, "42").testInPlace(row));
+        assertTrue(ZonePredicate.in(t -> t.getValue(0).equals(42), 0, List.of(42)).testInPlace(row));
+    }
+
+    @Test
+    void stringsStoredOutOfLine_shouldFallBackToTheRowTest() {
+        TupleView row = rowOf(1, new OverflowValue(null, new TupleId(0, 0), 5), true, 1.0f);
+        boolean[] asked = {false};
+
+        ZonePredicate.compare(t -> asked[0] = true, 1, ZonePredicate.Comparison.EQUALS, "Alice").testInPlace(row);
+
+        assertTrue(asked[0]);
+    }
+
+    @Test
+    void andOr_shouldDecideWhenEitherSideDoes() {
+        TupleView row = rowOf(42, "Alice", true, 9.5f);
+        ZonePredicate yes = ZonePredicate.compare(UNUSED, 0, ZonePredicate.Comparison.EQUALS, 42);
+        ZonePredicate no = ZonePredicate.compare(UNUSED, 0, ZonePredicate.Comparison.EQUALS, 7);
+        Predicate<Tuple> plain = t -> true;
+
+        assertFalse(((ZonePredicate) ZonePredicate.and(plain, no)).testInPlace(row));
+        assertTrue(((ZonePredicate) ZonePredicate.and(yes, ZonePredicate.isNotNull(UNUSED, 1))).testInPlace(row));
+        assertTrue(((ZonePredicate) ZonePredicate.or(no, yes)).testInPlace(row));
+        assertFalse(((ZonePredicate) ZonePredicate.or(no, no)).testInPlace(row));
+        boolean[] asked = {false};
+        ZonePredicate exact = ZonePredicate.compare(t -> t.getValue(0).equals(42), 0, ZonePredicate.Comparison.EQUALS, 42);
+        assertTrue(((ZonePredicate) ZonePredicate.and(exact, t -> asked[0] = true)).testInPlace(row));
+        assertTrue(asked[0]); // the plain side decides
+    }
+}